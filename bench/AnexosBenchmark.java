@@ -0,0 +1,100 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Mede os anexos: envio em fluxo com deduplicação, entrega com transferTo comparada à cópia
+ * por streams, e miniaturas (geração a partir de uma foto grande e leitura do cache).
+ *
+ * Uso: java -cp out AnexosBenchmark [anexos] [tamanhoKb]
+ */
+public class AnexosBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int tamanho = (args.length > 1 ? Integer.parseInt(args[1]) : 512) * 1024;
+        Path dir = Files.createTempDirectory("petshop-anexos");
+        Random aleatorio = new Random(42);
+
+        // Metade dos envios repete um conteúdo já enviado
+        List<byte[]> distintos = new ArrayList<>();
+        for (int i = 0; i < quantidade / 2; i++) {
+            byte[] conteudo = new byte[tamanho];
+            aleatorio.nextBytes(conteudo);
+            distintos.add(conteudo);
+        }
+
+        try (ArmazenamentoAnexos anexos = new ArmazenamentoAnexos(dir)) {
+            List<String> hashes = new ArrayList<>();
+            long inicio = System.nanoTime();
+            for (int i = 0; i < quantidade; i++) {
+                byte[] conteudo = distintos.get(i % distintos.size());
+                hashes.add(anexos.anexar(String.valueOf(i + 1), "documento" + i + ".pdf", new ByteArrayInputStream(conteudo)).getHash());
+            }
+            double segundos = (System.nanoTime() - inicio) / 1e9;
+            System.out.printf("Envio: %d anexos de %d KB, %.0f MB/s (com SHA-256)%n",
+                    quantidade, tamanho / 1024, (double) quantidade * tamanho / segundos / (1 << 20));
+            System.out.println(anexos.estatisticas());
+
+            Path destino = dir.resolve("entrega.bin");
+            for (int rodada = 0; rodada < 2; rodada++) { // A primeira rodada aquece o cache de páginas e o JIT
+                inicio = System.nanoTime();
+                long bytes = 0;
+                try (FileChannel saida = FileChannel.open(destino, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                    for (String hash : hashes) {
+                        bytes += anexos.transferir(hash, saida);
+                    }
+                }
+                double transferTo = bytes / ((System.nanoTime() - inicio) / 1e9) / (1 << 20);
+
+                inicio = System.nanoTime();
+                try (OutputStream saida = new BufferedOutputStream(Files.newOutputStream(destino), 1 << 16)) {
+                    for (String hash : hashes) {
+                        try (InputStream in = Files.newInputStream(anexos.caminho(hash))) {
+                            in.transferTo(saida);
+                        }
+                    }
+                }
+                double streams = bytes / ((System.nanoTime() - inicio) / 1e9) / (1 << 20);
+                if (rodada == 1) {
+                    System.out.printf("Entrega de %d MB: transferTo %.0f MB/s, streams %.0f MB/s%n",
+                            bytes >> 20, transferTo, streams);
+                }
+            }
+
+            Path foto = dir.resolve("foto.jpg");
+            BufferedImage grande = new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = grande.createGraphics();
+            g.setPaint(new GradientPaint(0, 0, Color.ORANGE, 4000, 3000, Color.BLUE));
+            g.fillRect(0, 0, 4000, 3000);
+            g.dispose();
+            ImageIO.write(grande, "jpg", foto.toFile());
+            String hashFoto;
+            try (InputStream in = Files.newInputStream(foto)) {
+                hashFoto = anexos.anexar("1", "foto.jpg", in).getHash();
+            }
+            inicio = System.nanoTime();
+            BufferedImage miniatura = anexos.miniatura(hashFoto, 40);
+            System.out.printf("Miniatura %dx%d de uma foto 4000x3000 (%d KB): geração %.0f ms",
+                    miniatura.getWidth(), miniatura.getHeight(), Files.size(foto) / 1024, (System.nanoTime() - inicio) / 1e6);
+            inicio = System.nanoTime();
+            int leituras = 200;
+            for (int i = 0; i < leituras; i++) {
+                anexos.miniatura(hashFoto, 40);
+            }
+            System.out.printf(", leitura do cache %.2f ms%n", (System.nanoTime() - inicio) / 1e6 / leituras);
+            inicio = System.nanoTime();
+            ImageIO.read(foto.toFile());
+            System.out.printf("Para comparação, decodificar a foto inteira: %.0f ms%n", (System.nanoTime() - inicio) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Verificação de conformidade e benchmark executados contra todos os armazenamentos.
+ * O backend JDBC só é incluído se {@code petshop.jdbc.url} for informado e o driver estiver no classpath;
+ * a URL deve apontar para um banco vazio.
+ *
+ * Uso: java -cp out ArmazenamentoBenchmark [quantidade]
+ */
+public class ArmazenamentoBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        Path dir = Files.createTempDirectory("petshop-bench");
+
+        Map<String, Supplier<ArmazenamentoAnimais>> backends = new LinkedHashMap<>();
+        backends.put("serializado", () -> new ArmazenamentoSerializado(dir.resolve("animais.dat").toString()));
+        backends.put("diario", () -> new ArmazenamentoDiario(dir.resolve("animais.journal").toString()));
+        backends.put("blocos", () -> new ArmazenamentoBlocos(dir.resolve("animais.blocos").toString()));
+        String url = System.getProperty("petshop.jdbc.url");
+        if (url != null) {
+            backends.put("jdbc", () -> new ArmazenamentoJdbc(url, System.getProperty("petshop.jdbc.usuario", ""),
+                    System.getProperty("petshop.jdbc.senha", ""), 4));
+        }
+
+        for (Map.Entry<String, Supplier<ArmazenamentoAnimais>> backend : backends.entrySet()) {
+            verificarConformidade(backend.getKey(), backend.getValue());
+            medir(backend.getKey(), backend.getValue(), quantidade);
+        }
+    }
+
+    /**
+     * Executa inserção, atualização e remoção e confere o resultado após recarregar.
+     */
+    private static void verificarConformidade(String nome, Supplier<ArmazenamentoAnimais> fabrica) throws IOException {
+        try (ArmazenamentoAnimais armazenamento = fabrica.get()) {
+            armazenamento.carregar();
+            armazenamento.inserir(new Cachorro("c1", "Rex", 3, "Labrador", "Grande"));
+            armazenamento.inserir(new Gato("c2", "Mimi", 2, "Siamês", true));
+            armazenamento.inserir(new Gato("c3", "Tom", 5, "SRD", false));
+            exigir(armazenamento.buscarPorId("c3") != null, nome, "busca por ID não encontrou animal inserido");
+            armazenamento.atualizar(new Cachorro("c1", "Rex", 4, "Labrador", "Médio"));
+            armazenamento.remover("c3");
+            exigir(armazenamento.buscarPorId("c3") == null, nome, "busca por ID encontrou animal removido");
+            Animal rex = armazenamento.buscarPorId("c1");
+            exigir(rex != null && rex.getIdade() == 4, nome, "busca por ID retornou versão desatualizada");
+        }
+        try (ArmazenamentoAnimais armazenamento = fabrica.get()) {
+            Map<String, Animal> porId = new LinkedHashMap<>();
+            for (Animal animal : armazenamento.carregar()) {
+                porId.put(animal.getId(), animal);
+            }
+            exigir(porId.size() == 2, nome, "esperados 2 animais, encontrados " + porId.size());
+            Cachorro rex = (Cachorro) porId.get("c1");
+            exigir(rex != null && rex.getIdade() == 4 && "Médio".equals(rex.getPorte()), nome, "atualização não persistida");
+            Gato mimi = (Gato) porId.get("c2");
+            exigir(mimi != null && mimi.isCastrado() && "Siamês".equals(mimi.getRaca()), nome, "campos do gato divergentes");
+            exigir(!porId.containsKey("c3"), nome, "remoção não persistida");
+            for (String id : porId.keySet()) {
+                armazenamento.remover(id);
+            }
+        }
+        System.out.println("[" + nome + "] conformidade OK");
+    }
+
+    private static void medir(String nome, Supplier<ArmazenamentoAnimais> fabrica, int quantidade) throws IOException {
+        List<Animal> lote = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            lote.add(i % 2 == 0
+                    ? new Cachorro("b" + i, "Cachorro " + i, i % 15, "Raça " + (i % 40), "Médio")
+                    : new Gato("b" + i, "Gato " + i, i % 15, "Raça " + (i % 40), i % 3 == 0));
+        }
+
+        try (ArmazenamentoAnimais armazenamento = fabrica.get()) {
+            armazenamento.carregar();
+            long inicio = System.nanoTime();
+            armazenamento.inserirTodos(lote);
+            long loteNs = System.nanoTime() - inicio;
+
+            int atualizacoes = Math.min(200, quantidade);
+            inicio = System.nanoTime();
+            for (int i = 0; i < atualizacoes; i++) {
+                Animal animal = lote.get(i);
+                animal.setIdade(animal.getIdade() + 1);
+                armazenamento.atualizar(animal);
+            }
+            long atualizacaoNs = (System.nanoTime() - inicio) / atualizacoes;
+
+            System.out.printf("[%s] inserção em lote de %d: %.1f ms; atualização individual: %.1f µs%n",
+                    nome, quantidade, loteNs / 1e6, atualizacaoNs / 1e3);
+        }
+        try (ArmazenamentoAnimais armazenamento = fabrica.get()) {
+            long inicio = System.nanoTime();
+            int carregados = armazenamento.carregar().size();
+            System.out.printf("[%s] carga de %d animais: %.1f ms%n", nome, carregados, (System.nanoTime() - inicio) / 1e6);
+
+            // Buscas concentradas em poucos IDs, como acontece na tela de alteração
+            Random aleatorio = new Random(42);
+            int buscas = 20_000;
+            inicio = System.nanoTime();
+            for (int i = 0; i < buscas; i++) {
+                int indice = aleatorio.nextInt(10) < 8 ? aleatorio.nextInt(Math.min(500, quantidade)) : aleatorio.nextInt(quantidade);
+                armazenamento.buscarPorId("b" + indice);
+            }
+            System.out.printf("[%s] busca por ID: %.2f µs%n", nome, (System.nanoTime() - inicio) / 1e3 / buscas);
+        }
+    }
+
+    private static void exigir(boolean condicao, String backend, String mensagem) {
+        if (!condicao) {
+            throw new IllegalStateException("[" + backend + "] " + mensagem);
+        }
+    }
+}
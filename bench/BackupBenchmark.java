@@ -0,0 +1,151 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Spliterator;
+
+/**
+ * Mede os backups com o sistema em uso: um escritor grava sem parar enquanto são feitos o
+ * backup completo e o incremental, e o benchmark informa a vazão de cada um e quanto o escritor
+ * foi afetado. Depois restaura o cadastro em dois pontos (uma seq do meio das gravações e o
+ * estado final) e confere o resultado, animal por animal.
+ *
+ * Uso: java -cp out BackupBenchmark [animais] [segundosEscrevendo]
+ */
+public class BackupBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int segundos = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Path dir = Files.createTempDirectory("petshop-backup");
+        PetshopService service = new PetshopService(new ArmazenamentoDiario(dir.resolve("animais.journal").toString()));
+        LogAlteracoes log = new LogAlteracoes(dir.resolve("alteracoes"), LogAlteracoes.TAMANHO_SEGMENTO_PADRAO);
+        service.setLogAlteracoes(log);
+        BackupOnline backup = new BackupOnline(service, log, dir.resolve("backup"));
+
+        List<Animal> animais = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            animais.add(i % 2 == 0 ? new Cachorro("Pet " + i, i % 20, "SRD", "Médio") : new Gato("Pet " + i, i % 20, "SRD", false));
+        }
+        service.adicionarAnimais(animais);
+        animais = null;
+
+        Escritor escritor = new Escritor(service, quantidade);
+        escritor.start();
+        Thread.sleep(2000);
+        escritor.zerar(); // Descarta o aquecimento
+        Thread.sleep(2000);
+        long[] semBackup = escritor.zerar();
+
+        BackupOnline.Resultado completo = backup.completo();
+        long[] duranteCompleto = escritor.zerar();
+        System.out.println(completo);
+        System.out.printf("Escritor: %,.0f gravações/s sem backup (maior latência %.1f ms), %,.0f durante o backup completo (maior latência %.1f ms)%n",
+                semBackup[0] / 2.0, semBackup[1] / 1e6, duranteCompleto[0] / (completo.getNanos() / 1e9), duranteCompleto[1] / 1e6);
+
+        Thread.sleep(segundos * 500L);
+        long seqMeio;
+        Map<String, String> estadoMeio;
+        synchronized (service) { // Nenhuma gravação entre a seq e o instantâneo
+            seqMeio = log.getUltimaSeq();
+            estadoMeio = copiar(service);
+        }
+        Thread.sleep(segundos * 500L);
+
+        escritor.zerar();
+        BackupOnline.Resultado incremental = backup.incremental();
+        long[] duranteIncremental = escritor.zerar();
+        System.out.println(incremental);
+        System.out.printf("Escritor durante o backup incremental: %d gravações, maior latência %.1f ms%n",
+                duranteIncremental[0], duranteIncremental[1] / 1e6);
+        escritor.parar();
+        backup.incremental(); // Fecha o segmento com as últimas gravações
+        Map<String, String> estadoFinal = copiar(service);
+
+        conferir(dir, seqMeio, estadoMeio, "meio");
+        conferir(dir, Long.MAX_VALUE, estadoFinal, "final");
+        backup.close();
+        service.fechar();
+    }
+
+    private static void conferir(Path dir, long seq, Map<String, String> esperado, String nome) throws Exception {
+        PetshopService restaurado = new PetshopService(new ArmazenamentoDiario(dir.resolve("restaurado-" + nome + ".journal").toString()));
+        BackupOnline.Resultado resultado = BackupOnline.restaurar(dir.resolve("backup"), seq, Long.MAX_VALUE, restaurado);
+        System.out.println(resultado);
+        Map<String, String> obtido = copiar(restaurado);
+        if (!obtido.equals(esperado)) {
+            throw new IllegalStateException("Restauração " + nome + " diverge: " + obtido.size() + " animais, esperados " + esperado.size());
+        }
+        System.out.println("Restauração " + nome + " confere: " + obtido.size() + " animais");
+        restaurado.fechar();
+    }
+
+    private static Map<String, String> copiar(PetshopService service) {
+        Map<String, String> estado = new HashMap<>();
+        try (RegistroVersionado.Instantaneo instantaneo = service.abrirInstantaneo()) {
+            Spliterator<Animal> cursor = instantaneo.cursor(null);
+            cursor.forEachRemaining(animal -> estado.put(animal.getId(), animal.toString()));
+        }
+        return estado;
+    }
+
+    /**
+     * Atualiza animais aleatórios e, a cada 10 gravações, remove um animal e cadastra outro,
+     * medindo a quantidade de gravações e a maior latência de cada gravação.
+     */
+    private static final class Escritor extends Thread {
+        private final PetshopService service;
+        private final Random aleatorio = new Random(42);
+        private final List<String> ids = new ArrayList<>();
+        private volatile boolean parar;
+        private long gravacoes;
+        private long maiorLatencia;
+
+        Escritor(PetshopService service, int quantidade) {
+            this.service = service;
+            for (int i = 1; i <= quantidade; i++) {
+                ids.add(String.valueOf(i));
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!parar) {
+                long inicio = System.nanoTime();
+                int posicao = aleatorio.nextInt(ids.size());
+                String id = ids.get(posicao);
+                if (aleatorio.nextInt(10) == 0) {
+                    service.removerAnimal(id);
+                    Animal novo = new Gato("Novo", aleatorio.nextInt(20), "Persa", true);
+                    service.adicionarAnimal(novo);
+                    ids.set(posicao, novo.getId());
+                } else {
+                    service.atualizarAnimal(new Cachorro(id, "Pet " + id, aleatorio.nextInt(20), "Labrador", "Grande"));
+                }
+                long latencia = System.nanoTime() - inicio;
+                synchronized (this) {
+                    gravacoes++;
+                    maiorLatencia = Math.max(maiorLatencia, latencia);
+                }
+            }
+        }
+
+        /**
+         * @return Gravações e maior latência (ns) desde a última chamada.
+         */
+        synchronized long[] zerar() {
+            long[] medidas = {gravacoes, maiorLatencia};
+            gravacoes = 0;
+            maiorLatencia = 0;
+            return medidas;
+        }
+
+        void parar() throws InterruptedException {
+            parar = true;
+            join();
+        }
+    }
+}
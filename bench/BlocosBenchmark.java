@@ -0,0 +1,110 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Compara o arquivo de blocos comprimidos com os formatos sem compressão (serializado e diário):
+ * tamanho em disco, tempo de carga e latência da busca por ID em IDs aleatórios, para alguns
+ * tamanhos de bloco.
+ *
+ * Os animais têm nomes formados por sílabas e raças de listas curtas, como num cadastro real.
+ * As buscas no formato serializado percorrem a lista inteira e por isso são poucas.
+ *
+ * Uso: java -cp out BlocosBenchmark [quantidade]
+ */
+public class BlocosBenchmark {
+    private static final String[] SILABAS = {
+            "ba", "be", "bi", "bo", "lu", "la", "li", "ma", "me", "mi", "na", "ne", "no", "pa", "pi",
+            "po", "ra", "re", "ri", "to", "ti", "ta", "ca", "co", "da", "di", "fe", "fi", "ju", "ze"};
+    private static final String[] RACAS_CACHORRO = {
+            "SRD", "Labrador", "Poodle", "Golden Retriever", "Shih Tzu", "Yorkshire", "Bulldog Francês",
+            "Pinscher", "Dachshund", "Lhasa Apso", "Beagle", "Border Collie", "Rottweiler", "Pastor Alemão"};
+    private static final String[] PORTES = {"Pequeno", "Médio", "Grande"};
+    private static final String[] RACAS_GATO = {"SRD", "Siamês", "Persa", "Maine Coon", "Angorá", "Sphynx", "Ragdoll"};
+
+    public static void main(String[] args) throws Exception {
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random aleatorio = new Random(42);
+        List<Animal> animais = new ArrayList<>(quantidade);
+        for (int i = 1; i <= quantidade; i++) {
+            StringBuilder nome = new StringBuilder();
+            for (int silabas = 2 + aleatorio.nextInt(2); silabas > 0; silabas--) {
+                nome.append(SILABAS[aleatorio.nextInt(SILABAS.length)]);
+            }
+            nome.setCharAt(0, Character.toUpperCase(nome.charAt(0)));
+            int idade = aleatorio.nextInt(20);
+            animais.add(aleatorio.nextInt(3) == 0
+                    ? new Gato(String.valueOf(i), nome.toString(), idade, RACAS_GATO[aleatorio.nextInt(RACAS_GATO.length)], aleatorio.nextBoolean())
+                    : new Cachorro(String.valueOf(i), nome.toString(), idade,
+                    RACAS_CACHORRO[aleatorio.nextInt(RACAS_CACHORRO.length)], PORTES[aleatorio.nextInt(PORTES.length)]));
+        }
+
+        Path dir = Files.createTempDirectory("petshop-blocos");
+        Map<String, Path> arquivos = new LinkedHashMap<>();
+        Map<String, Supplier<ArmazenamentoAnimais>> formatos = new LinkedHashMap<>();
+        arquivos.put("serializado", dir.resolve("animais.dat"));
+        formatos.put("serializado", () -> new ArmazenamentoSerializado(arquivos.get("serializado").toString()));
+        arquivos.put("diario", dir.resolve("animais.journal"));
+        formatos.put("diario", () -> new ArmazenamentoDiario(arquivos.get("diario").toString()));
+        for (int tamanho : new int[] {4096, 16384, 65536}) {
+            String nome = "blocos " + tamanho / 1024 + " KB";
+            arquivos.put(nome, dir.resolve("animais-" + tamanho + ".blocos"));
+            formatos.put(nome, () -> new ArmazenamentoBlocos(arquivos.get(nome).toString(), tamanho));
+        }
+
+        System.out.printf("%d animais%n", quantidade);
+        System.out.printf("%-14s %12s %10s %10s %14s%n", "formato", "bytes", "bytes/animal", "carga (ms)", "busca (µs)");
+        for (Map.Entry<String, Supplier<ArmazenamentoAnimais>> formato : formatos.entrySet()) {
+            try (ArmazenamentoAnimais armazenamento = formato.getValue().get()) {
+                armazenamento.carregar();
+                armazenamento.inserirTodos(animais);
+            }
+            long bytes = Files.size(arquivos.get(formato.getKey()));
+
+            double cargaMs = Double.MAX_VALUE;
+            for (int rodada = 0; rodada < 3; rodada++) { // A melhor de três, com o JIT aquecido
+                try (ArmazenamentoAnimais armazenamento = formato.getValue().get()) {
+                    long inicio = System.nanoTime();
+                    int carregados = armazenamento.carregar().size();
+                    cargaMs = Math.min(cargaMs, (System.nanoTime() - inicio) / 1e6);
+                    if (carregados != quantidade) {
+                        throw new IllegalStateException(formato.getKey() + ": carregados " + carregados);
+                    }
+                }
+            }
+
+            double buscaUs;
+            try (ArmazenamentoAnimais armazenamento = formato.getValue().get()) {
+                armazenamento.carregar();
+                buscaUs = medirBuscas(armazenamento, quantidade, formato.getKey().equals("serializado") ? 200 : 20_000);
+            }
+            System.out.printf("%-14s %,12d %10.1f %10.0f %14.2f%n",
+                    formato.getKey(), bytes, (double) bytes / quantidade, cargaMs, buscaUs);
+        }
+    }
+
+    /**
+     * Busca IDs aleatórios, conferindo cada animal encontrado. A primeira metade aquece o JIT.
+     */
+    private static double medirBuscas(ArmazenamentoAnimais armazenamento, int quantidade, int buscas) throws IOException {
+        Random aleatorio = new Random(7);
+        long inicio = 0;
+        for (int i = 0; i < 2 * buscas; i++) {
+            if (i == buscas) {
+                inicio = System.nanoTime();
+            }
+            String id = String.valueOf(1 + aleatorio.nextInt(quantidade));
+            Animal animal = armazenamento.buscarPorId(id);
+            if (animal == null || !animal.getId().equals(id)) {
+                throw new IllegalStateException(armazenamento.descricao() + ": animal " + id + " não encontrado");
+            }
+        }
+        return (System.nanoTime() - inicio) / 1e3 / buscas;
+    }
+}
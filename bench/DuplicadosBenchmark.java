@@ -0,0 +1,144 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Mede a detecção de duplicados: montagem do índice por blocos, verificação de um novo
+ * cadastro e o relatório completo em paralelo, e confere quantos duplicados plantados foram
+ * encontrados.
+ *
+ * Os nomes são formados por duas ou três sílabas (dezenas de milhares de nomes, muitos repetidos)
+ * e as raças vêm de listas curtas, como num cadastro real. 1% dos animais são recadastros de um animal anterior
+ * com um erro de digitação no nome ou na raça (fora da primeira letra) e, às vezes, um ano de
+ * diferença na idade.
+ *
+ * Uso: java -cp out DuplicadosBenchmark [quantidade]
+ */
+public class DuplicadosBenchmark {
+    private static final String[] SILABAS = {
+            "ba", "be", "bi", "bo", "lu", "la", "li", "ma", "me", "mi", "na", "ne", "no", "pa", "pi",
+            "po", "ra", "re", "ri", "to", "ti", "ta", "ca", "co", "ça", "da", "di", "fe", "fi", "ju",
+            "ka", "ki", "ze", "zu", "xo", "vi", "so", "sa", "gui", "lã", "thor", "rex", "mel", "bob"};
+    private static final String[] RACAS_CACHORRO = {
+            "SRD", "Labrador", "Poodle", "Golden Retriever", "Shih Tzu", "Yorkshire", "Bulldog Francês",
+            "Pinscher", "Dachshund", "Lhasa Apso", "Beagle", "Border Collie", "Rottweiler", "Pastor Alemão",
+            "Maltês", "Spitz Alemão", "Pug", "Boxer", "Chihuahua", "Schnauzer"};
+    private static final String[] PORTES = {"Pequeno", "Médio", "Grande"};
+    private static final String[] RACAS_GATO = {
+            "SRD", "Siamês", "Persa", "Maine Coon", "Angorá", "Sphynx", "Ragdoll", "Bengal", "British Shorthair", "Exótico"};
+
+    public static void main(String[] args) throws Exception {
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random aleatorio = new Random(42);
+        Path dir = Files.createTempDirectory("petshop-duplicados");
+        PetshopService service = new PetshopService(new ArmazenamentoDiario(dir.resolve("animais.journal").toString()));
+
+        List<Animal> animais = new ArrayList<>(quantidade);
+        Set<String> plantados = new HashSet<>(); // "original;duplicado", IDs atribuídos na ordem de cadastro
+        for (int i = 0; i < quantidade; i++) {
+            if (i > 0 && aleatorio.nextInt(100) == 0) {
+                int original = aleatorio.nextInt(i);
+                animais.add(recadastro(animais.get(original), aleatorio));
+                plantados.add((original + 1) + ";" + (i + 1));
+            } else {
+                animais.add(aleatorio(aleatorio));
+            }
+        }
+        service.adicionarAnimais(animais);
+        System.out.printf("%d animais, %d duplicados plantados, %d processador(es)%n",
+                quantidade, plantados.size(), Runtime.getRuntime().availableProcessors());
+
+        long inicio = System.nanoTime();
+        service.possiveisDuplicados(aleatorio(aleatorio)); // A primeira verificação monta o índice
+        System.out.printf("Montagem do índice por blocos: %.0f ms%n", (System.nanoTime() - inicio) / 1e6);
+
+        int verificacoes = 20_000;
+        int[] avisos = new int[2]; // Animais novos, recadastros
+        inicio = System.nanoTime();
+        for (int i = 0; i < verificacoes; i++) {
+            Animal novo = i % 2 == 0 ? aleatorio(aleatorio) : recadastro(animais.get(aleatorio.nextInt(quantidade)), aleatorio);
+            if (!service.possiveisDuplicados(novo).isEmpty()) {
+                avisos[i % 2]++;
+            }
+        }
+        System.out.printf("Verificação de um novo cadastro: %.1f µs; aviso em %.1f%% dos recadastros e %.1f%% dos animais novos%n",
+                (System.nanoTime() - inicio) / 1e3 / verificacoes, 200.0 * avisos[1] / verificacoes, 200.0 * avisos[0] / verificacoes);
+
+        for (int rodada = 0; rodada < 2; rodada++) { // A primeira rodada aquece o JIT
+            inicio = System.nanoTime();
+            List<DetectorDuplicados.Semelhanca> pares = service.relatorioDuplicados(DetectorDuplicados.LIMIAR_PADRAO);
+            double segundos = (System.nanoTime() - inicio) / 1e9;
+            int encontrados = 0;
+            for (DetectorDuplicados.Semelhanca par : pares) {
+                String a = par.getAnimal().getId();
+                String b = par.getSemelhante().getId();
+                if (plantados.contains(a + ";" + b) || plantados.contains(b + ";" + a)) {
+                    encontrados++;
+                }
+            }
+            if (rodada == 1) {
+                System.out.printf("Relatório completo em paralelo: %.1f s, %d pares; %d de %d duplicados plantados encontrados (%.1f%%)%n",
+                        segundos, pares.size(), encontrados, plantados.size(), 100.0 * encontrados / plantados.size());
+            }
+        }
+    }
+
+    private static Animal aleatorio(Random aleatorio) {
+        StringBuilder silabas = new StringBuilder();
+        for (int i = 2 + aleatorio.nextInt(2); i > 0; i--) {
+            silabas.append(SILABAS[aleatorio.nextInt(SILABAS.length)]);
+        }
+        String nome = Character.toUpperCase(silabas.charAt(0)) + silabas.substring(1);
+        int idade = aleatorio.nextInt(20);
+        if (aleatorio.nextInt(3) == 0) {
+            return new Gato(nome, idade, RACAS_GATO[aleatorio.nextInt(RACAS_GATO.length)], aleatorio.nextBoolean());
+        }
+        return new Cachorro(nome, idade, RACAS_CACHORRO[aleatorio.nextInt(RACAS_CACHORRO.length)], PORTES[aleatorio.nextInt(PORTES.length)]);
+    }
+
+    /**
+     * O mesmo animal cadastrado de novo, com um erro de digitação no nome ou na raça.
+     */
+    private static Animal recadastro(Animal original, Random aleatorio) {
+        String nome = original.getNome();
+        String raca = original.getRaca();
+        if (aleatorio.nextBoolean()) {
+            nome = comErro(nome, aleatorio);
+        } else {
+            raca = comErro(raca, aleatorio);
+        }
+        int idade = original.getIdade();
+        if (aleatorio.nextInt(3) == 0) {
+            idade = Math.max(0, idade + (aleatorio.nextBoolean() ? 1 : -1)); // Fez aniversário ou idade estimada
+        }
+        if (original instanceof Gato gato) {
+            return new Gato(nome, idade, raca, gato.isCastrado());
+        }
+        return new Cachorro(nome, idade, raca, ((Cachorro) original).getPorte());
+    }
+
+    private static String comErro(String texto, Random aleatorio) {
+        if (texto.length() < 3) {
+            return texto + "a";
+        }
+        int posicao = 2 + aleatorio.nextInt(texto.length() - 2); // A primeira letra fica certa
+        StringBuilder errado = new StringBuilder(texto);
+        switch (aleatorio.nextInt(3)) {
+            case 0: // Letra omitida
+                errado.deleteCharAt(posicao);
+                break;
+            case 1: // Letras trocadas
+                char c = errado.charAt(posicao - 1);
+                errado.setCharAt(posicao - 1, errado.charAt(posicao));
+                errado.setCharAt(posicao, c);
+                break;
+            default: // Letra errada
+                errado.setCharAt(posicao, (char) ('a' + aleatorio.nextInt(26)));
+        }
+        return errado.toString();
+    }
+}
@@ -0,0 +1,378 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Gerador de carga para planejamento de capacidade: cria uma população realista de cães e
+ * gatos e aplica ao PetshopService uma mistura de cadastros, alterações, exclusões, buscas e
+ * listagens numa taxa alvo, informando a vazão sustentada, os percentis de latência por
+ * operação, o crescimento do heap e o tamanho do arquivo de dados.
+ *
+ * A carga é de malha aberta: cada operação tem um instante previsto (taxa alvo) e a latência é
+ * medida a partir dele, então a espera causada por operações lentas entra na medida. Com a
+ * mesma semente, a população e a sequência de operações são sempre as mesmas, e execuções em
+ * versões diferentes podem ser comparadas.
+ *
+ * Usa o armazenamento configurado (-Dpetshop.armazenamento); sem -Dpetshop.arquivo, os dados
+ * ficam num diretório temporário. O arquivo de dados deve começar vazio.
+ *
+ * Uso: java -cp out GeradorCarga [chave=valor...]
+ *   semente=42 animais=100000 taxa=2000 (operações/s; 0 = o máximo possível)
+ *   duracao=60 aquecimento=10 intervalo=10 (segundos)
+ *   mistura=buscar:50,listar:10,atualizar:25,adicionar:10,remover:5
+ */
+public class GeradorCarga {
+    private static final String[] NOMES = {
+            "Thor", "Mel", "Luna", "Bob", "Nina", "Pipoca", "Amora", "Fred", "Belinha", "Max", "Lola", "Pandora",
+            "Simba", "Mia", "Frida", "Bidu", "Toby", "Jade", "Chico", "Kiara", "Zeus", "Pérola", "Paçoca", "Tom",
+            "Fumaça", "Bela", "Luke", "Maya", "Theo", "Nala", "Scooby", "Lili", "Bolt", "Estopa", "Pingo", "Cacau"};
+    private static final String[] SILABAS = {"ba", "bi", "lu", "la", "ma", "mi", "na", "no", "pi", "ra", "to", "ze", "ju", "ka"};
+    // Raça, peso na população e porte mais comum
+    private static final Object[][] RACAS_CACHORRO = {
+            {"SRD", 35, "Médio"}, {"Shih Tzu", 9, "Pequeno"}, {"Yorkshire", 6, "Pequeno"}, {"Poodle", 6, "Pequeno"},
+            {"Lhasa Apso", 4, "Pequeno"}, {"Spitz Alemão", 4, "Pequeno"}, {"Pinscher", 4, "Pequeno"},
+            {"Buldogue Francês", 4, "Pequeno"}, {"Labrador", 5, "Grande"}, {"Golden Retriever", 4, "Grande"},
+            {"Border Collie", 3, "Médio"}, {"Beagle", 3, "Médio"}, {"Dachshund", 3, "Pequeno"},
+            {"Pastor Alemão", 3, "Grande"}, {"Rottweiler", 2, "Grande"}, {"Pug", 3, "Pequeno"}, {"Maltês", 2, "Pequeno"}};
+    private static final Object[][] RACAS_GATO = {
+            {"SRD", 70, null}, {"Siamês", 10, null}, {"Persa", 8, null}, {"Maine Coon", 4, null},
+            {"Angorá", 4, null}, {"Ragdoll", 2, null}, {"Sphynx", 2, null}};
+    private static final String[] PORTES = {"Pequeno", "Médio", "Grande"};
+    private static final ColunaAnimal[] COLUNAS_LISTAGEM = {ColunaAnimal.NOME, ColunaAnimal.IDADE, ColunaAnimal.RACA, ColunaAnimal.TIPO};
+
+    enum Operacao { BUSCAR, LISTAR, ATUALIZAR, ADICIONAR, REMOVER }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opcoes = new LinkedHashMap<>();
+        opcoes.put("semente", "42");
+        opcoes.put("animais", "100000");
+        opcoes.put("taxa", "2000");
+        opcoes.put("duracao", "60");
+        opcoes.put("aquecimento", "10");
+        opcoes.put("intervalo", "10");
+        opcoes.put("mistura", "buscar:50,listar:10,atualizar:25,adicionar:10,remover:5");
+        for (String arg : args) {
+            int igual = arg.indexOf('=');
+            if (igual < 0 || !opcoes.containsKey(arg.substring(0, igual))) {
+                throw new IllegalArgumentException("Opção desconhecida: " + arg + " (opções: " + opcoes.keySet() + ")");
+            }
+            opcoes.put(arg.substring(0, igual), arg.substring(igual + 1));
+        }
+        long semente = Long.parseLong(opcoes.get("semente"));
+        int populacao = Integer.parseInt(opcoes.get("animais"));
+        double taxa = Double.parseDouble(opcoes.get("taxa"));
+        int duracao = Integer.parseInt(opcoes.get("duracao"));
+        int aquecimento = Integer.parseInt(opcoes.get("aquecimento"));
+        int intervalo = Integer.parseInt(opcoes.get("intervalo"));
+        Operacao[] mistura = mistura(opcoes.get("mistura"));
+        System.err.println("Configuração: " + opcoes);
+        PrintStream saida = System.out;
+        System.setOut(System.err); // As mensagens do armazenamento não se misturam ao relatório
+
+        if (System.getProperty("petshop.arquivo") == null) {
+            String tipo = System.getProperty("petshop.armazenamento", "serializado");
+            String nome = tipo.equals("diario") ? "animais.journal" : tipo.equals("blocos") ? "animais.blocos" : "animais.dat";
+            System.setProperty("petshop.arquivo", Files.createTempDirectory("petshop-carga").resolve(nome).toString());
+        }
+        Path arquivo = Paths.get(System.getProperty("petshop.arquivo"));
+        MemoryMXBean memoria = ManagementFactory.getMemoryMXBean();
+        long heapInicial = heapUsado(memoria);
+
+        PetshopService service = new PetshopService(ArmazenamentoAnimais.criarConfigurado());
+        if (service.quantidadeAnimais() > 0) {
+            throw new IllegalStateException("O arquivo de dados " + arquivo + " não está vazio; a carga precisa começar do zero para ser repetível.");
+        }
+        Random aleatorio = new Random(semente);
+        List<Animal> animais = new ArrayList<>(populacao);
+        for (int i = 0; i < populacao; i++) {
+            animais.add(novoAnimal(aleatorio));
+        }
+        long inicio = System.nanoTime();
+        service.adicionarAnimais(animais);
+        List<String> ids = new ArrayList<>(populacao); // IDs vivos, para escolher alvos aleatórios
+        for (Animal animal : animais) {
+            ids.add(animal.getId());
+        }
+        animais = null;
+        long heapPopulacao = heapUsado(memoria);
+        saida.printf(Locale.ROOT, "População: %d animais em %.1f s; heap %.1f MB (%.0f bytes/animal); arquivo %.1f MB%n",
+                populacao, (System.nanoTime() - inicio) / 1e9, heapPopulacao / 1e6,
+                (double) (heapPopulacao - heapInicial) / Math.max(1, populacao), tamanho(arquivo) / 1e6);
+
+        Map<Operacao, Histograma> total = new EnumMap<>(Operacao.class);
+        Map<Operacao, Histograma> parcial = new EnumMap<>(Operacao.class);
+        for (Operacao operacao : Operacao.values()) {
+            total.put(operacao, new Histograma());
+            parcial.put(operacao, new Histograma());
+        }
+        long periodo = taxa > 0 ? (long) (1e9 / taxa) : 0;
+        long inicioCarga = System.nanoTime();
+        long fimAquecimento = inicioCarga + aquecimento * 1_000_000_000L;
+        long fim = fimAquecimento + duracao * 1_000_000_000L;
+        long proximoRelatorio = inicioCarga + intervalo * 1_000_000_000L;
+        long inicioParcial = inicioCarga;
+        boolean medindo = aquecimento == 0;
+        long operacoesMedidas = 0;
+        saida.println("segundos;fase;operacoes_por_s;p50_ms;p99_ms;max_ms;heap_mb;animais");
+        for (long i = 0; ; i++) {
+            long previsto = periodo > 0 ? inicioCarga + i * periodo : System.nanoTime();
+            long agora = System.nanoTime();
+            if (previsto > agora) {
+                LockSupport.parkNanos(previsto - agora);
+            }
+            if (previsto >= fim || System.nanoTime() >= fim) { // Sobrecarga: as operações atrasadas não são feitas
+                break;
+            }
+            if (!medindo && previsto >= fimAquecimento) {
+                medindo = true;
+                for (Histograma histograma : total.values()) {
+                    histograma.zerar();
+                }
+            }
+            Operacao operacao = mistura[aleatorio.nextInt(mistura.length)];
+            executar(service, operacao, ids, aleatorio);
+            long latencia = System.nanoTime() - previsto;
+            total.get(operacao).registrar(latencia);
+            parcial.get(operacao).registrar(latencia);
+            if (medindo) {
+                operacoesMedidas++;
+            }
+
+            agora = System.nanoTime();
+            if (agora >= proximoRelatorio) {
+                Histograma todas = Histograma.juntar(parcial.values());
+                saida.printf(Locale.ROOT, "%d;%s;%.0f;%.3f;%.3f;%.3f;%.1f;%d%n",
+                        (agora - inicioCarga) / 1_000_000_000L, inicioParcial < fimAquecimento ? "aquecimento" : "medicao",
+                        todas.getQuantidade() / ((agora - inicioParcial) / 1e9), todas.percentil(50) / 1e6,
+                        todas.percentil(99) / 1e6, todas.getMaximo() / 1e6,
+                        memoria.getHeapMemoryUsage().getUsed() / 1e6, service.quantidadeAnimais());
+                for (Histograma histograma : parcial.values()) {
+                    histograma.zerar();
+                }
+                inicioParcial = agora;
+                proximoRelatorio += intervalo * 1_000_000_000L;
+            }
+        }
+        double segundosMedidos = (System.nanoTime() - fimAquecimento) / 1e9;
+        long heapFinal = heapUsado(memoria);
+
+        saida.println();
+        saida.printf(Locale.ROOT, "Vazão sustentada: %.0f operações/s (alvo: %s) em %.0f s de medição%n",
+                operacoesMedidas / segundosMedidos, taxa > 0 ? String.format(Locale.ROOT, "%.0f", taxa) : "máximo", segundosMedidos);
+        saida.println("operacao;quantidade;p50_ms;p90_ms;p99_ms;p99.9_ms;max_ms");
+        for (Map.Entry<Operacao, Histograma> entrada : total.entrySet()) {
+            imprimir(saida, entrada.getKey().name().toLowerCase(Locale.ROOT), entrada.getValue());
+        }
+        imprimir(saida, "todas", Histograma.juntar(total.values()));
+        saida.printf(Locale.ROOT, "Heap: %.1f MB com a população, %.1f MB no fim (crescimento de %.1f MB); %d animais%n",
+                heapPopulacao / 1e6, heapFinal / 1e6, (heapFinal - heapPopulacao) / 1e6, service.quantidadeAnimais());
+        saida.printf(Locale.ROOT, "Arquivo de dados: %s, %.1f MB (%s)%n", arquivo, tamanho(arquivo) / 1e6, service.resumoArmazenamento());
+        service.fechar();
+    }
+
+    private static void executar(PetshopService service, Operacao operacao, List<String> ids, Random aleatorio) {
+        switch (operacao) {
+            case BUSCAR:
+                service.buscarAnimalPorId(idAleatorio(ids, aleatorio));
+                break;
+            case LISTAR:
+                if (aleatorio.nextBoolean()) { // Página seguinte da listagem por ID
+                    service.paginaApos(idAleatorio(ids, aleatorio), 50);
+                } else { // Primeira página de uma ordenação, às vezes filtrada por raça
+                    FiltroAnimais filtro = aleatorio.nextInt(4) == 0
+                            ? new FiltroAnimais(null, (String) sortear(RACAS_CACHORRO, aleatorio)[0], null, null, null)
+                            : FiltroAnimais.NENHUM;
+                    service.paginaOrdenada(COLUNAS_LISTAGEM[aleatorio.nextInt(COLUNAS_LISTAGEM.length)],
+                            aleatorio.nextBoolean(), filtro, null, 50);
+                }
+                break;
+            case ATUALIZAR:
+                Animal animal = service.buscarAnimalPorId(idAleatorio(ids, aleatorio));
+                if (animal != null) {
+                    animal.setIdade(Math.min(25, animal.getIdade() + 1));
+                    if (animal instanceof Gato gato && !gato.isCastrado()) {
+                        gato.setCastrado(aleatorio.nextBoolean());
+                    }
+                    service.atualizarAnimal(animal);
+                }
+                break;
+            case ADICIONAR:
+                Animal novo = novoAnimal(aleatorio);
+                service.adicionarAnimal(novo);
+                ids.add(novo.getId());
+                break;
+            case REMOVER:
+                if (!ids.isEmpty()) {
+                    int posicao = aleatorio.nextInt(ids.size());
+                    String id = ids.get(posicao);
+                    ids.set(posicao, ids.get(ids.size() - 1));
+                    ids.remove(ids.size() - 1);
+                    service.removerAnimal(id);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Um animal com distribuições próximas às de uma clínica: dois terços de cães, raças e
+     * portes com pesos, idades concentradas nos primeiros anos e a maioria dos gatos castrada.
+     */
+    private static Animal novoAnimal(Random aleatorio) {
+        String nome = aleatorio.nextInt(3) > 0 ? NOMES[aleatorio.nextInt(NOMES.length)] : nomeSilabas(aleatorio);
+        int idade = Math.min(20, (int) (-Math.log(1 - aleatorio.nextDouble()) * 4)); // Exponencial, média de 4 anos
+        if (aleatorio.nextInt(3) == 0) {
+            return new Gato(nome, idade, (String) sortear(RACAS_GATO, aleatorio)[0], aleatorio.nextInt(10) < 7);
+        }
+        Object[] raca = sortear(RACAS_CACHORRO, aleatorio);
+        String porte = aleatorio.nextInt(10) < 8 ? (String) raca[2] : PORTES[aleatorio.nextInt(PORTES.length)];
+        return new Cachorro(nome, idade, (String) raca[0], porte);
+    }
+
+    private static String nomeSilabas(Random aleatorio) {
+        StringBuilder nome = new StringBuilder();
+        for (int i = 2 + aleatorio.nextInt(2); i > 0; i--) {
+            nome.append(SILABAS[aleatorio.nextInt(SILABAS.length)]);
+        }
+        nome.setCharAt(0, Character.toUpperCase(nome.charAt(0)));
+        return nome.toString();
+    }
+
+    private static Object[] sortear(Object[][] opcoes, Random aleatorio) {
+        int soma = 0;
+        for (Object[] opcao : opcoes) {
+            soma += (Integer) opcao[1];
+        }
+        int sorteio = aleatorio.nextInt(soma);
+        for (Object[] opcao : opcoes) {
+            sorteio -= (Integer) opcao[1];
+            if (sorteio < 0) {
+                return opcao;
+            }
+        }
+        return opcoes[opcoes.length - 1];
+    }
+
+    private static String idAleatorio(List<String> ids, Random aleatorio) {
+        return ids.isEmpty() ? "0" : ids.get(aleatorio.nextInt(ids.size()));
+    }
+
+    /**
+     * Converte "buscar:50,listar:10,..." numa tabela de 100 posições (ou a soma dos pesos),
+     * sorteada com um único número aleatório por operação.
+     */
+    private static Operacao[] mistura(String texto) {
+        List<Operacao> tabela = new ArrayList<>();
+        for (String parte : texto.split(",")) {
+            String[] campos = parte.trim().split(":");
+            if (campos.length != 2) {
+                throw new IllegalArgumentException("Mistura inválida: " + parte + " (use operacao:peso)");
+            }
+            Operacao operacao = Operacao.valueOf(campos[0].trim().toUpperCase(Locale.ROOT));
+            for (int i = Integer.parseInt(campos[1].trim()); i > 0; i--) {
+                tabela.add(operacao);
+            }
+        }
+        if (tabela.isEmpty()) {
+            throw new IllegalArgumentException("Mistura sem operações: " + texto);
+        }
+        return tabela.toArray(new Operacao[0]);
+    }
+
+    private static void imprimir(PrintStream saida, String nome, Histograma histograma) {
+        saida.printf(Locale.ROOT, "%s;%d;%.3f;%.3f;%.3f;%.3f;%.3f%n", nome, histograma.getQuantidade(),
+                histograma.percentil(50) / 1e6, histograma.percentil(90) / 1e6, histograma.percentil(99) / 1e6,
+                histograma.percentil(99.9) / 1e6, histograma.getMaximo() / 1e6);
+    }
+
+    private static long heapUsado(MemoryMXBean memoria) {
+        System.gc();
+        return memoria.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long tamanho(Path arquivo) throws IOException {
+        return Files.exists(arquivo) ? Files.size(arquivo) : 0;
+    }
+
+    /**
+     * Histograma de latências com memória fixa: 32 faixas por potência de dois (erro de até
+     * 3%), para que a medição não aumente o heap que está sendo medido.
+     */
+    static final class Histograma {
+        private static final int BITS = 5;
+        private final long[] contagens = new long[64 << BITS];
+        private long quantidade;
+        private long maximo;
+
+        void registrar(long nanos) {
+            long valor = Math.max(0, nanos);
+            int expoente = 63 - Long.numberOfLeadingZeros(valor | 1);
+            int indice = expoente < BITS ? (int) valor
+                    : ((expoente - BITS + 1) << BITS) + (int) ((valor >>> (expoente - BITS)) & ((1 << BITS) - 1));
+            contagens[indice]++;
+            quantidade++;
+            maximo = Math.max(maximo, valor);
+        }
+
+        /**
+         * @return O limite superior da faixa que contém o percentil.
+         */
+        long percentil(double percentil) {
+            long alvo = (long) Math.ceil(quantidade * percentil / 100);
+            long acumulado = 0;
+            for (int indice = 0; indice < contagens.length; indice++) {
+                acumulado += contagens[indice];
+                if (acumulado >= alvo && acumulado > 0) {
+                    return Math.min(maximo, limiteSuperior(indice));
+                }
+            }
+            return maximo;
+        }
+
+        private static long limiteSuperior(int indice) {
+            if (indice < (1 << BITS)) {
+                return indice;
+            }
+            int deslocamento = (indice >> BITS) - 1;
+            long faixa = (1 << BITS) + (indice & ((1 << BITS) - 1));
+            return ((faixa + 1) << deslocamento) - 1;
+        }
+
+        long getQuantidade() {
+            return quantidade;
+        }
+
+        long getMaximo() {
+            return maximo;
+        }
+
+        void zerar() {
+            java.util.Arrays.fill(contagens, 0);
+            quantidade = 0;
+            maximo = 0;
+        }
+
+        static Histograma juntar(Iterable<Histograma> histogramas) {
+            Histograma soma = new Histograma();
+            for (Histograma histograma : histogramas) {
+                for (int i = 0; i < soma.contagens.length; i++) {
+                    soma.contagens[i] += histograma.contagens[i];
+                }
+                soma.quantidade += histograma.quantidade;
+                soma.maximo = Math.max(soma.maximo, histograma.maximo);
+            }
+            return soma;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Mede o histórico de visitas: ingestão (uma a uma e em lotes), abrir o histórico só para
+ * anexar uma visita, montagem do índice na primeira consulta (com e sem os arquivos de índice,
+ * conferindo que dão o mesmo resultado), "últimas N visitas" de um animal e consultas por período.
+ *
+ * As visitas são distribuídas ao longo de dois anos, em ordem cronológica com 1% de
+ * registros retroativos, para um conjunto de animais com IDs sequenciais.
+ *
+ * Uso: java -cp out HistoricoBenchmark [visitas] [animais]
+ */
+public class HistoricoBenchmark {
+    private static final long INICIO = LocalDate.of(2024, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    private static final long DOIS_ANOS = 2L * 365 * 24 * 3600 * 1000;
+
+    public static void main(String[] args) throws Exception {
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int animais = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        Path dir = Files.createTempDirectory("petshop-historico");
+        Random aleatorio = new Random(42);
+        Visita.Tipo[] tipos = Visita.Tipo.TODOS;
+
+        List<Visita> visitas = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            long instante = INICIO + DOIS_ANOS * i / quantidade;
+            if (aleatorio.nextInt(100) == 0) {
+                instante -= aleatorio.nextInt(30) * 24L * 3600 * 1000; // Lançamento retroativo
+            }
+            visitas.add(new Visita(String.valueOf(1 + aleatorio.nextInt(animais)), instante,
+                    tipos[aleatorio.nextInt(tipos.length)], "Atendimento " + i));
+        }
+
+        HistoricoVisitas historico = new HistoricoVisitas(dir);
+        int individuais = Math.min(100_000, quantidade / 10);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < individuais; i++) {
+            historico.registrar(visitas.get(i));
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.printf("Ingestão uma a uma: %d visitas, %,.0f visitas/s%n", individuais, individuais / segundos);
+
+        inicio = System.nanoTime();
+        for (int i = individuais; i < quantidade; i += 10_000) {
+            historico.registrarTodas(visitas.subList(i, Math.min(quantidade, i + 10_000)));
+        }
+        segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.printf("Ingestão em lotes de 10000: %d visitas, %,.0f visitas/s%n",
+                quantidade - individuais, (quantidade - individuais) / segundos);
+        System.out.println(historico.estatisticas());
+        inicio = System.nanoTime();
+        historico.close();
+        System.out.printf("Fechamento (gravação dos arquivos de índice): %.0f ms%n", (System.nanoTime() - inicio) / 1e6);
+        visitas = null; // Libera a massa de teste antes de medir a reabertura
+
+        inicio = System.nanoTime();
+        try (HistoricoVisitas anexar = new HistoricoVisitas(dir)) { // Como o comando visita
+            anexar.registrar(new Visita("1", INICIO + DOIS_ANOS - 1, tipos[0], "Visita anexada"));
+        }
+        System.out.printf("Abrir, anexar uma visita e fechar: %.1f ms%n", (System.nanoTime() - inicio) / 1e6);
+
+        List<List<Visita>> comArquivosDeIndice = new ArrayList<>();
+        try (HistoricoVisitas consulta = new HistoricoVisitas(dir)) {
+            inicio = System.nanoTime();
+            comArquivosDeIndice.add(consulta.ultimas("1", 10));
+            System.out.printf("Primeira consulta (índice montado dos arquivos .idx): %.0f ms%n", (System.nanoTime() - inicio) / 1e6);
+
+            int consultas = 20_000;
+            int lidas = 0;
+            inicio = System.nanoTime();
+            for (int i = 0; i < consultas; i++) {
+                List<Visita> ultimas = consulta.ultimas(String.valueOf(1 + aleatorio.nextInt(animais)), 10);
+                for (int j = 1; j < ultimas.size(); j++) {
+                    if (ultimas.get(j - 1).getInstante() < ultimas.get(j).getInstante()) {
+                        throw new IllegalStateException("Últimas visitas fora de ordem");
+                    }
+                }
+                lidas += ultimas.size();
+            }
+            System.out.printf("Últimas 10 visitas de um animal: %.1f µs por consulta (%d visitas lidas)%n",
+                    (System.nanoTime() - inicio) / 1e3 / consultas, lidas);
+
+            Instant de = Instant.ofEpochMilli(INICIO + DOIS_ANOS / 2);
+            Instant ate = de.plusSeconds(30L * 24 * 3600);
+            inicio = System.nanoTime();
+            long noPeriodo = consulta.percorrerEntre(de, ate, visita -> { });
+            System.out.printf("Todas as visitas de 30 dias: %d visitas em %.0f ms%n", noPeriodo, (System.nanoTime() - inicio) / 1e6);
+
+            inicio = System.nanoTime();
+            int doAnimal = 0;
+            for (int i = 0; i < consultas; i++) {
+                doAnimal += consulta.doAnimalEntre(String.valueOf(1 + aleatorio.nextInt(animais)), de, ate).size();
+            }
+            System.out.printf("Visitas de um animal em 30 dias: %.1f µs por consulta (%d visitas lidas)%n",
+                    (System.nanoTime() - inicio) / 1e3 / consultas, doAnimal);
+            for (int id = 2; id <= Math.min(animais, 1000); id++) {
+                comArquivosDeIndice.add(consulta.ultimas(String.valueOf(id), 10));
+            }
+        }
+
+        try (Stream<Path> arquivos = Files.list(dir)) { // Sem os arquivos de índice, os segmentos são lidos por inteiro
+            for (Path arquivo : arquivos.filter(a -> a.toString().endsWith(".idx")).toList()) {
+                Files.delete(arquivo);
+            }
+        }
+        try (HistoricoVisitas consulta = new HistoricoVisitas(dir)) {
+            inicio = System.nanoTime();
+            List<List<Visita>> lendoSegmentos = new ArrayList<>();
+            lendoSegmentos.add(consulta.ultimas("1", 10));
+            System.out.printf("Primeira consulta sem arquivos de índice (segmentos lidos por inteiro): %.0f ms%n", (System.nanoTime() - inicio) / 1e6);
+            for (int id = 2; id <= Math.min(animais, 1000); id++) {
+                lendoSegmentos.add(consulta.ultimas(String.valueOf(id), 10));
+            }
+            if (!descrever(lendoSegmentos).equals(descrever(comArquivosDeIndice))) {
+                throw new IllegalStateException("O índice montado dos arquivos .idx difere do montado lendo os segmentos");
+            }
+            System.out.println("Índices conferem: " + lendoSegmentos.size() + " animais");
+        }
+    }
+
+    private static List<String> descrever(List<List<Visita>> consultas) {
+        List<String> descricoes = new ArrayList<>();
+        for (List<Visita> visitas : consultas) {
+            for (Visita visita : visitas) {
+                descricoes.add(visita.getIdAnimal() + ";" + visita.getInstante() + ";" + visita.getDescricao());
+            }
+        }
+        return descricoes;
+    }
+}
@@ -0,0 +1,85 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Mede o tempo de inicialização da aplicação gráfica em processos novos, com e sem o
+ * arquivo de CDS gerado por scripts/build.sh. Cada execução informa o tempo até o
+ * primeiro quadro e até ficar interativa (ver MedidorInicializacao).
+ *
+ * Requer um display. Uso: scripts/build.sh e depois java -cp out/build/classes:bench InicializacaoBenchmark [execuções]
+ */
+public class InicializacaoBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int execucoes = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        String jar = "out/build/petshop.jar";
+        String jsa = "out/build/petshop.jsa";
+        if (!new File(jar).exists()) {
+            System.err.println("Execute scripts/build.sh antes do benchmark.");
+            System.exit(2);
+        }
+
+        medir("sem CDS", execucoes, jar, "-Xshare:off");
+        if (new File(jsa).exists()) {
+            medir("com AppCDS", execucoes, jar, "-XX:SharedArchiveFile=" + jsa);
+        } else {
+            System.out.println("Arquivo " + jsa + " não encontrado; medição com AppCDS ignorada.");
+        }
+    }
+
+    private static void medir(String cenario, int execucoes, String jar, String opcaoCds) throws IOException, InterruptedException {
+        long[] primeiroQuadro = new long[execucoes];
+        long[] interativo = new long[execucoes];
+        for (int i = 0; i < execucoes; i++) {
+            List<String> comando = new ArrayList<>(List.of(
+                    System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                    opcaoCds,
+                    "-Dpetshop.inicio.medir=true",
+                    "-Dpetshop.inicio.sair=true"));
+            for (String propriedade : new String[]{"petshop.armazenamento", "petshop.arquivo"}) {
+                if (System.getProperty(propriedade) != null) {
+                    comando.add("-D" + propriedade + "=" + System.getProperty(propriedade));
+                }
+            }
+            comando.addAll(List.of("-cp", jar, "PetshopApp"));
+
+            Process processo = new ProcessBuilder(comando).redirectErrorStream(true).start();
+            String resultado = null;
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(processo.getInputStream(), StandardCharsets.UTF_8))) {
+                String linha;
+                while ((linha = in.readLine()) != null) {
+                    if (linha.startsWith("[inicio]")) {
+                        resultado = linha;
+                    }
+                }
+            }
+            processo.waitFor();
+            if (resultado == null) {
+                throw new IllegalStateException("A aplicação não informou os tempos de inicialização (há um display disponível?)");
+            }
+            primeiroQuadro[i] = valor(resultado, "primeiroQuadro=");
+            interativo[i] = valor(resultado, "interativo=");
+        }
+        System.out.printf("%s: primeiro quadro mediana %d ms (mín. %d); interativo mediana %d ms (mín. %d)%n",
+                cenario, mediana(primeiroQuadro), Arrays.stream(primeiroQuadro).min().orElse(0),
+                mediana(interativo), Arrays.stream(interativo).min().orElse(0));
+    }
+
+    private static long valor(String linha, String chave) {
+        int inicio = linha.indexOf(chave) + chave.length();
+        int fim = linha.indexOf(' ', inicio);
+        return Long.parseLong(fim < 0 ? linha.substring(inicio) : linha.substring(inicio, fim));
+    }
+
+    private static long mediana(long[] valores) {
+        long[] ordenados = valores.clone();
+        Arrays.sort(ordenados);
+        return ordenados[ordenados.length / 2];
+    }
+}
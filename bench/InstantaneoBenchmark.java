@@ -0,0 +1,191 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Mede a vazão de gravação do PetshopService sozinha e com leituras completas concorrentes
+ * feitas por instantâneos (MVCC), e confere que cada instantâneo enxerga um cadastro estável.
+ *
+ * O escritor atualiza animais aleatórios e, a cada 10 gravações, remove um animal e cadastra
+ * outro, mantendo o total constante. O leitor abre um instantâneo, percorre o cadastro duas
+ * vezes e exige o mesmo total e a mesma soma de idades nas duas leituras.
+ *
+ * Para comparação, a última fase faz a mesma leitura sem instantâneo, travando o serviço
+ * durante a leitura (a alternativa para não ver gravações pela metade). Com um único
+ * processador, leitor e escritor também dividem a CPU, então a diferença entre as duas
+ * fases concorrentes é o que mostra o efeito do bloqueio.
+ *
+ * Uso: java -cp out InstantaneoBenchmark [quantidade] [duracaoMs]
+ */
+public class InstantaneoBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        long duracao = args.length > 1 ? Long.parseLong(args[1]) : 3000;
+        Path dir = Files.createTempDirectory("petshop-instantaneo");
+        PetshopService service = new PetshopService(new ArmazenamentoDiario(dir.resolve("animais.journal").toString()));
+
+        List<Animal> animais = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            animais.add(i % 2 == 0 ? new Cachorro("Pet", 0, "SRD", "Médio") : new Gato("Pet", 0, "SRD", false));
+        }
+        service.adicionarAnimais(animais);
+        System.out.printf("%d animais, %d processador(es), %d ms por fase%n",
+                quantidade, Runtime.getRuntime().availableProcessors(), duracao);
+
+        Escritor sozinho = new Escritor(service, animais, duracao);
+        sozinho.run(); // Aquecimento
+        sozinho = new Escritor(service, animais, duracao);
+        sozinho.run();
+        System.out.printf("Escritor sozinho: %,.0f gravações/s%n", sozinho.vazao());
+
+        Leitor leitor = new Leitor(service, quantidade, false);
+        Escritor comInstantaneos = executarComLeitor(service, animais, duracao, leitor);
+        System.out.printf("Escritor com leituras completas por instantâneo: %,.0f gravações/s (%.0f%% do sozinho)%n",
+                comInstantaneos.vazao(), 100 * comInstantaneos.vazao() / sozinho.vazao());
+        System.out.printf("  %d leituras completas (%.1f ms cada), todas estáveis; até %d versões antigas retidas%n",
+                leitor.leituras, leitor.nanosLendo / 1e6 / Math.max(1, leitor.leituras), leitor.maximoRetido);
+
+        Leitor bloqueante = new Leitor(service, quantidade, true);
+        Escritor comBloqueio = executarComLeitor(service, animais, duracao, bloqueante);
+        System.out.printf("Escritor com leituras completas travando o serviço: %,.0f gravações/s (%.0f%% do sozinho)%n",
+                comBloqueio.vazao(), 100 * comBloqueio.vazao() / sozinho.vazao());
+        System.out.printf("  %d leituras completas (%.1f ms cada)%n",
+                bloqueante.leituras, bloqueante.nanosLendo / 1e6 / Math.max(1, bloqueante.leituras));
+
+        try (RegistroVersionado.Instantaneo instantaneo = service.abrirInstantaneo()) {
+            long total = Leitor.somar(instantaneo.cursor(null))[0];
+            if (total != quantidade) {
+                throw new IllegalStateException("Instantâneo final com " + total + " animais, esperado " + quantidade);
+            }
+        }
+        System.out.println("Instantâneos fechados; versões antigas descartadas: "
+                + (service.versoesRetidas() == 0 ? "sim" : "não (" + service.versoesRetidas() + " retidas)"));
+        service.fechar();
+    }
+
+    private static Escritor executarComLeitor(PetshopService service, List<Animal> animais, long duracao,
+                                              Leitor leitor) throws Exception {
+        Escritor escritor = new Escritor(service, animais, duracao);
+        Thread threadLeitor = new Thread(leitor, "leitor");
+        threadLeitor.start();
+        escritor.run();
+        leitor.parar.set(true);
+        threadLeitor.join();
+        if (leitor.erro != null) {
+            throw leitor.erro;
+        }
+        return escritor;
+    }
+
+    /**
+     * Atualiza animais aleatórios durante o tempo informado.
+     */
+    private static class Escritor implements Runnable {
+        private final PetshopService service;
+        private final List<Animal> animais;
+        private final long duracao;
+        private final Random aleatorio = new Random(42);
+        private long gravacoes;
+        private long nanos;
+
+        Escritor(PetshopService service, List<Animal> animais, long duracao) {
+            this.service = service;
+            this.animais = animais;
+            this.duracao = duracao;
+        }
+
+        @Override
+        public void run() {
+            long inicio = System.nanoTime();
+            long fim = inicio + duracao * 1_000_000;
+            while (System.nanoTime() < fim) {
+                for (int i = 0; i < 100; i++) {
+                    int posicao = aleatorio.nextInt(animais.size());
+                    if (gravacoes % 10 == 0) {
+                        // Troca um animal por outro, mantendo o total
+                        service.removerAnimal(animais.get(posicao).getId());
+                        Animal novo = new Gato("Pet", 0, "SRD", true);
+                        service.adicionarAnimal(novo);
+                        animais.set(posicao, novo);
+                    } else {
+                        Animal animal = animais.get(posicao);
+                        animal.setIdade((animal.getIdade() + 1) % 20);
+                        service.atualizarAnimal(animal);
+                    }
+                    gravacoes++;
+                }
+            }
+            nanos = System.nanoTime() - inicio;
+        }
+
+        double vazao() {
+            return gravacoes / (nanos / 1e9);
+        }
+    }
+
+    /**
+     * Lê o cadastro inteiro repetidamente, cada vez dentro de um novo instantâneo
+     * ou, se {@code bloqueante}, com o serviço travado.
+     */
+    private static class Leitor implements Runnable {
+        private final PetshopService service;
+        private final int esperado;
+        private final boolean bloqueante;
+        final AtomicBoolean parar = new AtomicBoolean();
+        volatile Exception erro;
+        long leituras;
+        long nanosLendo;
+        int maximoRetido;
+
+        Leitor(PetshopService service, int esperado, boolean bloqueante) {
+            this.service = service;
+            this.esperado = esperado;
+            this.bloqueante = bloqueante;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!parar.get()) {
+                    long inicio = System.nanoTime();
+                    if (bloqueante) {
+                        synchronized (service) { // As gravações do serviço esperam por este monitor
+                            conferir(somar(service.cursor(null)), somar(service.cursor(null)));
+                        }
+                    } else {
+                        try (RegistroVersionado.Instantaneo instantaneo = service.abrirInstantaneo()) {
+                            conferir(somar(instantaneo.cursor(null)), somar(instantaneo.cursor(null)));
+                            maximoRetido = Math.max(maximoRetido, service.versoesRetidas());
+                        }
+                    }
+                    nanosLendo += System.nanoTime() - inicio;
+                    leituras++;
+                }
+            } catch (Exception e) {
+                erro = e;
+            }
+        }
+
+        private void conferir(long[] primeira, long[] segunda) {
+            // A troca de animais são duas gravações, então a leitura pode cair entre elas
+            if (esperado - primeira[0] > 1 || primeira[0] != segunda[0] || primeira[1] != segunda[1]) {
+                throw new IllegalStateException(String.format("Leitura instável: %d/%d animais, soma das idades %d/%d",
+                        primeira[0], segunda[0], primeira[1], segunda[1]));
+            }
+        }
+
+        private static long[] somar(Spliterator<Animal> cursor) {
+            long[] soma = new long[2];
+            cursor.forEachRemaining(animal -> {
+                soma[0]++;
+                soma[1] += animal.getIdade();
+            });
+            return soma;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.StreamSupport;
+
+/**
+ * Mede a ordenação, o filtro e a leitura paginada servidos pelos índices do PetshopService,
+ * incluindo a manutenção incremental dos índices após inserções, alterações e remoções.
+ *
+ * Uso: java -cp out OrdenacaoBenchmark [quantidade]
+ */
+public class OrdenacaoBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path dir = Files.createTempDirectory("petshop-ordenacao");
+        PetshopService service = new PetshopService(new ArmazenamentoDiario(dir.resolve("animais.journal").toString()));
+
+        Random aleatorio = new Random(42);
+        List<Animal> lote = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            String nome = "Pet" + aleatorio.nextInt(quantidade);
+            lote.add(i % 2 == 0
+                    ? new Cachorro(nome, aleatorio.nextInt(18), "Raça " + aleatorio.nextInt(60), "Médio")
+                    : new Gato(nome, aleatorio.nextInt(18), "Raça " + aleatorio.nextInt(60), aleatorio.nextBoolean()));
+        }
+        service.adicionarAnimais(lote);
+
+        for (ColunaAnimal coluna : new ColunaAnimal[]{ColunaAnimal.NOME, ColunaAnimal.IDADE, ColunaAnimal.RACA}) {
+            long inicio = System.nanoTime();
+            service.paginaOrdenada(coluna, true, FiltroAnimais.NENHUM, null, AnimalTableModel.TAMANHO_PAGINA);
+            long construcao = System.nanoTime() - inicio;
+            inicio = System.nanoTime();
+            int linhas = service.paginaOrdenada(coluna, false, FiltroAnimais.NENHUM, null, AnimalTableModel.TAMANHO_PAGINA).getAnimais().size();
+            long reordenacao = System.nanoTime() - inicio;
+            System.out.printf("%s: criação do índice %.1f ms, primeira página invertida (%d linhas) %.1f µs%n",
+                    coluna.getTitulo(), construcao / 1e6, linhas, reordenacao / 1e3);
+        }
+
+        FiltroAnimais filtro = new FiltroAnimais("pet1", "raça 1", "Gato", 2, 10);
+        long inicio = System.nanoTime();
+        int filtrados = service.paginaOrdenada(ColunaAnimal.NOME, true, filtro, null, AnimalTableModel.TAMANHO_PAGINA).getAnimais().size();
+        System.out.printf("Filtro de vários campos: primeira página (%d linhas) em %.1f ms%n", filtrados, (System.nanoTime() - inicio) / 1e6);
+
+        inicio = System.nanoTime();
+        int lidos = 0;
+        String ultimoId = null;
+        List<Animal> pagina;
+        while (!(pagina = service.paginaApos(ultimoId, 1000)).isEmpty()) {
+            lidos += pagina.size();
+            ultimoId = pagina.get(pagina.size() - 1).getId();
+        }
+        System.out.printf("Leitura paginada por ID: %d animais em %.1f ms%n", lidos, (System.nanoTime() - inicio) / 1e6);
+
+        inicio = System.nanoTime();
+        long gatos = StreamSupport.stream(service.cursor(null), true).filter(a -> a instanceof Gato).count();
+        System.out.printf("Contagem paralela pelo cursor: %d gatos em %.1f ms%n", gatos, (System.nanoTime() - inicio) / 1e6);
+
+        // Alterações com os índices já criados
+        int alteracoes = 10_000;
+        inicio = System.nanoTime();
+        for (int i = 0; i < alteracoes; i++) {
+            Animal animal = lote.get(aleatorio.nextInt(quantidade));
+            animal.setNome("Alterado" + i);
+            service.atualizarAnimal(animal);
+        }
+        System.out.printf("Atualização com 3 índices: %.1f µs por animal%n", (System.nanoTime() - inicio) / 1e3 / alteracoes);
+
+        String anterior = null;
+        int conferidos = 0;
+        PaginaAnimais porNome = null;
+        do {
+            porNome = service.paginaOrdenada(ColunaAnimal.NOME, true, FiltroAnimais.NENHUM,
+                    porNome == null ? null : porNome.getUltima(), 1000);
+            for (Animal animal : porNome.getAnimais()) {
+                String nome = Textos.normalizar(animal.getNome());
+                if (anterior != null && anterior.compareTo(nome) > 0) {
+                    throw new IllegalStateException("Índice por nome fora de ordem na linha " + conferidos);
+                }
+                anterior = nome;
+                conferidos++;
+            }
+        } while (porNome.temMais());
+        if (conferidos != quantidade) {
+            throw new IllegalStateException("Leitura paginada retornou " + conferidos + " de " + quantidade + " animais");
+        }
+        System.out.println("Ordem por nome conferida após as alterações.");
+        service.fechar();
+    }
+}
@@ -0,0 +1,98 @@
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.table.TableCellRenderer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Mede quanto a repintura da tabela aloca: lê todas as células de uma página de
+ * {@link AnimalTableModel#TAMANHO_PAGINA} animais, repetidas vezes, e informa os bytes alocados
+ * pela thread (ThreadMXBean) e o tempo por repintura, depois do aquecimento do JIT.
+ *
+ * Compara três caminhos: o cálculo de cada célula a partir dos campos (ColunaAnimal.valor),
+ * a leitura pelo modelo da tabela, que guarda os valores da página atual, e a preparação
+ * dos renderizadores do JTable (sem desenhar), que é o que a repintura faz por célula. Com
+ * o argumento "padrao", a coluna de idade usa o renderizador de números do Swing.
+ *
+ * Uso: java -cp out RenderizacaoBenchmark [repinturas] [padrao]
+ */
+public class RenderizacaoBenchmark {
+    private static Object sumidouro; // Impede o JIT de descartar as leituras
+
+    public static void main(String[] args) throws Exception {
+        int repinturas = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        boolean padrao = args.length > 1 && args[1].equals("padrao");
+        System.setProperty("java.awt.headless", "true");
+        Path dir = Files.createTempDirectory("petshop-renderizacao");
+        PetshopService service = new PetshopService(new ArmazenamentoDiario(dir.resolve("animais.journal").toString()));
+        Random aleatorio = new Random(42);
+        List<Animal> lote = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            lote.add(i % 3 == 0
+                    ? new Gato("Gato " + i, aleatorio.nextInt(20), "SRD", aleatorio.nextBoolean())
+                    : new Cachorro("Cão " + i, aleatorio.nextInt(20), "Raça " + aleatorio.nextInt(30), "Médio"));
+        }
+        service.adicionarAnimais(lote);
+
+        SwingUtilities.invokeAndWait(() -> {
+            AnimalTableModel modelo = new AnimalTableModel(service);
+            modelo.atualizar();
+            JTable tabela = new JTable(modelo);
+            if (!padrao) {
+                tabela.setDefaultRenderer(Integer.class, new AnimalTableModel.RenderizadorIdade()); // Como na PetshopApp
+            }
+            int linhas = modelo.getRowCount();
+            int colunas = modelo.getColumnCount();
+            System.out.printf("Página de %d linhas x %d colunas, %d repinturas%n", linhas, colunas, repinturas);
+            System.out.printf("%-14s %16s %16s%n", "caminho", "bytes/repintura", "µs/repintura");
+
+            medir("calculado", repinturas, () -> {
+                for (int linha = 0; linha < linhas; linha++) {
+                    Animal animal = modelo.getAnimal(linha);
+                    for (ColunaAnimal coluna : ColunaAnimal.TODAS) {
+                        sumidouro = coluna.valor(animal);
+                    }
+                }
+            });
+            medir("modelo", repinturas, () -> {
+                for (int linha = 0; linha < linhas; linha++) {
+                    for (int coluna = 0; coluna < colunas; coluna++) {
+                        sumidouro = modelo.getValueAt(linha, coluna);
+                    }
+                }
+            });
+            medir("renderizador", repinturas / 10, () -> {
+                for (int linha = 0; linha < linhas; linha++) {
+                    for (int coluna = 0; coluna < colunas; coluna++) {
+                        TableCellRenderer renderizador = tabela.getCellRenderer(linha, coluna);
+                        sumidouro = tabela.prepareRenderer(renderizador, linha, coluna);
+                    }
+                }
+            });
+        });
+        service.fechar();
+    }
+
+    /**
+     * Executa a repintura até aquecer o JIT e depois mede a alocação e o tempo médios.
+     */
+    private static void medir(String nome, int repinturas, Runnable repintura) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < repinturas; i++) {
+            repintura.run();
+        }
+        long vazio = -threads.getCurrentThreadAllocatedBytes() + threads.getCurrentThreadAllocatedBytes(); // Custo da própria medição
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        long inicio = System.nanoTime();
+        for (int i = 0; i < repinturas; i++) {
+            repintura.run();
+        }
+        long nanos = System.nanoTime() - inicio;
+        bytes = threads.getCurrentThreadAllocatedBytes() - bytes - vazio;
+        System.out.printf("%-14s %16.1f %16.1f%n", nome, (double) bytes / repinturas, nanos / 1e3 / repinturas);
+    }
+}
@@ -0,0 +1,182 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+
+/**
+ * Mede a replicação com dois processos na mesma máquina: este processo é o primário, com um
+ * escritor, e o seguidor é um segundo processo ({@code PetshopCli seguir}) com o seu próprio
+ * diário, que informa o atraso a cada segundo.
+ *
+ * Fases: o seguidor novo alcança o primário por um instantâneo; o escritor grava sem parar
+ * enquanto o atraso é acompanhado; o seguidor é encerrado, o escritor continua, e um novo
+ * processo seguidor retoma pelo log, sem instantâneo. No fim, o diário do seguidor é aberto e
+ * comparado com o primário, animal por animal.
+ *
+ * Uso: java -cp out ReplicacaoBenchmark [animais] [segundosEscrevendo]
+ */
+public class ReplicacaoBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int segundos = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Path dir = Files.createTempDirectory("petshop-replicacao");
+        PetshopService primario = new PetshopService(new ArmazenamentoDiario(dir.resolve("primario.journal").toString()));
+        List<Animal> animais = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            animais.add(i % 2 == 0 ? new Cachorro("Pet " + i, i % 20, "SRD", "Médio") : new Gato("Pet " + i, i % 20, "SRD", false));
+        }
+        primario.adicionarAnimais(animais);
+
+        Escritor escritor = new Escritor(primario, quantidade);
+        long inicio = System.nanoTime();
+        escritor.escreverPor(2000);
+        double semReplicacao = escritor.gravacoes / ((System.nanoTime() - inicio) / 1e9);
+
+        try (ReplicacaoPrimario replicacao = new ReplicacaoPrimario(primario, new InetSocketAddress("127.0.0.1", 0), 200_000)) {
+            String endereco = "127.0.0.1:" + replicacao.getPorta();
+
+            Seguidor seguidor = new Seguidor(dir, endereco);
+            long inicioInstantaneo = System.nanoTime();
+            String[] linha = seguidor.aguardarSincronia(replicacao.getUltimaSeq(), 1);
+            System.out.printf("Seguidor novo: instantâneo de %s animais aplicado e em dia em até %.1f s (%s instantâneo)%n",
+                    linha[5], (System.nanoTime() - inicioInstantaneo) / 1e9, linha[6]);
+
+            escritor.gravacoes = 0;
+            escritor.replicacao = replicacao;
+            inicio = System.nanoTime();
+            escritor.escreverPor(segundos * 1000L);
+            double comReplicacao = escritor.gravacoes / ((System.nanoTime() - inicio) / 1e9);
+            System.out.printf("Escritor: %,.0f gravações/s sem replicação, %,.0f com um seguidor%n", semReplicacao, comReplicacao);
+            System.out.printf("Atraso durante as gravações: máximo de %d registros não confirmados no primário; "
+                            + "no seguidor, a cada segundo, máximo de %d registros e %d ms%n",
+                    escritor.atrasoMaximo, seguidor.atrasoMaximoRegistros, seguidor.atrasoMaximoMs);
+            linha = seguidor.aguardarSincronia(replicacao.getUltimaSeq(), 0);
+            System.out.println("Seguidor em dia: seq " + linha[1] + "; " + replicacao.estatisticas());
+            seguidor.encerrar();
+
+            long antes = replicacao.getUltimaSeq();
+            escritor.escreverPor(2000); // Gravações enquanto o seguidor está parado
+            long perdidos = replicacao.getUltimaSeq() - antes;
+            Seguidor reiniciado = new Seguidor(dir, endereco);
+            inicio = System.nanoTime();
+            linha = reiniciado.aguardarSincronia(replicacao.getUltimaSeq(), 0);
+            System.out.printf("Seguidor reiniciado: %d registros perdidos recuperados pelo log em até %.1f s (%s instantâneo)%n",
+                    perdidos, (System.nanoTime() - inicio) / 1e9, linha[6]);
+            reiniciado.encerrar();
+        }
+
+        PetshopService replica = new PetshopService(new ArmazenamentoDiario(dir.resolve("seguidor.journal").toString()));
+        int diferentes = 0;
+        try (RegistroVersionado.Instantaneo instantaneo = primario.abrirInstantaneo()) {
+            Spliterator<Animal> cursor = instantaneo.cursor(null);
+            Animal[] atual = new Animal[1];
+            while (cursor.tryAdvance(animal -> atual[0] = animal)) {
+                Animal copia = replica.buscarAnimalPorId(atual[0].getId());
+                if (copia == null || !copia.toString().equals(atual[0].toString())) {
+                    diferentes++;
+                }
+            }
+        }
+        System.out.printf("Diário do seguidor: %d animais, primário: %d, %d diferentes%n",
+                replica.quantidadeAnimais(), primario.quantidadeAnimais(), diferentes);
+        if (diferentes > 0 || replica.quantidadeAnimais() != primario.quantidadeAnimais()) {
+            throw new IllegalStateException("Réplica diverge do primário");
+        }
+        replica.fechar();
+        primario.fechar();
+    }
+
+    /**
+     * Atualiza animais aleatórios e, a cada 10 gravações, remove um animal e cadastra outro.
+     */
+    private static final class Escritor {
+        private final PetshopService service;
+        private final Random aleatorio = new Random(42);
+        private final List<String> ids = new ArrayList<>();
+        ReplicacaoPrimario replicacao;
+        long gravacoes;
+        long atrasoMaximo;
+
+        Escritor(PetshopService service, int quantidade) {
+            this.service = service;
+            for (int i = 1; i <= quantidade; i++) {
+                ids.add(String.valueOf(i));
+            }
+        }
+
+        void escreverPor(long ms) {
+            long fim = System.currentTimeMillis() + ms;
+            while (System.currentTimeMillis() < fim) {
+                int posicao = aleatorio.nextInt(ids.size());
+                String id = ids.get(posicao);
+                if (gravacoes % 10 == 9) {
+                    service.removerAnimal(id);
+                    Animal novo = new Gato("Novo " + gravacoes, aleatorio.nextInt(20), "Persa", true);
+                    service.adicionarAnimal(novo);
+                    ids.set(posicao, novo.getId());
+                    gravacoes += 2;
+                } else {
+                    service.atualizarAnimal(new Cachorro(id, "Pet " + id, aleatorio.nextInt(20), "Labrador", "Grande"));
+                    gravacoes++;
+                }
+                if (replicacao != null && gravacoes % 256 == 0) {
+                    atrasoMaximo = Math.max(atrasoMaximo, replicacao.getAtrasoMaximo());
+                }
+            }
+        }
+    }
+
+    /**
+     * O processo seguidor, com a leitura das linhas de atraso que ele escreve a cada segundo.
+     */
+    private static final class Seguidor {
+        private final Process processo;
+        private final BufferedReader saida;
+        long atrasoMaximoRegistros;
+        long atrasoMaximoMs;
+
+        Seguidor(Path dir, String endereco) throws IOException {
+            processo = new ProcessBuilder("java", "-cp", System.getProperty("java.class.path"),
+                    "-Dpetshop.armazenamento=diario",
+                    "-Dpetshop.arquivo=" + dir.resolve("seguidor.journal"),
+                    "-Dpetshop.replicacao.estado=" + dir.resolve("seguidor.estado"),
+                    "PetshopCli", "seguir", endereco)
+                    .redirectError(dir.resolve("seguidor.log").toFile())
+                    .start();
+            saida = new BufferedReader(new InputStreamReader(processo.getInputStream(), StandardCharsets.UTF_8));
+            saida.readLine(); // Cabeçalho
+        }
+
+        /**
+         * Lê as linhas do seguidor até ele ter aplicado o registro informado, sem atraso.
+         * @param instantaneos Quantos instantâneos o seguidor precisa ter recebido até lá.
+         * @return Os campos da linha em que isso aconteceu.
+         */
+        String[] aguardarSincronia(long seq, int instantaneos) throws IOException {
+            String linha;
+            while ((linha = saida.readLine()) != null) {
+                String[] campos = linha.split(";");
+                long atrasoRegistros = Long.parseLong(campos[3]);
+                atrasoMaximoRegistros = Math.max(atrasoMaximoRegistros, atrasoRegistros);
+                atrasoMaximoMs = Math.max(atrasoMaximoMs, Long.parseLong(campos[4]));
+                if (Long.parseLong(campos[1]) >= seq && atrasoRegistros == 0 && Integer.parseInt(campos[6]) >= instantaneos) {
+                    return campos;
+                }
+            }
+            throw new IOException("O processo seguidor terminou; veja seguidor.log");
+        }
+
+        void encerrar() throws InterruptedException {
+            processo.destroy();
+            processo.waitFor();
+        }
+    }
+}
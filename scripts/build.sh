@@ -0,0 +1,41 @@
+#!/bin/sh
+# Compila o projeto em out/build, empacota em out/build/petshop.jar e gera os arquivos
+# de Class Data Sharing (AppCDS) usados por scripts/petshop.sh e scripts/petshop-cli.sh.
+#
+# Cada arquivo .jsa é gerado por uma execução de treino que carrega as classes usadas na
+# inicialização; as execuções seguintes mapeiam o arquivo em vez de carregar e verificar
+# essas classes novamente. A execução de treino da interface gráfica precisa de um display;
+# sem ele, apenas o arquivo do modo de linha de comando é gerado.
+#
+# Uso: scripts/build.sh [--se-necessario]
+
+DIR=$(cd "$(dirname "$0")/.." && pwd)
+SAIDA="$DIR/out/build"
+CLASSES="$SAIDA/classes"
+JAR="$SAIDA/petshop.jar"
+
+if [ "$1" = "--se-necessario" ] && [ -f "$JAR" ] && [ -z "$(find "$DIR/src" -name '*.java' -newer "$JAR" | head -n 1)" ]; then
+    exit 0
+fi
+
+rm -rf "$SAIDA"
+mkdir -p "$CLASSES"
+javac -encoding UTF-8 -d "$CLASSES" "$DIR"/src/*.java || exit 1
+jar cf "$JAR" -C "$CLASSES" . || exit 1
+
+# Os treinos usam um armazenamento (e um diretório de anexos) temporário para não tocar nos dados reais
+TREINO=$(mktemp -d)
+trap 'rm -rf "$TREINO"' EXIT
+OPCOES_TREINO="-Dpetshop.armazenamento=diario -Dpetshop.arquivo=$TREINO/animais.journal -Dpetshop.anexos.dir=$TREINO/anexos"
+
+java $OPCOES_TREINO -XX:ArchiveClassesAtExit="$SAIDA/petshop-cli.jsa" -cp "$JAR" \
+    PetshopCli estatisticas > /dev/null 2>&1 || echo "Aviso: não foi possível gerar o arquivo CDS do modo de linha de comando." >&2
+
+if java -cp "$JAR" -Djava.awt.headless=false $OPCOES_TREINO -Dpetshop.inicio.sair=true \
+        -XX:ArchiveClassesAtExit="$SAIDA/petshop.jsa" PetshopApp > /dev/null 2>&1; then
+    :
+else
+    rm -f "$SAIDA/petshop.jsa"
+    echo "Aviso: interface gráfica indisponível; arquivo CDS da aplicação não gerado." >&2
+fi
+echo "Build concluído em $SAIDA"
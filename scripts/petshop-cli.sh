@@ -0,0 +1,17 @@
+#!/bin/sh
+# Executa o modo de linha de comando do Petshop (PetshopCli).
+#
+# Compila o projeto quando necessário (scripts/build.sh) e usa o arquivo de Class Data
+# Sharing (AppCDS) gerado pelo build, o que reduz o tempo de inicialização da JVM.
+#
+# Uso: scripts/petshop-cli.sh COMANDO [argumentos]
+# Propriedades de sistema (ex.: -Dpetshop.armazenamento=diario) podem ser passadas em JAVA_OPTS.
+
+DIR=$(cd "$(dirname "$0")/.." && pwd)
+"$DIR/scripts/build.sh" --se-necessario > /dev/null || exit 1
+SAIDA="$DIR/out/build"
+
+if [ -f "$SAIDA/petshop-cli.jsa" ]; then
+    exec java $JAVA_OPTS -XX:SharedArchiveFile="$SAIDA/petshop-cli.jsa" -Xshare:auto -cp "$SAIDA/petshop.jar" PetshopCli "$@"
+fi
+exec java $JAVA_OPTS -cp "$SAIDA/petshop.jar" PetshopCli "$@"
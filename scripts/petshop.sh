@@ -0,0 +1,12 @@
+#!/bin/sh
+# Executa a aplicação gráfica do Petshop usando o arquivo de CDS gerado por scripts/build.sh.
+# Propriedades de sistema (ex.: -Dpetshop.inicio.medir=true) podem ser passadas em JAVA_OPTS.
+
+DIR=$(cd "$(dirname "$0")/.." && pwd)
+"$DIR/scripts/build.sh" --se-necessario || exit 1
+SAIDA="$DIR/out/build"
+
+if [ -f "$SAIDA/petshop.jsa" ]; then
+    exec java $JAVA_OPTS -XX:SharedArchiveFile="$SAIDA/petshop.jsa" -Xshare:auto -cp "$SAIDA/petshop.jar" PetshopApp "$@"
+fi
+exec java $JAVA_OPTS -cp "$SAIDA/petshop.jar" PetshopApp "$@"
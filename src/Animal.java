@@ -0,0 +1,119 @@
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Classe base abstrata para representar um Animal.
+ * Demonstra o conceito de herança. A hierarquia é selada: todo animal é um Cachorro ou um Gato,
+ * e cada um sabe projetar os seus valores nas colunas da tabela ({@link #celula}).
+ */
+abstract sealed class Animal implements Serializable permits Cachorro, Gato {
+    private static final long serialVersionUID = 1L; // Necessário para serialização
+    protected String id; // Alterado para protected para que PetshopService possa definir
+    private String nome;
+    private int idade;
+    private String raca;
+
+    // Construtor para novos animais (ID será atribuído pelo serviço)
+    public Animal(String nome, int idade, String raca) {
+        this.nome = nome;
+        this.idade = idade;
+        this.raca = raca;
+        this.id = null; // ID será definido pelo PetshopService
+    }
+
+    // Construtor para carregar animais existentes (com ID já definido)
+    public Animal(String id, String nome, int idade, String raca) {
+        this.id = id;
+        this.nome = nome;
+        this.idade = idade;
+        this.raca = raca;
+    }
+
+    // Getters
+    public String getId() {
+        return id;
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    public int getIdade() {
+        return idade;
+    }
+
+    public String getRaca() {
+        return raca;
+    }
+
+    // Setters
+    public void setId(String id) { // Adicionado setter para ID
+        this.id = id;
+    }
+
+    public void setNome(String nome) {
+        this.nome = nome;
+    }
+
+    public void setIdade(int idade) {
+        this.idade = idade;
+    }
+
+    public void setRaca(String raca) {
+        this.raca = raca;
+    }
+
+    /**
+     * Método abstrato para demonstrar polimorfismo.
+     * Cada subclasse implementará sua própria versão.
+     */
+    public abstract String emitirSom();
+
+    /**
+     * Cria uma cópia independente do animal, com os mesmos dados.
+     * O PetshopService guarda cópias para que alterações no objeto do chamador
+     * não afetem leitores que estejam percorrendo o cadastro.
+     */
+    public abstract Animal copiar();
+
+    /**
+     * Valor exibido na coluna, calculado a partir dos campos atuais.
+     */
+    Object celula(ColunaAnimal coluna) {
+        switch (coluna) {
+            case ID:
+                return id;
+            case NOME:
+                return nome;
+            case IDADE:
+                return idade;
+            case RACA:
+                return raca;
+            default:
+                return celulaDoTipo(coluna);
+        }
+    }
+
+    /**
+     * Valor das colunas que dependem do tipo do animal (tipo, porte, castrado e som).
+     */
+    abstract Object celulaDoTipo(ColunaAnimal coluna);
+
+    @Override
+    public String toString() {
+        return "ID: " + id + ", Nome: " + nome + ", Idade: " + idade + ", Raça: " + raca;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Animal animal = (Animal) o;
+        return Objects.equals(id, animal.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+}
@@ -0,0 +1,253 @@
+import javax.swing.Icon;
+import javax.swing.SwingConstants;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Modelo da tabela principal. Em vez de copiar os valores para um DefaultTableModel,
+ * mantém referências aos animais na ordem fornecida pelos índices do PetshopService
+ * e guarda os valores das células da página atual, calculados na primeira exibição de cada
+ * linha. As versões do cadastro não mudam depois de gravadas (uma alteração cria outro objeto),
+ * então esses valores servem para todas as repinturas seguintes; ao recarregar a página, só as
+ * linhas cujo animal mudou são descartadas.
+ *
+ * Apenas uma página de {@link #TAMANHO_PAGINA} animais é mantida por vez, com os seus valores,
+ * então a memória usada pela tabela não cresce com o tamanho do cadastro.
+ *
+ * Com {@link #setMiniaturas}, uma coluna "Foto" é acrescentada ao final, com as miniaturas
+ * carregadas sob demanda apenas para as linhas exibidas.
+ */
+class AnimalTableModel extends AbstractTableModel {
+    static final int TAMANHO_PAGINA = 500;
+
+    private PetshopService service; // null até os dados terminarem de carregar
+    private List<Animal> linhas = Collections.emptyList();
+    private Object[][] celulas = new Object[0][]; // Por linha da página; null até a linha ser exibida
+    private ColunaAnimal ordem = ColunaAnimal.ID;
+    private boolean crescente = true;
+    private FiltroAnimais filtro = FiltroAnimais.NENHUM;
+
+    private IndiceOrdenado.Chave inicioPagina; // null na primeira página
+    private final List<IndiceOrdenado.Chave> iniciosAnteriores = new ArrayList<>(); // Pilha para voltar páginas
+    private PaginaAnimais pagina;
+    private MiniaturasAnexos miniaturas; // null sem anexos: tabela sem a coluna de fotos
+
+    public AnimalTableModel() {
+    }
+
+    public AnimalTableModel(PetshopService service) {
+        this.service = service;
+    }
+
+    public void setService(PetshopService service) {
+        this.service = service;
+    }
+
+    public void setMiniaturas(MiniaturasAnexos miniaturas) {
+        this.miniaturas = miniaturas;
+        fireTableStructureChanged();
+    }
+
+    /**
+     * Descarta a miniatura do animal, para que a foto recém-anexada apareça.
+     */
+    public void fotoAlterada(String idAnimal) {
+        if (miniaturas != null) {
+            miniaturas.invalidar(idAnimal);
+            fireTableDataChanged();
+        }
+    }
+
+    /**
+     * Coluna do cadastro exibida na posição do modelo, ou null para a coluna de fotos.
+     */
+    public ColunaAnimal getColuna(int coluna) {
+        return coluna < ColunaAnimal.TODAS.length ? ColunaAnimal.TODAS[coluna] : null;
+    }
+
+    /**
+     * Recarrega a página atual do serviço mantendo a ordenação e o filtro atuais.
+     */
+    public void atualizar() {
+        if (service == null) {
+            return; // Dados ainda sendo carregados
+        }
+        pagina = service.paginaOrdenada(ordem, crescente, filtro, inicioPagina, TAMANHO_PAGINA);
+        if (pagina.getAnimais().isEmpty() && !iniciosAnteriores.isEmpty()) {
+            // Os animais desta página foram excluídos: volta para a anterior
+            inicioPagina = iniciosAnteriores.remove(iniciosAnteriores.size() - 1);
+            pagina = service.paginaOrdenada(ordem, crescente, filtro, inicioPagina, TAMANHO_PAGINA);
+        }
+        List<Animal> anteriores = linhas;
+        linhas = pagina.getAnimais();
+        celulas = reaproveitarCelulas(anteriores, celulas);
+        fireTableDataChanged();
+    }
+
+    /**
+     * Mantém os valores das linhas cuja versão do animal continua na página (mesmo objeto,
+     * ainda que em outra posição) e descarta os demais.
+     */
+    private Object[][] reaproveitarCelulas(List<Animal> anteriores, Object[][] antigas) {
+        boolean iguais = anteriores.size() == linhas.size();
+        for (int i = 0; iguais && i < linhas.size(); i++) {
+            iguais = anteriores.get(i) == linhas.get(i);
+        }
+        if (iguais) {
+            return antigas; // Caso comum: a alteração foi em outra página
+        }
+        Map<Animal, Object[]> porVersao = new IdentityHashMap<>();
+        for (int i = 0; i < anteriores.size(); i++) {
+            if (antigas[i] != null) {
+                porVersao.put(anteriores.get(i), antigas[i]);
+            }
+        }
+        Object[][] novas = new Object[linhas.size()][];
+        for (int i = 0; i < novas.length; i++) {
+            novas[i] = porVersao.get(linhas.get(i));
+        }
+        return novas;
+    }
+
+    /**
+     * Ordena pela coluna informada. Se já estiver ordenada por ela, inverte o sentido.
+     */
+    public void ordenarPor(ColunaAnimal coluna) {
+        crescente = coluna != ordem || !crescente;
+        ordem = coluna;
+        voltarAoInicio();
+    }
+
+    public void filtrar(FiltroAnimais filtro) {
+        this.filtro = filtro;
+        voltarAoInicio();
+    }
+
+    public void proximaPagina() {
+        if (temProximaPagina()) {
+            iniciosAnteriores.add(inicioPagina);
+            inicioPagina = pagina.getUltima();
+            atualizar();
+        }
+    }
+
+    public void paginaAnterior() {
+        if (temPaginaAnterior()) {
+            inicioPagina = iniciosAnteriores.remove(iniciosAnteriores.size() - 1);
+            atualizar();
+        }
+    }
+
+    public boolean temProximaPagina() {
+        return pagina != null && pagina.temMais();
+    }
+
+    public boolean temPaginaAnterior() {
+        return !iniciosAnteriores.isEmpty();
+    }
+
+    /**
+     * Número da página atual, começando em 1.
+     */
+    public int getNumeroPagina() {
+        return iniciosAnteriores.size() + 1;
+    }
+
+    /**
+     * Total de animais cadastrados (sem considerar o filtro).
+     */
+    public int getTotalAnimais() {
+        return service == null ? 0 : service.quantidadeAnimais();
+    }
+
+    public Animal getAnimal(int linha) {
+        return linhas.get(linha);
+    }
+
+    private void voltarAoInicio() {
+        inicioPagina = null;
+        iniciosAnteriores.clear();
+        atualizar();
+    }
+
+    @Override
+    public int getRowCount() {
+        return linhas.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return ColunaAnimal.TODAS.length + (miniaturas != null ? 1 : 0);
+    }
+
+    @Override
+    public String getColumnName(int coluna) {
+        ColunaAnimal c = getColuna(coluna);
+        if (c == null) {
+            return "Foto";
+        }
+        if (c == ordem) {
+            return c.getTitulo() + (crescente ? " ▲" : " ▼"); // Indica a coluna ordenada
+        }
+        return c.getTitulo();
+    }
+
+    @Override
+    public Class<?> getColumnClass(int coluna) {
+        ColunaAnimal c = getColuna(coluna);
+        if (c == null) {
+            return Icon.class;
+        }
+        return c == ColunaAnimal.IDADE ? Integer.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int linha, int coluna) {
+        Animal animal = linhas.get(linha);
+        if (coluna >= ColunaAnimal.TODAS.length) {
+            return miniaturas.obter(animal.getId()); // Só as linhas visíveis são pedidas
+        }
+        Object[] valores = celulas[linha];
+        if (valores == null) {
+            valores = new Object[ColunaAnimal.TODAS.length];
+            for (ColunaAnimal c : ColunaAnimal.TODAS) {
+                valores[c.ordinal()] = c.valor(animal);
+            }
+            celulas[linha] = valores; // As repinturas seguintes não alocam nada
+        }
+        return valores[coluna];
+    }
+
+    /**
+     * Renderizador da coluna de idade. O renderizador padrão de números cria um texto novo a
+     * cada célula pintada; este usa textos prontos para as idades comuns, então a repintura
+     * da tabela não aloca nada.
+     */
+    static final class RenderizadorIdade extends DefaultTableCellRenderer {
+        private static final String[] TEXTOS = new String[128];
+
+        static {
+            for (int i = 0; i < TEXTOS.length; i++) {
+                TEXTOS[i] = String.valueOf(i);
+            }
+        }
+
+        RenderizadorIdade() {
+            setHorizontalAlignment(SwingConstants.RIGHT);
+        }
+
+        @Override
+        protected void setValue(Object valor) {
+            if (valor instanceof Integer idade && idade >= 0 && idade < TEXTOS.length) {
+                setText(TEXTOS[idade]);
+            } else {
+                super.setValue(valor);
+            }
+        }
+    }
+}
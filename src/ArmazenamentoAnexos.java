@@ -0,0 +1,466 @@
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Anexos dos animais (fotos, carteiras de vacinação digitalizadas...), guardados fora do
+ * cadastro para que os arquivos grandes não passem pelo armazenamento dos animais.
+ *
+ * O conteúdo fica em {@code petshop.anexos.dir} (padrão: "anexos"), endereçado pelo seu
+ * SHA-256: {@code objetos/ab/abcdef...}. Arquivos iguais são gravados uma única vez.
+ * Os envios são lidos em fluxo (calculando o hash durante a cópia para um arquivo temporário),
+ * e a entrega usa {@link FileChannel#transferTo}, que copia direto do cache de páginas do
+ * sistema operacional para o destino, sem passar pelo heap.
+ *
+ * As ligações entre animais e anexos são anexadas a {@code referencias.log}, no mesmo esquema
+ * do diário: [int tamanho][int crc32][byte operação][id do animal][hash][nome][tipo][tamanho].
+ * Miniaturas das imagens são geradas sob demanda, lendo a imagem já reduzida, e guardadas em
+ * {@code miniaturas/}. Um conteúdo sem nenhuma ligação é apagado, com as suas miniaturas.
+ *
+ * Os anexos ficam fora do cadastro também para a replicação e os backups: nenhum dos dois
+ * copia este diretório, que deve ser copiado à parte. Ao remover um animal, o PetshopService
+ * desfaz as suas ligações (veja {@link PetshopService#setAnexos}).
+ */
+class ArmazenamentoAnexos implements Closeable {
+    private static final byte OP_ANEXAR = 1;
+    private static final byte OP_DESANEXAR = 2;
+    private static final int CABECALHO_REGISTRO = 8; // tamanho + crc
+    private static final int TAMANHO_MAXIMO_REGISTRO = 1 << 16;
+
+    private final Path diretorio;
+    private final Path objetos;
+    private final Path miniaturas;
+    private final Path temporarios;
+    private final Path arquivoReferencias;
+    private final Map<String, List<Anexo>> anexosPorAnimal = new HashMap<>();
+    private final Map<String, Integer> ligacoesPorConteudo = new HashMap<>(); // hash -> animais ligados
+    private final FileChannel referencias;
+
+    public ArmazenamentoAnexos(Path diretorio) throws IOException {
+        this.diretorio = diretorio;
+        this.objetos = Files.createDirectories(diretorio.resolve("objetos"));
+        this.miniaturas = Files.createDirectories(diretorio.resolve("miniaturas"));
+        this.temporarios = Files.createDirectories(diretorio.resolve("tmp"));
+        this.arquivoReferencias = diretorio.resolve("referencias.log");
+        this.referencias = FileChannel.open(arquivoReferencias, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long posicaoValida;
+        try {
+            posicaoValida = carregarReferencias();
+        } catch (IOException | RuntimeException e) {
+            referencias.close(); // O arquivo não é alterado
+            throw e;
+        }
+        if (posicaoValida < referencias.size()) {
+            System.err.println("Registro incompleto no final de " + arquivoReferencias + "; descartando "
+                    + (referencias.size() - posicaoValida) + " bytes.");
+            referencias.truncate(posicaoValida);
+        }
+        referencias.position(posicaoValida);
+    }
+
+    /**
+     * Abre os anexos no diretório configurado por {@code petshop.anexos.dir}.
+     */
+    public static ArmazenamentoAnexos abrirConfigurado() throws IOException {
+        return new ArmazenamentoAnexos(diretorioConfigurado());
+    }
+
+    /**
+     * Como {@link #abrirConfigurado}, mas sem criar o diretório quando ele não existe.
+     * @return Os anexos, ou null se nunca houve anexos no diretório configurado.
+     */
+    public static ArmazenamentoAnexos abrirConfiguradoSeExistir() throws IOException {
+        Path diretorio = diretorioConfigurado();
+        return Files.isDirectory(diretorio) ? new ArmazenamentoAnexos(diretorio) : null;
+    }
+
+    private static Path diretorioConfigurado() {
+        return Paths.get(System.getProperty("petshop.anexos.dir", "anexos"));
+    }
+
+    /**
+     * Grava um conteúdo lido em fluxo, sem carregá-lo inteiro na memória.
+     * Se já existir um arquivo com o mesmo conteúdo, nada é gravado.
+     * @return O hash SHA-256 do conteúdo, em hexadecimal.
+     */
+    public String armazenar(InputStream conteudo) throws IOException {
+        MessageDigest sha256 = novoSha256();
+        Path temporario = Files.createTempFile(temporarios, "envio", ".tmp");
+        try {
+            try (DigestInputStream in = new DigestInputStream(conteudo, sha256);
+                 OutputStream out = Files.newOutputStream(temporario)) {
+                in.transferTo(out);
+            }
+            String hash = HexFormat.of().formatHex(sha256.digest());
+            Path destino = caminho(hash);
+            if (!Files.exists(destino)) {
+                Files.createDirectories(destino.getParent());
+                try {
+                    Files.move(temporario, destino, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // Outro envio do mesmo conteúdo terminou antes; o temporário é descartado abaixo
+                }
+            }
+            return hash;
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+    }
+
+    /**
+     * Grava o conteúdo e o liga ao animal. Se o mesmo conteúdo já estiver ligado ao animal,
+     * devolve o anexo existente.
+     * @param nome Nome original do arquivo, usado também para deduzir o tipo do conteúdo.
+     */
+    public Anexo anexar(String idAnimal, String nome, InputStream conteudo) throws IOException {
+        String hash = armazenar(conteudo);
+        String tipo = URLConnection.guessContentTypeFromName(nome);
+        synchronized (this) {
+            List<Anexo> anexos = anexosPorAnimal.computeIfAbsent(idAnimal, id -> new ArrayList<>());
+            for (Anexo existente : anexos) {
+                if (existente.hash.equals(hash)) {
+                    return existente;
+                }
+            }
+            if (!existe(hash)) { // Apagado por um desanexar concorrente depois de armazenar()
+                throw new IOException("O conteúdo de " + nome + " foi descartado durante o envio; envie novamente.");
+            }
+            Anexo anexo = new Anexo(hash, nome, tipo != null ? tipo : "application/octet-stream", Files.size(caminho(hash)));
+            gravarReferencia(OP_ANEXAR, idAnimal, anexo);
+            anexos.add(anexo);
+            ligacoesPorConteudo.merge(hash, 1, Integer::sum);
+            return anexo;
+        }
+    }
+
+    /**
+     * Desfaz a ligação entre o animal e o anexo. O conteúdo só é apagado se não estiver
+     * ligado a outros animais.
+     * @return false se o anexo não estava ligado ao animal.
+     */
+    public synchronized boolean desanexar(String idAnimal, String hash) throws IOException {
+        List<Anexo> anexos = anexosPorAnimal.get(idAnimal);
+        Anexo anexo = anexos == null ? null : anexos.stream().filter(a -> a.hash.equals(hash)).findFirst().orElse(null);
+        if (anexo == null) {
+            return false;
+        }
+        gravarReferencia(OP_DESANEXAR, idAnimal, anexo);
+        anexos.remove(anexo);
+        if (anexos.isEmpty()) {
+            anexosPorAnimal.remove(idAnimal);
+        }
+        liberar(hash);
+        return true;
+    }
+
+    /**
+     * Desfaz todas as ligações do animal (usado quando ele é removido do cadastro).
+     * @return A quantidade de anexos desligados.
+     */
+    public synchronized int desanexarTodos(String idAnimal) throws IOException {
+        List<Anexo> anexos = anexosPorAnimal.get(idAnimal);
+        if (anexos == null) {
+            return 0;
+        }
+        int quantidade = anexos.size();
+        while (!anexos.isEmpty()) {
+            desanexar(idAnimal, anexos.get(anexos.size() - 1).hash);
+        }
+        return quantidade;
+    }
+
+    public synchronized List<Anexo> anexosDe(String idAnimal) {
+        List<Anexo> anexos = anexosPorAnimal.get(idAnimal);
+        return anexos == null ? Collections.emptyList() : new ArrayList<>(anexos);
+    }
+
+    /**
+     * A primeira imagem anexada ao animal, ou null se não houver.
+     */
+    public synchronized Anexo fotoPrincipal(String idAnimal) {
+        List<Anexo> anexos = anexosPorAnimal.get(idAnimal);
+        if (anexos != null) {
+            for (Anexo anexo : anexos) {
+                if (anexo.isImagem()) {
+                    return anexo;
+                }
+            }
+        }
+        return null;
+    }
+
+    public Path caminho(String hash) {
+        if (hash.length() != 64 || !hash.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+            throw new IllegalArgumentException("Hash SHA-256 inválido: " + hash);
+        }
+        return objetos.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    public boolean existe(String hash) {
+        return Files.exists(caminho(hash));
+    }
+
+    /**
+     * Entrega o conteúdo ao destino com {@link FileChannel#transferTo}: quando o destino é um
+     * arquivo ou socket, o sistema operacional copia os bytes sem passar pela aplicação.
+     * @return A quantidade de bytes transferidos.
+     */
+    public long transferir(String hash, WritableByteChannel destino) throws IOException {
+        try (FileChannel origem = FileChannel.open(caminho(hash), StandardOpenOption.READ)) {
+            long tamanho = origem.size();
+            long posicao = 0;
+            while (posicao < tamanho) {
+                posicao += origem.transferTo(posicao, tamanho - posicao, destino);
+            }
+            return tamanho;
+        }
+    }
+
+    /**
+     * Miniatura de uma imagem, com o maior lado igual a {@code lado}. Na primeira vez, a imagem
+     * é lida já reduzida (subamostragem do leitor, sem decodificar a resolução inteira) e a
+     * miniatura é guardada em disco; depois, só a miniatura é lida.
+     * @return A miniatura, ou null se o conteúdo não for uma imagem legível.
+     */
+    public BufferedImage miniatura(String hash, int lado) throws IOException {
+        Path arquivo = miniaturas.resolve(hash + "-" + lado + ".png");
+        if (Files.exists(arquivo)) {
+            return ImageIO.read(arquivo.toFile());
+        }
+        BufferedImage miniatura = gerarMiniatura(caminho(hash), lado);
+        if (miniatura != null) {
+            Path temporario = Files.createTempFile(temporarios, "miniatura", ".png");
+            try {
+                ImageIO.write(miniatura, "png", temporario.toFile());
+                Files.move(temporario, arquivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporario);
+            }
+        }
+        return miniatura;
+    }
+
+    /**
+     * Desconta uma ligação do conteúdo e, se era a última, apaga o conteúdo e as suas miniaturas.
+     */
+    private void liberar(String hash) throws IOException {
+        if (ligacoesPorConteudo.merge(hash, -1, Integer::sum) > 0) {
+            return;
+        }
+        ligacoesPorConteudo.remove(hash);
+        Files.deleteIfExists(caminho(hash));
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(miniaturas, hash + "-*.png")) {
+            for (Path arquivo : arquivos) {
+                Files.deleteIfExists(arquivo);
+            }
+        }
+    }
+
+    public synchronized String estatisticas() throws IOException {
+        long ligacoes = 0;
+        for (List<Anexo> anexos : anexosPorAnimal.values()) {
+            ligacoes += anexos.size();
+        }
+        long[] conteudos = new long[2]; // quantidade, bytes
+        Files.walkFileTree(objetos, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path arquivo, java.nio.file.attribute.BasicFileAttributes atributos) {
+                conteudos[0]++;
+                conteudos[1] += atributos.size();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return "anexos " + diretorio + ": " + ligacoes + " anexos, " + conteudos[0] + " conteúdos distintos, "
+                + conteudos[1] + " bytes";
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        referencias.close();
+    }
+
+    private static BufferedImage gerarMiniatura(Path imagem, int lado) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(imagem.toFile())) {
+            Iterator<ImageReader> leitores = ImageIO.getImageReaders(in);
+            if (!leitores.hasNext()) {
+                return null;
+            }
+            ImageReader leitor = leitores.next();
+            try {
+                leitor.setInput(in, true, true);
+                int largura = leitor.getWidth(0);
+                int altura = leitor.getHeight(0);
+                ImageReadParam parametros = leitor.getDefaultReadParam();
+                int passo = Math.max(1, Math.max(largura, altura) / (lado * 2)); // Lê com o dobro da resolução final
+                parametros.setSourceSubsampling(passo, passo, 0, 0);
+                BufferedImage reduzida = leitor.read(0, parametros);
+
+                double escala = Math.min(1.0, (double) lado / Math.max(reduzida.getWidth(), reduzida.getHeight()));
+                int w = Math.max(1, (int) Math.round(reduzida.getWidth() * escala));
+                int h = Math.max(1, (int) Math.round(reduzida.getHeight() * escala));
+                BufferedImage miniatura = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g = miniatura.createGraphics();
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(reduzida, 0, 0, w, h, null);
+                g.dispose();
+                return miniatura;
+            } finally {
+                leitor.dispose();
+            }
+        }
+    }
+
+    private void gravarReferencia(byte operacao, String idAnimal, Anexo anexo) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(160);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0); // tamanho, preenchido abaixo
+        out.writeInt(0); // crc, preenchido abaixo
+        out.writeByte(operacao);
+        out.writeUTF(idAnimal);
+        out.writeUTF(anexo.hash);
+        out.writeUTF(anexo.nome);
+        out.writeUTF(anexo.tipoConteudo);
+        out.writeLong(anexo.tamanho);
+        out.flush();
+
+        byte[] registro = bytes.toByteArray();
+        int tamanho = registro.length - CABECALHO_REGISTRO;
+        CRC32 crc = new CRC32();
+        crc.update(registro, CABECALHO_REGISTRO, tamanho);
+        ByteBuffer dados = ByteBuffer.wrap(registro).putInt(tamanho).putInt((int) crc.getValue()).rewind();
+        while (dados.hasRemaining()) {
+            referencias.write(dados);
+        }
+    }
+
+    /**
+     * Lê as ligações entre animais e anexos. Só o último registro pode estar incompleto
+     * (gravação interrompida); um registro danificado seguido de outros gera uma IOException,
+     * como no diário, em vez de as ligações seguintes serem descartadas.
+     * @return A posição logo após o último registro íntegro.
+     */
+    private long carregarReferencias() throws IOException {
+        long posicao = 0;
+        long tamanhoArquivo = Files.size(arquivoReferencias);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(arquivoReferencias)))) {
+            while (true) {
+                byte[] dados;
+                int crcEsperado;
+                try {
+                    int tamanho = in.readInt();
+                    crcEsperado = in.readInt();
+                    if (tamanho <= 0 || tamanho > TAMANHO_MAXIMO_REGISTRO) {
+                        if (restoZerado(in)) {
+                            break; // Final do arquivo reservado mas não gravado
+                        }
+                        throw corrompido(posicao, "tamanho de registro inválido (" + tamanho + ")");
+                    }
+                    dados = new byte[tamanho];
+                    in.readFully(dados);
+                } catch (EOFException e) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(dados);
+                if ((int) crc.getValue() != crcEsperado) {
+                    if (posicao + CABECALHO_REGISTRO + dados.length == tamanhoArquivo) {
+                        break; // Último registro gravado pela metade
+                    }
+                    throw corrompido(posicao, "CRC inválido, seguido de mais registros");
+                }
+                DataInputStream registro = new DataInputStream(new ByteArrayInputStream(dados));
+                byte operacao = registro.readByte();
+                String idAnimal = registro.readUTF();
+                Anexo anexo = new Anexo(registro.readUTF(), registro.readUTF(), registro.readUTF(), registro.readLong());
+                List<Anexo> anexos = anexosPorAnimal.computeIfAbsent(idAnimal, id -> new ArrayList<>());
+                if (operacao == OP_ANEXAR) {
+                    anexos.add(anexo);
+                    ligacoesPorConteudo.merge(anexo.hash, 1, Integer::sum);
+                } else if (anexos.removeIf(a -> a.hash.equals(anexo.hash))) {
+                    ligacoesPorConteudo.merge(anexo.hash, -1, (a, b) -> a + b == 0 ? null : a + b);
+                }
+                if (anexos.isEmpty()) {
+                    anexosPorAnimal.remove(idAnimal);
+                }
+                posicao += CABECALHO_REGISTRO + dados.length;
+            }
+        }
+        return posicao;
+    }
+
+    private IOException corrompido(long posicao, String motivo) {
+        return new IOException(arquivoReferencias + " corrompido na posição " + posicao + ": " + motivo
+                + ". O arquivo não foi alterado; restaure um backup ou remova o trecho danificado.");
+    }
+
+    private static boolean restoZerado(InputStream in) throws IOException {
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+        private static MessageDigest novoSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e); // Obrigatório em toda JVM
+        }
+    }
+
+    /**
+     * Um arquivo ligado a um animal, identificado pelo hash do seu conteúdo.
+     */
+    static final class Anexo {
+        private final String hash;
+        private final String nome;
+        private final String tipoConteudo;
+        private final long tamanho;
+
+        Anexo(String hash, String nome, String tipoConteudo, long tamanho) {
+            this.hash = hash;
+            this.nome = nome;
+            this.tipoConteudo = tipoConteudo;
+            this.tamanho = tamanho;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public String getNome() {
+            return nome;
+        }
+
+        public String getTipoConteudo() {
+            return tipoConteudo;
+        }
+
+        public long getTamanho() {
+            return tamanho;
+        }
+
+        public boolean isImagem() {
+            return tipoConteudo.startsWith("image/");
+        }
+    }
+}
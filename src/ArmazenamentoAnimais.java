@@ -0,0 +1,108 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Interface de armazenamento (SPI) usada pelo PetshopService.
+ * Cada implementação decide como e onde os animais são persistidos
+ * (arquivo serializado, arquivo de diário, arquivo de blocos comprimidos ou banco de dados via JDBC).
+ *
+ * As implementações não precisam ser thread-safe: o PetshopService chama todos os métodos sob
+ * a sua trava, e quem usar um armazenamento diretamente deve fazer o mesmo.
+ */
+interface ArmazenamentoAnimais extends Closeable {
+
+    /**
+     * Carrega todos os animais persistidos.
+     * @return Lista com os animais armazenados (vazia se não houver dados).
+     */
+    List<Animal> carregar() throws IOException;
+
+    /**
+     * Busca um único animal pelo ID diretamente no armazenamento.
+     * @return O animal encontrado ou null se não existir.
+     */
+    Animal buscarPorId(String id) throws IOException;
+
+    /**
+     * Persiste um animal recém-cadastrado (o ID já deve ter sido atribuído).
+     */
+    void inserir(Animal animal) throws IOException;
+
+    /**
+     * Persiste vários animais de uma vez. Implementações podem sobrescrever
+     * para usar operações em lote.
+     */
+    default void inserirTodos(Collection<Animal> animais) throws IOException {
+        for (Animal animal : animais) {
+            inserir(animal);
+        }
+    }
+
+    /**
+     * Persiste as alterações de um animal existente.
+     */
+    void atualizar(Animal animal) throws IOException;
+
+    /**
+     * Remove do armazenamento o animal com o ID informado.
+     */
+    void remover(String id) throws IOException;
+
+    /**
+     * Descrição curta do armazenamento, usada em mensagens de log.
+     */
+    String descricao();
+
+    /**
+     * Descrição com estatísticas de uso. Por padrão, igual à descrição.
+     */
+    default String estatisticas() {
+        return descricao();
+    }
+
+    /**
+     * Reorganiza os dados persistidos para ocupar menos espaço, se o armazenamento suportar.
+     * @return true se houve compactação.
+     */
+    default boolean compactar() throws IOException {
+        return false;
+    }
+
+    @Override
+    default void close() throws IOException {
+        // Por padrão não há recursos a liberar
+    }
+
+    /**
+     * Cria o armazenamento definido pelas propriedades de sistema:
+     * <ul>
+     *     <li>{@code petshop.armazenamento}: serializado (padrão), diario, blocos ou jdbc;</li>
+     *     <li>{@code petshop.arquivo}: caminho do arquivo de dados (serializado/diario/blocos);</li>
+     *     <li>{@code petshop.blocos.tamanho}: tamanho dos blocos, antes da compressão (blocos);</li>
+     *     <li>{@code petshop.jdbc.url}, {@code petshop.jdbc.usuario}, {@code petshop.jdbc.senha}
+     *     e {@code petshop.jdbc.pool}: configuração do banco embutido (jdbc).</li>
+     * </ul>
+     * @return O armazenamento configurado.
+     */
+    static ArmazenamentoAnimais criarConfigurado() {
+        String tipo = System.getProperty("petshop.armazenamento", "serializado");
+        switch (tipo) {
+            case "serializado":
+                return new ArmazenamentoSerializado(System.getProperty("petshop.arquivo", "animais.dat"));
+            case "diario":
+                return new ArmazenamentoDiario(System.getProperty("petshop.arquivo", "animais.journal"));
+            case "blocos":
+                return new ArmazenamentoBlocos(System.getProperty("petshop.arquivo", "animais.blocos"));
+            case "jdbc":
+                return new ArmazenamentoJdbc(
+                        System.getProperty("petshop.jdbc.url", "jdbc:h2:./animais"),
+                        System.getProperty("petshop.jdbc.usuario", ""),
+                        System.getProperty("petshop.jdbc.senha", ""),
+                        Integer.getInteger("petshop.jdbc.pool", 4));
+            default:
+                throw new IllegalArgumentException("Tipo de armazenamento desconhecido: " + tipo);
+        }
+    }
+}
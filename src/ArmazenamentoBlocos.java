@@ -0,0 +1,574 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Armazenamento em blocos comprimidos: os animais, ordenados por ID, são agrupados em blocos de
+ * tamanho fixo (medido antes da compressão) e cada bloco é comprimido com {@link Deflater}. Um
+ * índice com a posição e o primeiro ID de cada bloco fica no final do arquivo, então a busca
+ * por ID descomprime apenas o bloco do animal.
+ *
+ * Formato: [int mágico][int versão][int tamanho do bloco], seguido dos blocos e, a cada gravação,
+ * de um novo índice com o rodapé [long posição do índice][int tamanho][int crc32][int mágico].
+ * Uma alteração anexa ao arquivo só o bloco afetado e o índice; os blocos substituídos viram
+ * espaço livre, recuperado pela compactação (automática quando o arquivo passa do dobro do
+ * espaço em uso). Se a última gravação foi interrompida, vale o índice anterior.
+ */
+class ArmazenamentoBlocos implements ArmazenamentoAnimais {
+    static final int MAGICO = 0x50424C4B; // "PBLK"
+    private static final int VERSAO = 1;
+    private static final int CABECALHO = 12;
+    private static final int RODAPE = 20;
+    static final int TAMANHO_BLOCO_PADRAO = 16 * 1024;
+    private static final long MIN_BYTES_COMPACTACAO = 1 << 20;
+
+    private final Path arquivo;
+    private final int tamanhoBloco;
+    private final boolean sincronizar;
+    private final List<Bloco> blocos = new ArrayList<>(); // Na ordem dos IDs
+    private final Deflater compressor = new Deflater();
+    private final Inflater descompressor = new Inflater();
+    private FileChannel canal;
+    private long quantidade;
+    private int tamanhoIndice; // Índice e rodapé atuais
+    private Bloco blocoEmCache; // Último bloco lido, já decodificado
+    private List<Animal> animaisEmCache;
+    private long blocosDescomprimidos;
+
+    public ArmazenamentoBlocos(String arquivo) {
+        this(arquivo, Integer.getInteger("petshop.blocos.tamanho", TAMANHO_BLOCO_PADRAO));
+    }
+
+    /**
+     * @param tamanhoBloco Tamanho, antes da compressão, a partir do qual um bloco é fechado.
+     *                     Blocos maiores comprimem melhor; menores tornam a busca por ID mais barata.
+     */
+    public ArmazenamentoBlocos(String arquivo, int tamanhoBloco) {
+        this.arquivo = Paths.get(arquivo);
+        this.tamanhoBloco = tamanhoBloco;
+        this.sincronizar = Boolean.getBoolean("petshop.blocos.fsync");
+    }
+
+    @Override
+    public synchronized List<Animal> carregar() throws IOException {
+        fecharCanal();
+        blocos.clear();
+        quantidade = 0;
+        esquecerCache();
+        canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return lerArquivo();
+        } catch (IOException | RuntimeException e) {
+            // Sem canal, gravações e compactação falham em vez de sobrescrever o arquivo com o índice vazio
+            fecharCanal();
+            blocos.clear();
+            quantidade = 0;
+            throw e;
+        }
+    }
+
+    private List<Animal> lerArquivo() throws IOException {
+        if (canal.size() == 0) {
+            escrever(0, ByteBuffer.allocate(CABECALHO).putInt(MAGICO).putInt(VERSAO).putInt(tamanhoBloco).flip());
+            gravarIndice();
+            System.out.println("Arquivo de blocos " + arquivo + " criado.");
+            return new ArrayList<>();
+        }
+
+        ByteBuffer cabecalho = ler(0, CABECALHO);
+        if (cabecalho.getInt() != MAGICO || cabecalho.getInt() != VERSAO) {
+            throw new IOException("Arquivo de blocos inválido: " + arquivo);
+        }
+        long fim = lerIndice();
+        if (fim < canal.size()) {
+            System.err.println("Gravação incompleta no final de " + arquivo + "; descartando " + (canal.size() - fim) + " bytes.");
+            canal.truncate(fim);
+        }
+        List<Animal> animais = new ArrayList<>((int) quantidade);
+        for (Bloco bloco : blocos) {
+            animais.addAll(lerBloco(bloco));
+        }
+        System.out.println("Arquivo de blocos " + arquivo + " carregado: " + animais.size() + " animais em " + blocos.size() + " blocos.");
+        return animais;
+    }
+
+    @Override
+    public synchronized Animal buscarPorId(String id) throws IOException {
+        int indice = localizar(id);
+        if (indice < 0) {
+            return null;
+        }
+        Bloco bloco = blocos.get(indice);
+        if (bloco == blocoEmCache) {
+            int posicao = posicaoNoBloco(animaisEmCache, id);
+            return posicao >= 0 ? animaisEmCache.get(posicao) : null;
+        }
+        // Percorre o bloco lendo só os IDs: apenas o animal procurado é decodificado
+        ByteArrayInputStream bytes = new ByteArrayInputStream(descomprimir(bloco));
+        DataInputStream in = new DataInputStream(bytes);
+        for (int i = 0; i < bloco.quantidade; i++) {
+            bytes.mark(0);
+            int comparacao = PetshopService.ORDEM_ID.compare(CodificadorAnimal.lerIdEPular(in), id);
+            if (comparacao == 0) {
+                bytes.reset();
+                return CodificadorAnimal.ler(in);
+            } else if (comparacao > 0) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void inserir(Animal animal) throws IOException {
+        inserirTodos(List.of(animal));
+    }
+
+    /**
+     * Distribui os animais pelos blocos em que os IDs caem e regrava cada bloco afetado uma
+     * única vez. IDs sequenciais caem todos no último bloco, que é dividido conforme cresce.
+     */
+    @Override
+    public synchronized void inserirTodos(Collection<Animal> novos) throws IOException {
+        verificarCarregado();
+        if (novos.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<Animal>> porBloco = new TreeMap<>();
+        for (Animal animal : novos) {
+            porBloco.computeIfAbsent(Math.max(0, localizar(animal.getId())), indice -> new ArrayList<>()).add(animal);
+        }
+        List<Integer> afetados = new ArrayList<>(porBloco.keySet());
+        for (int i = afetados.size() - 1; i >= 0; i--) { // Do fim para o início: os índices anteriores não mudam
+            int indice = afetados.get(i);
+            boolean existe = indice < blocos.size();
+            List<Animal> animais = existe ? new ArrayList<>(lerBloco(blocos.get(indice))) : new ArrayList<>();
+            for (Animal animal : porBloco.get(indice)) {
+                int posicao = posicaoNoBloco(animais, animal.getId());
+                if (posicao >= 0) {
+                    animais.set(posicao, animal);
+                } else {
+                    animais.add(-posicao - 1, animal);
+                    quantidade++;
+                }
+            }
+            substituir(indice, existe, animais);
+        }
+        concluirGravacao();
+    }
+
+    @Override
+    public void atualizar(Animal animal) throws IOException {
+        inserirTodos(List.of(animal));
+    }
+
+    @Override
+    public synchronized void remover(String id) throws IOException {
+        verificarCarregado();
+        int indice = localizar(id);
+        if (indice < 0) {
+            return;
+        }
+        List<Animal> animais = new ArrayList<>(lerBloco(blocos.get(indice)));
+        int posicao = posicaoNoBloco(animais, id);
+        if (posicao < 0) {
+            return;
+        }
+        animais.remove(posicao);
+        quantidade--;
+        substituir(indice, true, animais);
+        concluirGravacao();
+    }
+
+    @Override
+    public String descricao() {
+        return "arquivo de blocos " + arquivo;
+    }
+
+    @Override
+    public synchronized String estatisticas() {
+        long tamanho = arquivo.toFile().length();
+        return descricao() + ": " + quantidade + " animais em " + blocos.size() + " blocos, " + tamanho + " bytes ("
+                + bytesEmUso() + " em uso), " + blocosDescomprimidos + " blocos descomprimidos";
+    }
+
+    /**
+     * Reescreve o arquivo só com os blocos do índice atual, copiados sem descomprimir.
+     */
+    @Override
+    public synchronized boolean compactar() throws IOException {
+        verificarCarregado();
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        List<Bloco> copiados = new ArrayList<>(blocos.size());
+        try (FileChannel novo = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            escrever(novo, ByteBuffer.allocate(CABECALHO).putInt(MAGICO).putInt(VERSAO).putInt(tamanhoBloco).flip());
+            for (Bloco bloco : blocos) {
+                copiados.add(bloco.em(novo.position()));
+                long copiado = 0;
+                while (copiado < bloco.comprimido) {
+                    copiado += canal.transferTo(bloco.posicao + copiado, bloco.comprimido - copiado, novo);
+                }
+            }
+            escrever(novo, codificarIndice(copiados, novo.position()));
+            novo.force(true);
+        }
+        fecharCanal();
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        canal = FileChannel.open(arquivo, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        blocos.clear();
+        blocos.addAll(copiados);
+        esquecerCache();
+        System.out.println("Arquivo de blocos " + arquivo + " compactado: " + canal.size() + " bytes.");
+        return true;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        fecharCanal();
+    }
+
+    private void verificarCarregado() throws IOException {
+        if (canal == null) {
+            throw new IOException("Arquivo de blocos não foi carregado: " + arquivo);
+        }
+    }
+
+    /**
+     * Grava um arquivo de blocos completo e independente, a partir de animais já ordenados por
+     * {@link PetshopService#ORDEM_ID} (por exemplo, o cursor de um instantâneo).
+     * @return A quantidade de animais gravados.
+     */
+    static long gravarArquivo(Path destino, Iterator<Animal> animaisOrdenados, int tamanhoBloco) throws IOException {
+        Files.deleteIfExists(destino);
+        ArmazenamentoBlocos novo = new ArmazenamentoBlocos(destino.toString(), tamanhoBloco);
+        try {
+            novo.canal = FileChannel.open(destino, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            novo.escrever(0, ByteBuffer.allocate(CABECALHO).putInt(MAGICO).putInt(VERSAO).putInt(tamanhoBloco).flip());
+            List<Animal> bloco = new ArrayList<>();
+            ByteArrayOutputStream bruto = new ByteArrayOutputStream(tamanhoBloco + 256);
+            DataOutputStream out = new DataOutputStream(bruto);
+            while (animaisOrdenados.hasNext()) {
+                Animal animal = animaisOrdenados.next();
+                CodificadorAnimal.escrever(out, animal);
+                bloco.add(animal);
+                if (bruto.size() >= tamanhoBloco || !animaisOrdenados.hasNext()) {
+                    novo.blocos.add(novo.anexarBloco(bruto.toByteArray(), bloco));
+                    novo.quantidade += bloco.size();
+                    bloco.clear();
+                    bruto.reset();
+                }
+            }
+            novo.gravarIndice();
+            novo.canal.force(true);
+            return novo.quantidade;
+        } finally {
+            novo.fecharCanal();
+        }
+    }
+
+    /**
+     * Lê todos os animais de um arquivo de blocos sem alterá-lo (por exemplo, um backup).
+     */
+    static List<Animal> lerArquivo(Path origem) throws IOException {
+        ArmazenamentoBlocos arquivo = new ArmazenamentoBlocos(origem.toString(), TAMANHO_BLOCO_PADRAO);
+        try {
+            arquivo.canal = FileChannel.open(origem, StandardOpenOption.READ);
+            ByteBuffer cabecalho = arquivo.ler(0, CABECALHO);
+            if (cabecalho.getInt() != MAGICO || cabecalho.getInt() != VERSAO) {
+                throw new IOException("Arquivo de blocos inválido: " + origem);
+            }
+            arquivo.lerIndice();
+            List<Animal> animais = new ArrayList<>((int) arquivo.quantidade);
+            for (Bloco bloco : arquivo.blocos) {
+                animais.addAll(arquivo.lerBloco(bloco));
+            }
+            return animais;
+        } finally {
+            arquivo.fecharCanal();
+        }
+    }
+
+    /**
+     * Troca o bloco da posição informada (ou insere um bloco novo nela, se {@code existe} for
+     * false) pelos animais dados, anexados ao arquivo em um ou mais blocos.
+     */
+    private void substituir(int indice, boolean existe, List<Animal> animais) throws IOException {
+        List<Bloco> novos = new ArrayList<>();
+        ByteArrayOutputStream bruto = new ByteArrayOutputStream(tamanhoBloco + 256);
+        DataOutputStream out = new DataOutputStream(bruto);
+        int inicio = 0;
+        for (int i = 0; i < animais.size(); i++) {
+            CodificadorAnimal.escrever(out, animais.get(i));
+            if (bruto.size() >= tamanhoBloco || i == animais.size() - 1) {
+                List<Animal> conteudo = new ArrayList<>(animais.subList(inicio, i + 1));
+                Bloco bloco = anexarBloco(bruto.toByteArray(), conteudo);
+                novos.add(bloco);
+                blocoEmCache = bloco; // Alterações seguidas costumam cair no mesmo bloco
+                animaisEmCache = conteudo;
+                bruto.reset();
+                inicio = i + 1;
+            }
+        }
+        if (existe) {
+            blocos.remove(indice);
+        }
+        blocos.addAll(indice, novos);
+    }
+
+    private void concluirGravacao() throws IOException {
+        gravarIndice();
+        if (canal.size() > MIN_BYTES_COMPACTACAO && canal.size() > 2 * bytesEmUso()) {
+            compactar();
+        }
+    }
+
+    private Bloco anexarBloco(byte[] dados, List<Animal> animais) throws IOException {
+        compressor.reset();
+        compressor.setInput(dados);
+        compressor.finish();
+        byte[] comprimido = new byte[Math.max(64, dados.length / 2)];
+        int tamanho = 0;
+        while (!compressor.finished()) {
+            if (tamanho == comprimido.length) {
+                comprimido = Arrays.copyOf(comprimido, comprimido.length * 2);
+            }
+            tamanho += compressor.deflate(comprimido, tamanho, comprimido.length - tamanho);
+        }
+        long posicao = canal.size();
+        escrever(posicao, ByteBuffer.wrap(comprimido, 0, tamanho));
+        CRC32 crc = new CRC32();
+        crc.update(dados);
+        return new Bloco(posicao, tamanho, dados.length, animais.size(), (int) crc.getValue(), animais.get(0).getId());
+    }
+
+    private List<Animal> lerBloco(Bloco bloco) throws IOException {
+        if (bloco == blocoEmCache) {
+            return animaisEmCache;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(descomprimir(bloco)));
+        List<Animal> animais = new ArrayList<>(bloco.quantidade);
+        for (int i = 0; i < bloco.quantidade; i++) {
+            animais.add(CodificadorAnimal.ler(in));
+        }
+        blocoEmCache = bloco;
+        animaisEmCache = animais;
+        return animais;
+    }
+
+    private byte[] descomprimir(Bloco bloco) throws IOException {
+        byte[] comprimido = ler(bloco.posicao, bloco.comprimido).array();
+        byte[] dados = new byte[bloco.descomprimido];
+        descompressor.reset();
+        descompressor.setInput(comprimido);
+        try {
+            int lidos = 0;
+            while (lidos < dados.length && !descompressor.finished()) {
+                int n = descompressor.inflate(dados, lidos, dados.length - lidos);
+                if (n == 0 && (descompressor.needsInput() || descompressor.needsDictionary())) {
+                    break;
+                }
+                lidos += n;
+            }
+            if (lidos != dados.length) {
+                throw new IOException("Bloco incompleto na posição " + bloco.posicao + " de " + arquivo);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Bloco corrompido na posição " + bloco.posicao + " de " + arquivo + ": " + e.getMessage(), e);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(dados);
+        if ((int) crc.getValue() != bloco.crc) {
+            throw new IOException("Bloco corrompido (CRC) na posição " + bloco.posicao + " de " + arquivo);
+        }
+        blocosDescomprimidos++;
+        return dados;
+    }
+
+    /**
+     * @return O último bloco cujo primeiro ID não é maior que o informado, ou -1 se o ID vier
+     *         antes de todos os blocos.
+     */
+    private int localizar(String id) {
+        int inicio = 0;
+        int fim = blocos.size() - 1;
+        while (inicio <= fim) {
+            int meio = (inicio + fim) >>> 1;
+            if (PetshopService.ORDEM_ID.compare(blocos.get(meio).primeiroId, id) <= 0) {
+                inicio = meio + 1;
+            } else {
+                fim = meio - 1;
+            }
+        }
+        return fim;
+    }
+
+    /**
+     * Busca binária dentro de um bloco, no formato de {@link java.util.Collections#binarySearch}.
+     */
+    private static int posicaoNoBloco(List<Animal> animais, String id) {
+        int inicio = 0;
+        int fim = animais.size() - 1;
+        while (inicio <= fim) {
+            int meio = (inicio + fim) >>> 1;
+            int comparacao = PetshopService.ORDEM_ID.compare(animais.get(meio).getId(), id);
+            if (comparacao < 0) {
+                inicio = meio + 1;
+            } else if (comparacao > 0) {
+                fim = meio - 1;
+            } else {
+                return meio;
+            }
+        }
+        return -(inicio + 1);
+    }
+
+    private void gravarIndice() throws IOException {
+        long posicao = canal.size();
+        ByteBuffer indice = codificarIndice(blocos, posicao);
+        tamanhoIndice = indice.remaining();
+        escrever(posicao, indice);
+        if (sincronizar) {
+            canal.force(false);
+        }
+    }
+
+    private static ByteBuffer codificarIndice(List<Bloco> blocos, long posicao) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(blocos.size() * 32 + RODAPE);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(blocos.size());
+        for (Bloco bloco : blocos) {
+            out.writeLong(bloco.posicao);
+            out.writeInt(bloco.comprimido);
+            out.writeInt(bloco.descomprimido);
+            out.writeInt(bloco.quantidade);
+            out.writeInt(bloco.crc);
+            out.writeUTF(bloco.primeiroId);
+        }
+        int tamanho = bytes.size();
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(posicao);
+        out.writeInt(tamanho);
+        out.writeInt((int) crc.getValue());
+        out.writeInt(MAGICO);
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    /**
+     * Procura, do fim do arquivo para o início, o último rodapé cujo índice confere com o CRC.
+     * @return A posição logo após esse rodapé.
+     */
+    private long lerIndice() throws IOException {
+        for (long fim = canal.size(); fim >= CABECALHO + RODAPE; fim--) {
+            ByteBuffer rodape = ler(fim - RODAPE, RODAPE);
+            long posicao = rodape.getLong();
+            int tamanho = rodape.getInt();
+            int crcIndice = rodape.getInt();
+            if (rodape.getInt() != MAGICO || posicao < CABECALHO || tamanho < 4 || posicao + tamanho != fim - RODAPE) {
+                continue;
+            }
+            ByteBuffer indice = ler(posicao, tamanho);
+            CRC32 crc = new CRC32();
+            crc.update(indice.array(), 0, tamanho);
+            if ((int) crc.getValue() != crcIndice) {
+                continue;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(indice.array()));
+            int quantidadeBlocos = in.readInt();
+            for (int i = 0; i < quantidadeBlocos; i++) {
+                Bloco bloco = new Bloco(in.readLong(), in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readUTF());
+                blocos.add(bloco);
+                quantidade += bloco.quantidade;
+            }
+            tamanhoIndice = tamanho + RODAPE;
+            return fim;
+        }
+        throw new IOException("Índice não encontrado em " + arquivo);
+    }
+
+    private long bytesEmUso() {
+        long bytes = CABECALHO + tamanhoIndice;
+        for (Bloco bloco : blocos) {
+            bytes += bloco.comprimido;
+        }
+        return bytes;
+    }
+
+    private ByteBuffer ler(long posicao, int tamanho) throws IOException {
+        ByteBuffer dados = ByteBuffer.allocate(tamanho);
+        while (dados.hasRemaining()) {
+            if (canal.read(dados, posicao + dados.position()) < 0) {
+                throw new EOFException("Fim inesperado de " + arquivo);
+            }
+        }
+        return dados.flip();
+    }
+
+    private void escrever(long posicao, ByteBuffer dados) throws IOException {
+        if (canal == null) {
+            throw new IOException("Arquivo de blocos não foi carregado: " + arquivo);
+        }
+        while (dados.hasRemaining()) {
+            posicao += canal.write(dados, posicao);
+        }
+    }
+
+    private static void escrever(FileChannel destino, ByteBuffer dados) throws IOException {
+        while (dados.hasRemaining()) {
+            destino.write(dados);
+        }
+    }
+
+    private void esquecerCache() {
+        blocoEmCache = null;
+        animaisEmCache = null;
+    }
+
+    private void fecharCanal() throws IOException {
+        if (canal != null) {
+            canal.close();
+            canal = null;
+        }
+    }
+
+    /**
+     * Entrada do índice: onde está um bloco e o que ele contém.
+     */
+    private static final class Bloco {
+        final long posicao;
+        final int comprimido;
+        final int descomprimido;
+        final int quantidade;
+        final int crc; // Dos dados descomprimidos
+        final String primeiroId;
+
+        Bloco(long posicao, int comprimido, int descomprimido, int quantidade, int crc, String primeiroId) {
+            this.posicao = posicao;
+            this.comprimido = comprimido;
+            this.descomprimido = descomprimido;
+            this.quantidade = quantidade;
+            this.crc = crc;
+            this.primeiroId = primeiroId;
+        }
+
+        /**
+         * O mesmo bloco em outra posição (cópia feita pela compactação).
+         */
+        Bloco em(long novaPosicao) {
+            return new Bloco(novaPosicao, comprimido, descomprimido, quantidade, crc, primeiroId);
+        }
+    }
+}
@@ -0,0 +1,301 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Armazenamento baseado em diário (journal): cada operação é anexada ao
+ * final do arquivo em vez de regravar a lista inteira. Na carga, o diário é
+ * reproduzido para reconstruir o estado atual.
+ *
+ * Formato de cada registro: [int tamanho][int crc32][long seq][long instante][byte operação][dados].
+ * Um registro incompleto no final do arquivo (gravação interrompida) é descartado na carga. Um
+ * registro danificado seguido de outros não pode vir de uma gravação interrompida: a carga
+ * falha sem alterar o arquivo, em vez de descartar os registros íntegros que vêm depois dele.
+ */
+class ArmazenamentoDiario implements ArmazenamentoAnimais {
+    static final byte OP_INSERIR = 1;
+    static final byte OP_ATUALIZAR = 2;
+    static final byte OP_REMOVER = 3;
+
+    static final int CABECALHO_REGISTRO = 8; // tamanho + crc
+    static final int TAMANHO_MAXIMO_REGISTRO = 1 << 20;
+    private static final int MIN_REGISTROS_COMPACTACAO = 1000;
+
+    private final Path arquivo;
+    private final boolean sincronizar;
+    private final Map<String, Animal> animais = new LinkedHashMap<>();
+    private FileChannel canal;
+    private long ultimaSeq;
+    private long registrosNoDiario;
+
+    public ArmazenamentoDiario(String arquivo) {
+        this.arquivo = Paths.get(arquivo);
+        this.sincronizar = Boolean.getBoolean("petshop.diario.fsync");
+    }
+
+    @Override
+    public List<Animal> carregar() throws IOException {
+        animais.clear();
+        registrosNoDiario = 0;
+        ultimaSeq = 0;
+        fecharCanal();
+        canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long posicaoValida;
+        try {
+            posicaoValida = reproduzir();
+        } catch (IOException e) {
+            fecharCanal(); // Sem canal, as gravações falham em vez de sobrescrever o diário
+            throw e;
+        }
+        if (posicaoValida < canal.size()) {
+            System.err.println("Registro incompleto no final de " + arquivo + "; descartando " + (canal.size() - posicaoValida) + " bytes.");
+            canal.truncate(posicaoValida);
+        }
+        canal.position(posicaoValida);
+        System.out.println("Diário " + arquivo + " reproduzido: " + registrosNoDiario + " registros, " + animais.size() + " animais.");
+        return new ArrayList<>(animais.values());
+    }
+
+    @Override
+    public Animal buscarPorId(String id) {
+        return animais.get(id);
+    }
+
+    @Override
+    public void inserir(Animal animal) throws IOException {
+        anexar(OP_INSERIR, animal, null);
+        animais.put(animal.getId(), animal);
+    }
+
+    @Override
+    public void inserirTodos(Collection<Animal> novos) throws IOException {
+        ByteArrayOutputStream lote = new ByteArrayOutputStream();
+        for (Animal animal : novos) {
+            lote.write(codificarRegistro(++ultimaSeq, OP_INSERIR, animal, null));
+        }
+        gravar(ByteBuffer.wrap(lote.toByteArray())); // Uma única escrita (e fsync) para o lote
+        registrosNoDiario += novos.size();
+        for (Animal animal : novos) {
+            animais.put(animal.getId(), animal);
+        }
+        compactarSeNecessario();
+    }
+
+    @Override
+    public void atualizar(Animal animal) throws IOException {
+        anexar(OP_ATUALIZAR, animal, null);
+        animais.put(animal.getId(), animal);
+    }
+
+    @Override
+    public void remover(String id) throws IOException {
+        if (animais.remove(id) != null) {
+            anexar(OP_REMOVER, null, id);
+        }
+    }
+
+    @Override
+    public String descricao() {
+        return "diário " + arquivo;
+    }
+
+    /**
+     * Reescreve o diário contendo apenas o estado atual (um registro por animal vivo),
+     * eliminando atualizações e remoções antigas.
+     */
+    @Override
+    public boolean compactar() throws IOException {
+        if (canal == null) { // Carga falhou: o mapa vazio não representa o diário
+            throw new IOException("Diário não foi carregado; compactação cancelada: " + arquivo);
+        }
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        try (FileChannel novo = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Animal animal : animais.values()) {
+                // Os registros compactados mantêm a sequência atual: representam o estado até ela
+                ByteBuffer registro = ByteBuffer.wrap(codificarRegistro(ultimaSeq, OP_INSERIR, animal, null));
+                while (registro.hasRemaining()) {
+                    novo.write(registro);
+                }
+            }
+            novo.force(true);
+        }
+        fecharCanal();
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        canal = FileChannel.open(arquivo, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        canal.position(canal.size());
+        registrosNoDiario = animais.size();
+        System.out.println("Diário " + arquivo + " compactado: " + registrosNoDiario + " registros.");
+        return true;
+    }
+
+    @Override
+    public String estatisticas() {
+        long tamanho = arquivo.toFile().length();
+        return descricao() + ": " + registrosNoDiario + " registros, " + tamanho + " bytes";
+    }
+
+    @Override
+    public void close() throws IOException {
+        fecharCanal();
+    }
+
+    private void anexar(byte operacao, Animal animal, String id) throws IOException {
+        gravar(ByteBuffer.wrap(codificarRegistro(++ultimaSeq, operacao, animal, id)));
+        registrosNoDiario++;
+        compactarSeNecessario();
+    }
+
+    private void gravar(ByteBuffer dados) throws IOException {
+        if (canal == null) {
+            throw new IOException("Diário não foi carregado: " + arquivo);
+        }
+        while (dados.hasRemaining()) {
+            canal.write(dados);
+        }
+        if (sincronizar) {
+            canal.force(false);
+        }
+    }
+
+    /**
+     * Compacta automaticamente quando o diário acumula mais que o dobro de registros do estado atual.
+     */
+    private void compactarSeNecessario() throws IOException {
+        if (registrosNoDiario > MIN_REGISTROS_COMPACTACAO && registrosNoDiario > 2L * animais.size()) {
+            compactar();
+        }
+    }
+
+    /**
+     * Codifica um registro completo (cabeçalho incluído). Também usado pela replicação, que
+     * envia os registros aos seguidores no mesmo formato; registros de controle da replicação
+     * não têm animal nem ID e ficam sem dados.
+     */
+    static byte[] codificarRegistro(long seq, byte operacao, Animal animal, String id) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0); // tamanho, preenchido abaixo
+        out.writeInt(0); // crc, preenchido abaixo
+        out.writeLong(seq);
+        out.writeLong(System.currentTimeMillis());
+        out.writeByte(operacao);
+        if (operacao == OP_REMOVER) {
+            out.writeUTF(id);
+        } else if (animal != null) {
+            CodificadorAnimal.escrever(out, animal);
+        }
+        out.flush();
+
+        byte[] registro = bytes.toByteArray();
+        int tamanho = registro.length - CABECALHO_REGISTRO;
+        CRC32 crc = new CRC32();
+        crc.update(registro, CABECALHO_REGISTRO, tamanho);
+        ByteBuffer.wrap(registro).putInt(tamanho).putInt((int) crc.getValue());
+        return registro;
+    }
+
+    /**
+     * Lê o diário do início, aplicando cada registro ao mapa em memória.
+     * @return A posição logo após o último registro íntegro.
+     */
+    private long reproduzir() throws IOException {
+        long posicao = 0;
+        long tamanhoArquivo = canal.size();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(arquivo)))) {
+            while (true) {
+                int tamanho;
+                try {
+                    tamanho = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                int crcEsperado;
+                byte[] dados;
+                try {
+                    crcEsperado = in.readInt();
+                    if (tamanho <= 0 || tamanho > TAMANHO_MAXIMO_REGISTRO) {
+                        if (restoZerado(posicao)) {
+                            break; // Final do arquivo reservado mas não gravado
+                        }
+                        throw corrompido(posicao, "tamanho inválido (" + tamanho + ")");
+                    }
+                    if (posicao + CABECALHO_REGISTRO + tamanho > tamanhoArquivo) {
+                        break; // O último registro não foi gravado por inteiro
+                    }
+                    dados = new byte[tamanho];
+                    in.readFully(dados);
+                } catch (EOFException e) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(dados);
+                if ((int) crc.getValue() != crcEsperado) {
+                    if (posicao + CABECALHO_REGISTRO + tamanho == tamanhoArquivo) {
+                        break; // Último registro gravado pela metade
+                    }
+                    throw corrompido(posicao, "CRC inválido");
+                }
+                aplicar(new DataInputStream(new ByteArrayInputStream(dados)));
+                posicao += CABECALHO_REGISTRO + tamanho;
+                registrosNoDiario++;
+            }
+        }
+        return posicao;
+    }
+
+    private IOException corrompido(long posicao, String motivo) throws IOException {
+        return new IOException("Diário " + arquivo + " corrompido na posição " + posicao + ": " + motivo
+                + ", seguido de mais " + (canal.size() - posicao) + " bytes. O arquivo não foi alterado;"
+                + " restaure um backup ou remova o trecho danificado.");
+    }
+
+    /**
+     * Indica se o arquivo só tem bytes zero a partir da posição, como num final de arquivo
+     * reservado pelo sistema de arquivos e não gravado antes de uma queda.
+     */
+    private boolean restoZerado(long posicao) throws IOException {
+        ByteBuffer bloco = ByteBuffer.allocate(1 << 16);
+        while (posicao < canal.size()) {
+            bloco.clear();
+            int lidos = canal.read(bloco, posicao);
+            if (lidos < 0) {
+                break;
+            }
+            for (int i = 0; i < lidos; i++) {
+                if (bloco.get(i) != 0) {
+                    return false;
+                }
+            }
+            posicao += lidos;
+        }
+        return true;
+    }
+
+    private void aplicar(DataInputStream in) throws IOException {
+        ultimaSeq = in.readLong();
+        in.readLong(); // instante da operação
+        byte operacao = in.readByte();
+        if (operacao == OP_REMOVER) {
+            animais.remove(in.readUTF());
+        } else {
+            Animal animal = CodificadorAnimal.ler(in);
+            animais.put(animal.getId(), animal);
+        }
+    }
+
+    private void fecharCanal() throws IOException {
+        if (canal != null) {
+            canal.close();
+            canal = null;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+import java.io.IOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Armazenamento em banco de dados embutido acessado via JDBC (por exemplo H2 ou SQLite
+ * em modo arquivo). O driver deve estar no classpath; a URL é informada na construção.
+ *
+ * A tabela possui índices nas colunas id (chave primária), nome e raca. Inserções em massa
+ * usam lotes de prepared statements dentro de uma única transação.
+ */
+class ArmazenamentoJdbc implements ArmazenamentoAnimais {
+    private static final int TAMANHO_LOTE = 1000;
+
+    private static final String SQL_SELECIONAR = "SELECT id, tipo, nome, idade, raca, porte, castrado FROM animais";
+    private static final String SQL_BUSCAR_POR_ID = SQL_SELECIONAR + " WHERE id = ?";
+    private static final String SQL_INSERIR = "INSERT INTO animais (id, tipo, nome, idade, raca, porte, castrado) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String SQL_ATUALIZAR = "UPDATE animais SET tipo = ?, nome = ?, idade = ?, raca = ?, porte = ?, castrado = ? WHERE id = ?";
+    private static final String SQL_REMOVER = "DELETE FROM animais WHERE id = ?";
+
+    private final String url;
+    private final PoolConexoes pool;
+
+    public ArmazenamentoJdbc(String url, String usuario, String senha, int tamanhoPool) {
+        this.url = url;
+        this.pool = new PoolConexoes(url, usuario, senha, tamanhoPool);
+    }
+
+    @Override
+    public List<Animal> carregar() throws IOException {
+        Connection conexao = pool.obter();
+        try (Statement st = conexao.createStatement()) {
+            criarEsquema(st);
+            List<Animal> animais = new ArrayList<>();
+            try (ResultSet rs = st.executeQuery(SQL_SELECIONAR)) {
+                while (rs.next()) {
+                    animais.add(lerAnimal(rs));
+                }
+            }
+            System.out.println("Dados carregados com sucesso de " + url);
+            return animais;
+        } catch (SQLException e) {
+            throw new IOException("Erro ao carregar dados do banco: " + e.getMessage(), e);
+        } finally {
+            pool.devolver(conexao);
+        }
+    }
+
+    @Override
+    public Animal buscarPorId(String id) throws IOException {
+        Connection conexao = pool.obter();
+        try (PreparedStatement ps = conexao.prepareStatement(SQL_BUSCAR_POR_ID)) {
+            ps.setString(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? lerAnimal(rs) : null;
+            }
+        } catch (SQLException e) {
+            throw new IOException("Erro ao buscar animal: " + e.getMessage(), e);
+        } finally {
+            pool.devolver(conexao);
+        }
+    }
+
+    @Override
+    public void inserir(Animal animal) throws IOException {
+        Connection conexao = pool.obter();
+        try (PreparedStatement ps = conexao.prepareStatement(SQL_INSERIR)) {
+            preencherInsercao(ps, animal);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new IOException("Erro ao inserir animal: " + e.getMessage(), e);
+        } finally {
+            pool.devolver(conexao);
+        }
+    }
+
+    @Override
+    public void inserirTodos(Collection<Animal> animais) throws IOException {
+        Connection conexao = pool.obter();
+        try {
+            conexao.setAutoCommit(false);
+            try (PreparedStatement ps = conexao.prepareStatement(SQL_INSERIR)) {
+                int pendentes = 0;
+                for (Animal animal : animais) {
+                    preencherInsercao(ps, animal);
+                    ps.addBatch();
+                    if (++pendentes == TAMANHO_LOTE) {
+                        ps.executeBatch();
+                        pendentes = 0;
+                    }
+                }
+                if (pendentes > 0) {
+                    ps.executeBatch();
+                }
+                conexao.commit();
+            } catch (SQLException e) {
+                conexao.rollback();
+                throw e;
+            } finally {
+                conexao.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Erro ao inserir lote de animais: " + e.getMessage(), e);
+        } finally {
+            pool.devolver(conexao);
+        }
+    }
+
+    @Override
+    public void atualizar(Animal animal) throws IOException {
+        Connection conexao = pool.obter();
+        try (PreparedStatement ps = conexao.prepareStatement(SQL_ATUALIZAR)) {
+            ps.setInt(1, tipo(animal));
+            ps.setString(2, animal.getNome());
+            ps.setInt(3, animal.getIdade());
+            ps.setString(4, animal.getRaca());
+            preencherEspecificos(ps, 5, animal);
+            ps.setString(7, animal.getId());
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new IOException("Erro ao atualizar animal: " + e.getMessage(), e);
+        } finally {
+            pool.devolver(conexao);
+        }
+    }
+
+    @Override
+    public void remover(String id) throws IOException {
+        Connection conexao = pool.obter();
+        try (PreparedStatement ps = conexao.prepareStatement(SQL_REMOVER)) {
+            ps.setString(1, id);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new IOException("Erro ao remover animal: " + e.getMessage(), e);
+        } finally {
+            pool.devolver(conexao);
+        }
+    }
+
+    @Override
+    public String descricao() {
+        return "banco de dados " + url;
+    }
+
+    @Override
+    public void close() throws IOException {
+        pool.fechar();
+    }
+
+    private void criarEsquema(Statement st) throws SQLException {
+        st.execute("CREATE TABLE IF NOT EXISTS animais ("
+                + "id VARCHAR(64) PRIMARY KEY, "
+                + "tipo SMALLINT NOT NULL, "
+                + "nome VARCHAR(255) NOT NULL, "
+                + "idade INT NOT NULL, "
+                + "raca VARCHAR(255) NOT NULL, "
+                + "porte VARCHAR(64), "
+                + "castrado BOOLEAN)");
+        st.execute("CREATE INDEX IF NOT EXISTS idx_animais_nome ON animais (nome)");
+        st.execute("CREATE INDEX IF NOT EXISTS idx_animais_raca ON animais (raca)");
+    }
+
+    private void preencherInsercao(PreparedStatement ps, Animal animal) throws SQLException {
+        ps.setString(1, animal.getId());
+        ps.setInt(2, tipo(animal));
+        ps.setString(3, animal.getNome());
+        ps.setInt(4, animal.getIdade());
+        ps.setString(5, animal.getRaca());
+        preencherEspecificos(ps, 6, animal);
+    }
+
+    /**
+     * Preenche as colunas porte e castrado a partir do índice informado.
+     */
+    private void preencherEspecificos(PreparedStatement ps, int indice, Animal animal) throws SQLException {
+        if (animal instanceof Cachorro cachorro) {
+            ps.setString(indice, cachorro.getPorte());
+            ps.setNull(indice + 1, Types.BOOLEAN);
+        } else if (animal instanceof Gato gato) {
+            ps.setNull(indice, Types.VARCHAR);
+            ps.setBoolean(indice + 1, gato.isCastrado());
+        }
+    }
+
+    private int tipo(Animal animal) {
+        return animal instanceof Gato ? CodificadorAnimal.TIPO_GATO : CodificadorAnimal.TIPO_CACHORRO;
+    }
+
+    private Animal lerAnimal(ResultSet rs) throws SQLException {
+        String id = rs.getString("id");
+        String nome = rs.getString("nome");
+        int idade = rs.getInt("idade");
+        String raca = rs.getString("raca");
+        if (rs.getInt("tipo") == CodificadorAnimal.TIPO_GATO) {
+            return new Gato(id, nome, idade, raca, rs.getBoolean("castrado"));
+        }
+        return new Cachorro(id, nome, idade, raca, rs.getString("porte"));
+    }
+
+    /**
+     * Pool simples de conexões: reaproveita até {@code maximo} conexões abertas
+     * em vez de abrir uma nova a cada operação.
+     */
+    static class PoolConexoes {
+        private final String url;
+        private final String usuario;
+        private final String senha;
+        private final BlockingQueue<Connection> livres;
+
+        PoolConexoes(String url, String usuario, String senha, int maximo) {
+            this.url = url;
+            this.usuario = usuario;
+            this.senha = senha;
+            this.livres = new ArrayBlockingQueue<>(Math.max(1, maximo));
+        }
+
+        Connection obter() throws IOException {
+            Connection conexao;
+            while ((conexao = livres.poll()) != null) {
+                try {
+                    if (!conexao.isClosed()) {
+                        return conexao;
+                    }
+                } catch (SQLException e) {
+                    // Conexão inválida: descarta e tenta a próxima
+                }
+            }
+            try {
+                return DriverManager.getConnection(url, usuario, senha);
+            } catch (SQLException e) {
+                throw new IOException("Não foi possível conectar a " + url + ": " + e.getMessage(), e);
+            }
+        }
+
+        void devolver(Connection conexao) {
+            if (!livres.offer(conexao)) {
+                fecharSilenciosamente(conexao); // Pool cheio
+            }
+        }
+
+        void fechar() {
+            Connection conexao;
+            while ((conexao = livres.poll()) != null) {
+                fecharSilenciosamente(conexao);
+            }
+        }
+
+        private void fecharSilenciosamente(Connection conexao) {
+            try {
+                conexao.close();
+            } catch (SQLException e) {
+                System.err.println("Erro ao fechar conexão: " + e.getMessage());
+            }
+        }
+    }
+}
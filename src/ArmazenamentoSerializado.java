@@ -0,0 +1,97 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Armazenamento original do projeto: a lista completa de animais é gravada
+ * com serialização Java a cada alteração. Mantém compatibilidade com o
+ * arquivo animais.dat existente.
+ */
+class ArmazenamentoSerializado implements ArmazenamentoAnimais {
+    private final String arquivo;
+    private List<Animal> animais = new ArrayList<>();
+
+    public ArmazenamentoSerializado(String arquivo) {
+        this.arquivo = arquivo;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked") // Suprime o aviso de tipo não verificado para o cast
+    public List<Animal> carregar() throws IOException {
+        File file = new File(arquivo);
+        if (!file.exists()) {
+            System.out.println("Arquivo de dados não encontrado. Iniciando com lista vazia.");
+            animais = new ArrayList<>();
+            return new ArrayList<>();
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            Object obj = ois.readObject();
+            animais = obj instanceof List ? new ArrayList<>((List<Animal>) obj) : new ArrayList<>();
+            System.out.println("Dados carregados com sucesso de " + arquivo);
+            return new ArrayList<>(animais);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Formato de arquivo inválido: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Animal buscarPorId(String id) {
+        for (Animal animal : animais) {
+            if (animal.getId().equals(id)) {
+                return animal;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void inserir(Animal animal) throws IOException {
+        animais.add(animal);
+        salvar();
+    }
+
+    @Override
+    public void atualizar(Animal animal) throws IOException {
+        for (int i = 0; i < animais.size(); i++) {
+            if (animais.get(i).getId().equals(animal.getId())) {
+                animais.set(i, animal);
+                break;
+            }
+        }
+        salvar();
+    }
+
+    @Override
+    public void remover(String id) throws IOException {
+        if (animais.removeIf(animal -> animal.getId().equals(id))) {
+            salvar();
+        }
+    }
+
+    @Override
+    public void inserirTodos(Collection<Animal> novos) throws IOException {
+        animais.addAll(novos);
+        salvar(); // Uma única regravação para o lote inteiro
+    }
+
+    @Override
+    public String descricao() {
+        return "arquivo serializado " + arquivo;
+    }
+
+    @Override
+    public String estatisticas() {
+        return descricao() + ": " + new File(arquivo).length() + " bytes";
+    }
+
+    /**
+     * Salva a lista de animais em um arquivo usando serialização.
+     */
+    private void salvar() throws IOException {
+        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(arquivo)))) {
+            oos.writeObject(animais);
+        }
+        System.out.println("Dados salvos com sucesso em " + arquivo);
+    }
+}
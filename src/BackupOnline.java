@@ -0,0 +1,306 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Backups com o sistema em uso, sem pausar as gravações.
+ *
+ * O backup completo grava um instantâneo do cadastro ({@link PetshopService#abrirInstantaneo()})
+ * em um arquivo de blocos comprimidos ({@link ArmazenamentoBlocos}); a trava do serviço só é
+ * usada para abrir o instantâneo e fechar o segmento atual do {@link LogAlteracoes}, então o
+ * arquivo corresponde exatamente a uma seq do log. O backup incremental copia apenas os
+ * segmentos do log fechados desde o último backup. Os segmentos já copiados são apagados do
+ * diretório do log.
+ *
+ * A restauração parte do último backup completo anterior ao ponto pedido (seq ou instante) e
+ * reaplica os registros dos segmentos até esse ponto.
+ *
+ * Arquivos no destino: {@code completo-<seq>-<instante em ms>.blocos} e os segmentos
+ * {@code alteracoes-<primeira seq>.log}, com os nomes do log.
+ */
+class BackupOnline implements Closeable {
+    private static final String PREFIXO_COMPLETO = "completo-";
+    private static final String EXTENSAO_COMPLETO = ".blocos";
+
+    private final PetshopService service;
+    private final LogAlteracoes log;
+    private final Path destino;
+    private ScheduledExecutorService agendador;
+
+    BackupOnline(PetshopService service, LogAlteracoes log, Path destino) throws IOException {
+        this.service = service;
+        this.log = log;
+        this.destino = destino;
+        Files.createDirectories(destino);
+        long seqBackup = 0; // O log nunca volta para trás do que já está no destino
+        for (Path completo : completos(destino)) {
+            seqBackup = Math.max(seqBackup, seqCompleto(completo));
+        }
+        List<Path> segmentos = LogAlteracoes.segmentos(destino);
+        if (!segmentos.isEmpty()) {
+            long[] ultima = {seqBackup};
+            LogAlteracoes.ler(segmentos.get(segmentos.size() - 1), registro -> ultima[0] = Math.max(ultima[0], registro.seq));
+            seqBackup = ultima[0];
+        }
+        log.avancarPara(seqBackup);
+    }
+
+    /**
+     * Inicia o log de alterações e os backups definidos pelas propriedades de sistema:
+     * <ul>
+     *     <li>{@code petshop.backup.dir}: diretório de destino dos backups (sem ele, nada é feito);</li>
+     *     <li>{@code petshop.alteracoes.dir}: diretório do log de alterações (padrão "alteracoes");</li>
+     *     <li>{@code petshop.alteracoes.segmento}: tamanho dos segmentos do log, em bytes;</li>
+     *     <li>{@code petshop.backup.intervalo}: minutos entre os backups incrementais automáticos
+     *     (padrão 15; 0 desliga).</li>
+     * </ul>
+     * @return Os backups configurados, ou null se {@code petshop.backup.dir} não foi informado.
+     */
+    static BackupOnline iniciarConfigurado(PetshopService service) throws IOException {
+        String dir = System.getProperty("petshop.backup.dir");
+        if (dir == null) {
+            return null;
+        }
+        LogAlteracoes log = new LogAlteracoes(Paths.get(System.getProperty("petshop.alteracoes.dir", "alteracoes")),
+                Long.getLong("petshop.alteracoes.segmento", LogAlteracoes.TAMANHO_SEGMENTO_PADRAO));
+        BackupOnline backup = new BackupOnline(service, log, Paths.get(dir));
+        service.setLogAlteracoes(log);
+        long intervalo = Long.getLong("petshop.backup.intervalo", 15);
+        if (intervalo > 0) {
+            backup.agendador = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+                Thread thread = new Thread(tarefa, "backup");
+                thread.setDaemon(true);
+                return thread;
+            });
+            backup.agendador.scheduleWithFixedDelay(() -> {
+                try {
+                    System.out.println(backup.incremental());
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Erro no backup automático: " + e.getMessage());
+                }
+            }, intervalo, intervalo, TimeUnit.MINUTES);
+        }
+        return backup;
+    }
+
+    /**
+     * Grava um backup completo. As gravações continuam durante a cópia.
+     */
+    synchronized Resultado completo() throws IOException {
+        long inicio = System.nanoTime();
+        RegistroVersionado.Instantaneo instantaneo;
+        long seq;
+        long instante;
+        synchronized (service) { // Nenhuma alteração entre o instantâneo e o fim do segmento
+            instantaneo = service.abrirInstantaneo();
+            seq = log.fecharSegmento();
+            instante = System.currentTimeMillis();
+        }
+        Path temporario = destino.resolve(PREFIXO_COMPLETO + "tmp");
+        long animais;
+        try (instantaneo) {
+            animais = ArmazenamentoBlocos.gravarArquivo(temporario,
+                    Spliterators.iterator(instantaneo.cursor(null)), ArmazenamentoBlocos.TAMANHO_BLOCO_PADRAO);
+        }
+        Path arquivo = destino.resolve(String.format("%s%020d-%d%s", PREFIXO_COMPLETO, seq, instante, EXTENSAO_COMPLETO));
+        Files.move(temporario, arquivo, StandardCopyOption.ATOMIC_MOVE);
+        long bytes = Files.size(arquivo);
+        apagarSegmentosCopiados();
+        return new Resultado("backup completo " + arquivo.getFileName() + " (seq " + seq + ")",
+                animais, "animais", bytes, System.nanoTime() - inicio);
+    }
+
+    /**
+     * Copia os segmentos do log fechados desde o último backup. Se o destino ainda não tiver
+     * um backup completo, faz um.
+     */
+    synchronized Resultado incremental() throws IOException {
+        if (completos(destino).isEmpty()) {
+            return completo();
+        }
+        long inicio = System.nanoTime();
+        long seq = log.fecharSegmento();
+        int copiados = 0;
+        long bytes = 0;
+        for (Path segmento : log.segmentosFechados()) {
+            Path copia = destino.resolve(segmento.getFileName());
+            if (Files.exists(copia) && Files.size(copia) == Files.size(segmento)) {
+                continue;
+            }
+            Path temporario = destino.resolve(segmento.getFileName() + ".tmp");
+            try (FileChannel origem = FileChannel.open(segmento, StandardOpenOption.READ);
+                 FileChannel saida = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                         StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                long copiado = 0;
+                while (copiado < origem.size()) {
+                    copiado += origem.transferTo(copiado, origem.size() - copiado, saida);
+                }
+                saida.force(true);
+            }
+            Files.move(temporario, copia, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            copiados++;
+            bytes += Files.size(copia);
+        }
+        apagarSegmentosCopiados();
+        return new Resultado("backup incremental até a seq " + seq, copiados, "segmentos", bytes, System.nanoTime() - inicio);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (agendador != null) {
+            agendador.shutdownNow();
+        }
+        service.setLogAlteracoes(null);
+        log.close();
+    }
+
+    /**
+     * Restaura o cadastro como estava em um ponto do passado, gravando-o no serviço informado,
+     * que deve estar vazio.
+     * @param origem Diretório com os backups.
+     * @param seqAlvo Último registro do log a aplicar (Long.MAX_VALUE para todos).
+     * @param instanteAlvo Só aplica registros gravados até este instante, em ms (Long.MAX_VALUE para todos).
+     */
+    static Resultado restaurar(Path origem, long seqAlvo, long instanteAlvo, PetshopService destino) throws IOException {
+        long inicio = System.nanoTime();
+        Path base = null;
+        for (Path completo : completos(origem)) { // Em ordem de seq: fica o último antes do ponto
+            if (seqCompleto(completo) <= seqAlvo && instanteCompleto(completo) <= instanteAlvo) {
+                base = completo;
+            }
+        }
+        if (base == null) {
+            throw new IOException("Nenhum backup completo em " + origem + " anterior ao ponto pedido");
+        }
+        Map<String, Animal> animais = new TreeMap<>(PetshopService.ORDEM_ID);
+        for (Animal animal : ArmazenamentoBlocos.lerArquivo(base)) {
+            animais.put(animal.getId(), animal);
+        }
+        long bytes = Files.size(base);
+
+        long seqBase = seqCompleto(base);
+        long[] aplicada = {seqBase, instanteCompleto(base)}; // seq e instante do último registro aplicado
+        boolean[] terminou = {false};
+        boolean[] lacuna = {false};
+        List<Path> segmentos = LogAlteracoes.segmentos(origem);
+        for (int i = 0; i < segmentos.size() && !terminou[0]; i++) {
+            if (i + 1 < segmentos.size() && LogAlteracoes.primeiraSeq(segmentos.get(i + 1)) <= seqBase + 1) {
+                continue; // Segmento inteiro anterior ao backup completo
+            }
+            if (LogAlteracoes.primeiraSeq(segmentos.get(i)) > aplicada[0] + 1) {
+                lacuna[0] = true; // Os registros seguintes não podem ser aplicados
+                break;
+            }
+            bytes += Files.size(segmentos.get(i));
+            LogAlteracoes.ler(segmentos.get(i), registro -> {
+                if (terminou[0] || registro.seq <= aplicada[0]) {
+                    return;
+                }
+                if (registro.seq > seqAlvo || registro.instante > instanteAlvo || registro.seq != aplicada[0] + 1) {
+                    lacuna[0] = registro.seq > aplicada[0] + 1;
+                    terminou[0] = true;
+                    return;
+                }
+                if (registro.operacao == ArmazenamentoDiario.OP_REMOVER) {
+                    animais.remove(registro.id);
+                } else {
+                    animais.put(registro.id, registro.animal);
+                }
+                aplicada[0] = registro.seq;
+                aplicada[1] = registro.instante;
+            });
+        }
+        if (seqAlvo != Long.MAX_VALUE && aplicada[0] < seqAlvo && instanteAlvo == Long.MAX_VALUE) {
+            throw new IOException("O backup em " + origem + " só vai até a seq " + aplicada[0]);
+        }
+        if (lacuna[0]) {
+            System.err.println("Aviso: falta no backup o registro " + (aplicada[0] + 1) + " do log; restaurando até a seq " + aplicada[0] + ".");
+        }
+        destino.restaurar(animais.values());
+        return new Resultado("restauração de " + base.getFileName() + " com " + (aplicada[0] - seqBase)
+                + " registros do log, até a seq " + aplicada[0] + " (" + Instant.ofEpochMilli(aplicada[1]) + ")",
+                animais.size(), "animais", bytes, System.nanoTime() - inicio);
+    }
+
+    /**
+     * Segmentos do log que já estão no destino, com o mesmo tamanho, não precisam mais ficar no log.
+     */
+    private void apagarSegmentosCopiados() throws IOException {
+        for (Path segmento : log.segmentosFechados()) {
+            Path copia = destino.resolve(segmento.getFileName());
+            if (Files.exists(copia) && Files.size(copia) == Files.size(segmento)) {
+                Files.delete(segmento);
+            }
+        }
+    }
+
+    private static List<Path> completos(Path dir) throws IOException {
+        List<Path> completos = new ArrayList<>();
+        if (Files.isDirectory(dir)) {
+            try (Stream<Path> arquivos = Files.list(dir)) {
+                arquivos.filter(arquivo -> {
+                    String nome = arquivo.getFileName().toString();
+                    return nome.startsWith(PREFIXO_COMPLETO) && nome.endsWith(EXTENSAO_COMPLETO);
+                }).sorted().forEach(completos::add); // Seq com largura fixa: ordem alfabética é a da seq
+            }
+        }
+        return completos;
+    }
+
+    private static long seqCompleto(Path completo) {
+        String nome = completo.getFileName().toString();
+        return Long.parseLong(nome.substring(PREFIXO_COMPLETO.length(), nome.indexOf('-', PREFIXO_COMPLETO.length())));
+    }
+
+    private static long instanteCompleto(Path completo) {
+        String nome = completo.getFileName().toString();
+        return Long.parseLong(nome.substring(nome.indexOf('-', PREFIXO_COMPLETO.length()) + 1,
+                nome.length() - EXTENSAO_COMPLETO.length()));
+    }
+
+    /**
+     * Quanto foi copiado ou restaurado, e em quanto tempo.
+     */
+    static final class Resultado {
+        private final String descricao;
+        private final long itens;
+        private final String unidade;
+        private final long bytes;
+        private final long nanos;
+
+        Resultado(String descricao, long itens, String unidade, long bytes, long nanos) {
+            this.descricao = descricao;
+            this.itens = itens;
+            this.unidade = unidade;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            double segundos = nanos / 1e9;
+            segundos = Math.max(segundos, 1e-9);
+            return String.format("%s: %d %s, %.1f MB em %.2f s (%.0f %s/s, %.1f MB/s)",
+                    descricao, itens, unidade, bytes / 1e6, segundos, itens / segundos, unidade, bytes / 1e6 / segundos);
+        }
+    }
+}
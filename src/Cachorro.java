@@ -0,0 +1,57 @@
+/**
+ * Subclasse de Animal para representar um Cachorro.
+ * Demonstra herança e polimorfismo.
+ */
+final class Cachorro extends Animal {
+    private static final long serialVersionUID = 1L;
+    private String porte;
+
+    // Construtor para novos cachorros
+    public Cachorro(String nome, int idade, String raca, String porte) {
+        super(nome, idade, raca);
+        this.porte = porte;
+    }
+
+    // Construtor para carregar cachorros existentes
+    public Cachorro(String id, String nome, int idade, String raca, String porte) {
+        super(id, nome, idade, raca);
+        this.porte = porte;
+    }
+
+    public String getPorte() {
+        return porte;
+    }
+
+    public void setPorte(String porte) {
+        this.porte = porte;
+    }
+
+    @Override
+    public String emitirSom() {
+        return "Au Au!";
+    }
+
+    @Override
+    Object celulaDoTipo(ColunaAnimal coluna) {
+        switch (coluna) {
+            case TIPO:
+                return "Cachorro";
+            case PORTE:
+                return porte;
+            case CASTRADO:
+                return "N/A"; // Não se aplica a cachorros
+            default:
+                return emitirSom();
+        }
+    }
+
+    @Override
+    public Cachorro copiar() {
+        return new Cachorro(getId(), getNome(), getIdade(), getRaca(), porte);
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + ", Tipo: Cachorro, Porte: " + porte + ", Som: " + emitirSom();
+    }
+}
@@ -0,0 +1,109 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Codifica e decodifica animais em um formato binário compacto.
+ * Usado pelos armazenamentos que não dependem da serialização Java.
+ */
+final class CodificadorAnimal {
+    static final byte TIPO_CACHORRO = 1;
+    static final byte TIPO_GATO = 2;
+
+    private CodificadorAnimal() {
+    }
+
+    /**
+     * Escreve o animal no fluxo de saída.
+     * @param out Destino dos dados.
+     * @param animal O animal a ser codificado.
+     */
+    static void escrever(DataOutput out, Animal animal) throws IOException {
+        if (animal instanceof Cachorro cachorro) {
+            out.writeByte(TIPO_CACHORRO);
+            escreverComuns(out, animal);
+            escreverTexto(out, cachorro.getPorte());
+        } else if (animal instanceof Gato gato) {
+            out.writeByte(TIPO_GATO);
+            escreverComuns(out, animal);
+            out.writeBoolean(gato.isCastrado());
+        } else {
+            throw new IOException("Tipo de animal não suportado: " + animal.getClass().getName());
+        }
+    }
+
+    /**
+     * Lê um animal previamente gravado com {@link #escrever(DataOutput, Animal)}.
+     * @param in Origem dos dados.
+     * @return O animal decodificado.
+     */
+    static Animal ler(DataInput in) throws IOException {
+        byte tipo = in.readByte();
+        String id = lerTexto(in);
+        String nome = lerTexto(in);
+        int idade = in.readInt();
+        String raca = lerTexto(in);
+        switch (tipo) {
+            case TIPO_CACHORRO:
+                return new Cachorro(id, nome, idade, raca, lerTexto(in));
+            case TIPO_GATO:
+                return new Gato(id, nome, idade, raca, in.readBoolean());
+            default:
+                throw new IOException("Tipo de animal desconhecido no arquivo: " + tipo);
+        }
+    }
+
+    /**
+     * Lê só o ID de um animal gravado com {@link #escrever(DataOutput, Animal)} e pula o
+     * restante, sem criar o animal. Usado para procurar um animal entre vários gravados em sequência.
+     * @return O ID lido.
+     */
+    static String lerIdEPular(DataInput in) throws IOException {
+        byte tipo = in.readByte();
+        String id = lerTexto(in);
+        pularTexto(in); // nome
+        in.skipBytes(Integer.BYTES); // idade
+        pularTexto(in); // raça
+        switch (tipo) {
+            case TIPO_CACHORRO:
+                pularTexto(in); // porte
+                break;
+            case TIPO_GATO:
+                in.skipBytes(1); // castrado
+                break;
+            default:
+                throw new IOException("Tipo de animal desconhecido no arquivo: " + tipo);
+        }
+        return id;
+    }
+
+    private static void escreverComuns(DataOutput out, Animal animal) throws IOException {
+        escreverTexto(out, animal.getId());
+        escreverTexto(out, animal.getNome());
+        out.writeInt(animal.getIdade());
+        escreverTexto(out, animal.getRaca());
+    }
+
+    /**
+     * Escreve um texto que pode ser nulo.
+     */
+    static void escreverTexto(DataOutput out, String texto) throws IOException {
+        out.writeBoolean(texto != null);
+        if (texto != null) {
+            out.writeUTF(texto);
+        }
+    }
+
+    /**
+     * Lê um texto gravado com {@link #escreverTexto(DataOutput, String)}.
+     */
+    static String lerTexto(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void pularTexto(DataInput in) throws IOException {
+        if (in.readBoolean()) {
+            in.skipBytes(in.readUnsignedShort());
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Colunas exibidas na tabela de animais, na ordem em que aparecem.
+ * O valor de cada coluna é projetado pelo próprio animal ({@link Animal#celula}).
+ */
+enum ColunaAnimal {
+    ID("ID"),
+    NOME("Nome"),
+    IDADE("Idade"),
+    RACA("Raça"),
+    TIPO("Tipo"),
+    PORTE("Porte"),
+    CASTRADO("Castrado"),
+    SOM("Som");
+
+    /** Cópia única de values(), que cria um novo array a cada chamada. */
+    static final ColunaAnimal[] TODAS = values();
+
+    private final String titulo;
+
+    ColunaAnimal(String titulo) {
+        this.titulo = titulo;
+    }
+
+    public String getTitulo() {
+        return titulo;
+    }
+
+    /**
+     * Valor exibido na célula desta coluna para o animal informado, calculado na hora.
+     */
+    public Object valor(Animal animal) {
+        return animal.celula(this);
+    }
+
+    /**
+     * Indica se a coluna é ordenada numericamente em vez de alfabeticamente.
+     */
+    boolean isNumerica() {
+        return this == ID || this == IDADE;
+    }
+}
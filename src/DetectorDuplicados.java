@@ -0,0 +1,284 @@
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Encontra animais possivelmente cadastrados em duplicidade (o mesmo animal registrado duas
+ * vezes com o nome ou a raça digitados de forma um pouco diferente).
+ *
+ * Comparar cada animal com todos os outros é O(n²). Em vez disso, cada animal entra em dois
+ * blocos, e só animais do mesmo bloco são comparados:
+ * <ul>
+ *   <li>tipo + três primeiras letras do nome + faixa de idade, que tolera erros na raça;</li>
+ *   <li>tipo + raça + inicial do nome + faixa de idade, que tolera erros no resto do nome.</li>
+ * </ul>
+ * Nomes e raças são normalizados antes (sem acentos, minúsculas). As faixas de idade têm dois
+ * anos e a consulta olha as faixas vizinhas, então animais com até um ano de diferença são
+ * sempre comparados. Não são detectados erros na primeira letra do nome, nem erros ao mesmo
+ * tempo nas três primeiras letras do nome e na raça.
+ *
+ * Dentro de um bloco, a semelhança é o produto das similaridades de Jaro-Winkler dos nomes e
+ * das raças: basta um dos dois ser bem diferente para o par ser descartado. Idades diferentes
+ * e porte (ou castração) diferente reduzem a semelhança, sem descartar o par.
+ *
+ * A instância não é thread-safe para escrita; depois de montada, pode ser consultada por
+ * várias threads (como em {@link #relatorio}).
+ */
+class DetectorDuplicados {
+    /** Semelhança mínima usada pelo cadastro para avisar sobre um possível duplicado. */
+    static final double LIMIAR_PADRAO = 0.9;
+
+    private static final double FATOR_IDADE_DIFERENTE = 0.97;
+    private static final double FATOR_DETALHE_DIFERENTE = 0.9;
+    private static final int LARGURA_FAIXA = 2;
+    private static final int LETRAS_PREFIXO = 3;
+
+    private final Map<String, List<Assinatura>> blocos = new HashMap<>();
+    private final Map<String, Assinatura> porId = new HashMap<>();
+    private final Map<String, String> racas = new HashMap<>(); // Uma única string normalizada por raça
+
+    public DetectorDuplicados() {
+    }
+
+    public DetectorDuplicados(Collection<Animal> animais) {
+        for (Animal animal : animais) {
+            inserir(animal);
+        }
+    }
+
+    /**
+     * Indexa o animal, ou reposiciona-o se já estiver indexado (após uma alteração).
+     */
+    public void inserir(Animal animal) {
+        remover(animal.getId());
+        String raca = Textos.normalizar(animal.getRaca());
+        Assinatura assinatura = new Assinatura(animal, Textos.normalizar(animal.getNome()), racas.computeIfAbsent(raca, r -> r));
+        porId.put(animal.getId(), assinatura);
+        int faixa = Math.floorDiv(animal.getIdade(), LARGURA_FAIXA);
+        blocos.computeIfAbsent(chavePorNome(assinatura, faixa), c -> new ArrayList<>(4)).add(assinatura);
+        blocos.computeIfAbsent(chavePorRaca(assinatura, faixa), c -> new ArrayList<>(4)).add(assinatura);
+    }
+
+    public void remover(String id) {
+        Assinatura assinatura = id != null ? porId.remove(id) : null;
+        if (assinatura != null) {
+            int faixa = Math.floorDiv(assinatura.idade, LARGURA_FAIXA);
+            retirar(chavePorNome(assinatura, faixa), assinatura);
+            retirar(chavePorRaca(assinatura, faixa), assinatura);
+        }
+    }
+
+    public int tamanho() {
+        return porId.size();
+    }
+
+    /**
+     * Animais indexados parecidos com o informado (que pode ainda não estar cadastrado).
+     * O próprio animal, se já tiver ID, não entra no resultado.
+     * @param limiar Semelhança mínima, entre 0 e 1.
+     * @return As semelhanças encontradas, da maior para a menor.
+     */
+    public List<Semelhanca> semelhantes(Animal animal, double limiar) {
+        List<Semelhanca> encontradas = new ArrayList<>();
+        comparar(assinar(animal), limiar, false, encontradas);
+        encontradas.sort(Comparator.comparingDouble(Semelhanca::getSimilaridade).reversed());
+        return encontradas;
+    }
+
+    /**
+     * Relatório de todos os pares de possíveis duplicados entre os animais indexados.
+     * Cada animal do cursor é comparado apenas com os do seus blocos, em paralelo; cada par
+     * aparece uma vez.
+     * @param animais Os mesmos animais indexados (por exemplo, o cursor de um instantâneo).
+     * @param limiar Semelhança mínima, entre 0 e 1.
+     * @return Os pares encontrados, da maior para a menor semelhança.
+     */
+    public List<Semelhanca> relatorio(Spliterator<Animal> animais, double limiar) {
+        List<Semelhanca> pares = StreamSupport.stream(animais, true)
+                .flatMap(animal -> {
+                    List<Semelhanca> doAnimal = new ArrayList<>(0);
+                    Assinatura assinatura = porId.get(animal.getId());
+                    comparar(assinatura != null ? assinatura : assinar(animal), limiar, true, doAnimal);
+                    return doAnimal.stream();
+                })
+                .collect(Collectors.toList());
+        pares.sort(Comparator.comparingDouble(Semelhanca::getSimilaridade).reversed()
+                .thenComparing(semelhanca -> semelhanca.getAnimal().getId()));
+        return pares;
+    }
+
+    /**
+     * Compara a assinatura com os blocos das faixas de idade vizinhas.
+     * @param soPosteriores Considera só animais com ID maior, para que cada par apareça uma vez no relatório.
+     */
+    private void comparar(Assinatura assinatura, double limiar, boolean soPosteriores, List<Semelhanca> encontradas) {
+        String id = assinatura.animal.getId();
+        int primeira = Math.floorDiv(assinatura.idade - 1, LARGURA_FAIXA);
+        int ultima = Math.floorDiv(assinatura.idade + 1, LARGURA_FAIXA);
+        for (int faixa = primeira; faixa <= ultima; faixa++) {
+            for (int passagem = 0; passagem < 2; passagem++) {
+                List<Assinatura> bloco = blocos.get(passagem == 0 ? chavePorNome(assinatura, faixa) : chavePorRaca(assinatura, faixa));
+                if (bloco == null) {
+                    continue;
+                }
+                for (Assinatura outra : bloco) {
+                    if (Math.abs(outra.idade - assinatura.idade) > 1 || (id != null && id.equals(outra.animal.getId()))) {
+                        continue;
+                    }
+                    if (soPosteriores && id != null && id.compareTo(outra.animal.getId()) >= 0) {
+                        continue;
+                    }
+                    if (passagem == 1 && mesmoPrefixo(assinatura.nome, outra.nome)) {
+                        continue; // Já comparado no bloco por nome
+                    }
+                    double similaridade = outra.idade == assinatura.idade ? 1 : FATOR_IDADE_DIFERENTE;
+                    if (!outra.detalhe.equals(assinatura.detalhe)) {
+                        similaridade *= FATOR_DETALHE_DIFERENTE;
+                    }
+                    similaridade *= jaroWinkler(assinatura.nome, outra.nome);
+                    if (similaridade < limiar) {
+                        continue; // Não precisa comparar as raças
+                    }
+                    similaridade *= jaroWinkler(assinatura.raca, outra.raca);
+                    if (similaridade >= limiar) {
+                        encontradas.add(new Semelhanca(assinatura.animal, outra.animal, similaridade));
+                    }
+                }
+            }
+        }
+    }
+
+    private Assinatura assinar(Animal animal) {
+        return new Assinatura(animal, Textos.normalizar(animal.getNome()), Textos.normalizar(animal.getRaca()));
+    }
+
+    private void retirar(String chave, Assinatura assinatura) {
+        List<Assinatura> bloco = blocos.get(chave);
+        if (bloco != null && bloco.remove(assinatura) && bloco.isEmpty()) {
+            blocos.remove(chave);
+        }
+    }
+
+    private static String chavePorNome(Assinatura assinatura, int faixa) {
+        String nome = assinatura.nome;
+        return assinatura.tipo + "|" + nome.substring(0, Math.min(LETRAS_PREFIXO, nome.length())) + "|" + faixa;
+    }
+
+    private static String chavePorRaca(Assinatura assinatura, int faixa) {
+        String nome = assinatura.nome;
+        return assinatura.tipo + "|" + assinatura.raca + "|" + (nome.isEmpty() ? "" : nome.substring(0, 1)) + "|" + faixa;
+    }
+
+    private static boolean mesmoPrefixo(String a, String b) {
+        int letras = Math.min(LETRAS_PREFIXO, a.length());
+        return letras == Math.min(LETRAS_PREFIXO, b.length()) && a.regionMatches(0, b, 0, letras);
+    }
+
+    /**
+     * Similaridade de Jaro-Winkler entre dois textos, de 0 (nada em comum) a 1 (iguais).
+     * Valoriza prefixos comuns, o que combina com erros de digitação no fim de nomes curtos.
+     * A janela de busca de letras coincidentes tem pelo menos uma posição, para que nomes de
+     * três letras com uma letra omitida ainda sejam parecidos.
+     * Só os 64 primeiros caracteres são comparados, para marcar as posições em máscaras de bits
+     * sem alocar vetores.
+     */
+    static double jaroWinkler(String a, String b) {
+        int tamanhoA = Math.min(a.length(), 64);
+        int tamanhoB = Math.min(b.length(), 64);
+        if (tamanhoA == 0 || tamanhoB == 0) {
+            return tamanhoA == tamanhoB ? 1 : 0;
+        }
+        int janela = Math.max(1, Math.max(tamanhoA, tamanhoB) / 2 - 1);
+        long usadosA = 0;
+        long usadosB = 0;
+        int coincidencias = 0;
+        for (int i = 0; i < tamanhoA; i++) {
+            char c = a.charAt(i);
+            int fim = Math.min(tamanhoB - 1, i + janela);
+            for (int j = Math.max(0, i - janela); j <= fim; j++) {
+                if ((usadosB & (1L << j)) == 0 && b.charAt(j) == c) {
+                    usadosA |= 1L << i;
+                    usadosB |= 1L << j;
+                    coincidencias++;
+                    break;
+                }
+            }
+        }
+        if (coincidencias == 0) {
+            return 0;
+        }
+        // Coincidências fora de ordem: percorre as posições marcadas nos dois textos em paralelo
+        int foraDeOrdem = 0;
+        while (usadosA != 0) {
+            if (a.charAt(Long.numberOfTrailingZeros(usadosA)) != b.charAt(Long.numberOfTrailingZeros(usadosB))) {
+                foraDeOrdem++;
+            }
+            usadosA &= usadosA - 1;
+            usadosB &= usadosB - 1;
+        }
+        double m = coincidencias;
+        double jaro = (m / tamanhoA + m / tamanhoB + (m - foraDeOrdem / 2.0) / m) / 3;
+        int prefixo = 0;
+        int limitePrefixo = Math.min(4, Math.min(tamanhoA, tamanhoB));
+        while (prefixo < limitePrefixo && a.charAt(prefixo) == b.charAt(prefixo)) {
+            prefixo++;
+        }
+        return jaro + prefixo * 0.1 * (1 - jaro);
+    }
+
+    /**
+     * Dados normalizados de um animal, calculados uma vez na indexação.
+     */
+    private static final class Assinatura {
+        final Animal animal;
+        final String nome;
+        final String raca;
+        final int idade;
+        final char tipo;
+        final String detalhe; // Porte do cachorro ou castração do gato
+
+        Assinatura(Animal animal, String nome, String raca) {
+            this.animal = animal;
+            this.nome = nome;
+            this.raca = raca;
+            this.idade = animal.getIdade();
+            if (animal instanceof Gato gato) {
+                this.tipo = 'G';
+                this.detalhe = gato.isCastrado() ? "castrado" : "";
+            } else {
+                this.tipo = 'C';
+                this.detalhe = animal instanceof Cachorro cachorro ? Textos.normalizar(cachorro.getPorte()) : "";
+            }
+        }
+    }
+
+    /**
+     * Um par de animais possivelmente duplicados.
+     */
+    static final class Semelhanca {
+        private final Animal animal;
+        private final Animal semelhante;
+        private final double similaridade;
+
+        Semelhanca(Animal animal, Animal semelhante, double similaridade) {
+            this.animal = animal;
+            this.semelhante = semelhante;
+            this.similaridade = similaridade;
+        }
+
+        /** O animal consultado (no relatório, o de ID menor em ordem alfabética). */
+        public Animal getAnimal() {
+            return animal;
+        }
+
+        /** O animal já cadastrado parecido com ele. */
+        public Animal getSemelhante() {
+            return semelhante;
+        }
+
+        /** Semelhança entre 0 e 1. */
+        public double getSimilaridade() {
+            return similaridade;
+        }
+    }
+}
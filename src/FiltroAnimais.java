@@ -0,0 +1,49 @@
+/**
+ * Filtro de vários campos aplicado à listagem de animais.
+ * Campos vazios ou nulos não restringem o resultado.
+ */
+final class FiltroAnimais {
+    static final FiltroAnimais NENHUM = new FiltroAnimais(null, null, null, null, null);
+
+    private final String nome;
+    private final String raca;
+    private final String tipo;
+    private final Integer idadeMinima;
+    private final Integer idadeMaxima;
+
+    /**
+     * @param nome Trecho do nome (sem diferenciar maiúsculas/minúsculas nem acentos).
+     * @param raca Trecho da raça (sem diferenciar maiúsculas/minúsculas nem acentos).
+     * @param tipo "Cachorro", "Gato" ou null para todos.
+     * @param idadeMinima Idade mínima (inclusive) ou null.
+     * @param idadeMaxima Idade máxima (inclusive) ou null.
+     */
+    public FiltroAnimais(String nome, String raca, String tipo, Integer idadeMinima, Integer idadeMaxima) {
+        this.nome = Textos.normalizar(nome); // Normalizados como as chaves de ordenação
+        this.raca = Textos.normalizar(raca);
+        this.tipo = tipo;
+        this.idadeMinima = idadeMinima;
+        this.idadeMaxima = idadeMaxima;
+    }
+
+    /**
+     * Indica se o filtro aceita qualquer animal.
+     */
+    public boolean isVazio() {
+        return nome.isEmpty() && raca.isEmpty() && tipo == null && idadeMinima == null && idadeMaxima == null;
+    }
+
+    public boolean aceita(Animal animal) {
+        if (idadeMinima != null && animal.getIdade() < idadeMinima) {
+            return false;
+        }
+        if (idadeMaxima != null && animal.getIdade() > idadeMaxima) {
+            return false;
+        }
+        if (tipo != null && !tipo.equals(ColunaAnimal.TIPO.valor(animal))) {
+            return false;
+        }
+        return Textos.contemNormalizado(animal.getNome(), nome)
+                && Textos.contemNormalizado(animal.getRaca(), raca);
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Subclasse de Animal para representar um Gato.
+ * Demonstra herança e polimorfismo.
+ */
+final class Gato extends Animal {
+    private static final long serialVersionUID = 1L;
+    private boolean castrado;
+
+    // Construtor para novos gatos
+    public Gato(String nome, int idade, String raca, boolean castrado) {
+        super(nome, idade, raca);
+        this.castrado = castrado;
+    }
+
+    // Construtor para carregar gatos existentes
+    public Gato(String id, String nome, int idade, String raca, boolean castrado) {
+        super(id, nome, idade, raca);
+        this.castrado = castrado;
+    }
+
+    public boolean isCastrado() {
+        return castrado;
+    }
+
+    public void setCastrado(boolean castrado) {
+        this.castrado = castrado;
+    }
+
+    @Override
+    public String emitirSom() {
+        return "Miau!";
+    }
+
+    @Override
+    Object celulaDoTipo(ColunaAnimal coluna) {
+        switch (coluna) {
+            case TIPO:
+                return "Gato";
+            case PORTE:
+                return "N/A"; // Não se aplica a gatos
+            case CASTRADO:
+                return castrado ? "Sim" : "Não";
+            default:
+                return emitirSom();
+        }
+    }
+
+    @Override
+    public Gato copiar() {
+        return new Gato(getId(), getNome(), getIdade(), getRaca(), castrado);
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + ", Tipo: Gato, Castrado: " + (castrado ? "Sim" : "Não") + ", Som: " + emitirSom();
+    }
+}
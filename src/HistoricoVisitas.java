@@ -0,0 +1,685 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Histórico de visitas (consultas, vacinações, banho e tosa...) dos animais.
+ *
+ * As visitas são anexadas a segmentos particionados por mês (UTC), um arquivo por mês em
+ * {@code petshop.historico.dir} (padrão: "historico"), e nunca são reescritas. Um índice em
+ * memória guarda, para cada animal, os instantes e as posições das suas visitas em ordem
+ * cronológica, então "últimas N visitas do animal X" lê apenas N registros do disco.
+ * Consultas por período percorrem somente os segmentos dos meses envolvidos.
+ *
+ * O índice em memória só é montado na primeira consulta por animal: abrir o histórico para
+ * anexar visitas não lê os segmentos. Para que a montagem não releia todo o histórico, cada
+ * segmento tem um arquivo de índice ({@code visitas-<mês>.idx}) com o ID, o instante e o
+ * deslocamento das suas visitas até um certo tamanho do segmento; só o trecho posterior é lido
+ * do segmento. O arquivo de índice é gravado ao fechar o histórico, para os segmentos de meses
+ * já encerrados e para os que acumularam mais de {@link #LIMITE_NAO_INDEXADO} bytes sem índice.
+ *
+ * Formato de cada registro (o mesmo esquema do diário):
+ * [int tamanho][int crc32][long instante][byte tipo][id do animal][descrição].
+ * Um registro incompleto no final de um segmento (gravação interrompida) é descartado antes da
+ * primeira gravação no segmento ou na montagem do índice, lendo apenas o trecho sem índice.
+ * Um registro danificado no meio de um segmento não é tratado como final: se o CRC não confere,
+ * ele é ignorado e os registros seguintes são mantidos.
+ */
+class HistoricoVisitas implements Closeable {
+    private static final int CABECALHO_REGISTRO = 8; // tamanho + crc
+    private static final int TAMANHO_MAXIMO_REGISTRO = 1 << 16;
+    private static final String PREFIXO = "visitas-";
+    private static final String EXTENSAO = ".seg";
+    private static final int BITS_DESLOCAMENTO = 40; // Posição no índice: [número do segmento][deslocamento]
+    private static final long MASCARA_DESLOCAMENTO = (1L << BITS_DESLOCAMENTO) - 1;
+    private static final String EXTENSAO_INDICE = ".idx";
+    private static final int MAGICO_INDICE = 0x50484958;
+    static final long LIMITE_NAO_INDEXADO = 1L << 20;
+
+    private final Path diretorio;
+    private final boolean sincronizar;
+    private final List<Segmento> segmentos = new ArrayList<>(); // Pelo número do segmento
+    private final TreeMap<YearMonth, Segmento> segmentosPorMes = new TreeMap<>();
+    private final Map<String, VisitasDoAnimal> indice = new HashMap<>();
+    private boolean indiceCarregado; // false até a primeira consulta por animal
+    private ByteBuffer leitura = ByteBuffer.allocate(512);
+    private long quantidade;
+
+    public HistoricoVisitas(Path diretorio) throws IOException {
+        this.diretorio = diretorio;
+        this.sincronizar = Boolean.getBoolean("petshop.historico.fsync");
+        Files.createDirectories(diretorio);
+        List<Path> arquivos;
+        try (Stream<Path> lista = Files.list(diretorio)) {
+            arquivos = lista.filter(p -> {
+                String nome = p.getFileName().toString();
+                return nome.startsWith(PREFIXO) && nome.endsWith(EXTENSAO);
+            }).sorted().toList();
+        }
+        for (Path arquivo : arquivos) {
+            String nome = arquivo.getFileName().toString();
+            abrirSegmento(YearMonth.parse(nome.substring(PREFIXO.length(), nome.length() - EXTENSAO.length())));
+        }
+        System.out.println("Histórico " + diretorio + " aberto: " + segmentos.size() + " segmentos.");
+    }
+
+    /**
+     * Abre o histórico no diretório configurado por {@code petshop.historico.dir}.
+     */
+    public static HistoricoVisitas abrirConfigurado() throws IOException {
+        return new HistoricoVisitas(Paths.get(System.getProperty("petshop.historico.dir", "historico")));
+    }
+
+    /**
+     * Anexa uma visita ao segmento do seu mês.
+     */
+    public synchronized void registrar(Visita visita) throws IOException {
+        Segmento segmento = segmento(mes(visita.getInstante()));
+        byte[] registro = codificarRegistro(visita);
+        long deslocamento = segmento.tamanho;
+        gravar(segmento, ByteBuffer.wrap(registro));
+        if (indiceCarregado) {
+            indexar(visita.getIdAnimal(), visita.getInstante(), posicao(segmento, deslocamento));
+        }
+    }
+
+    /**
+     * Anexa várias visitas com uma única escrita (e fsync) por segmento envolvido.
+     */
+    public synchronized void registrarTodas(Collection<Visita> visitas) throws IOException {
+        Map<Segmento, ByteArrayOutputStream> lotes = new LinkedHashMap<>();
+        long[] posicoes = new long[visitas.size()];
+        int i = 0;
+        for (Visita visita : visitas) {
+            Segmento segmento = segmento(mes(visita.getInstante()));
+            ByteArrayOutputStream lote = lotes.computeIfAbsent(segmento, s -> new ByteArrayOutputStream(1 << 16));
+            posicoes[i++] = posicao(segmento, segmento.tamanho + lote.size());
+            lote.write(codificarRegistro(visita));
+        }
+        for (Map.Entry<Segmento, ByteArrayOutputStream> lote : lotes.entrySet()) {
+            gravar(lote.getKey(), ByteBuffer.wrap(lote.getValue().toByteArray()));
+        }
+        if (indiceCarregado) {
+            i = 0;
+            for (Visita visita : visitas) {
+                indexar(visita.getIdAnimal(), visita.getInstante(), posicoes[i++]);
+            }
+        }
+    }
+
+    /**
+     * As últimas visitas de um animal, da mais recente para a mais antiga.
+     * @param limite Quantidade máxima de visitas.
+     */
+    public synchronized List<Visita> ultimas(String idAnimal, int limite) throws IOException {
+        carregarIndice();
+        VisitasDoAnimal visitas = indice.get(idAnimal);
+        if (visitas == null) {
+            return Collections.emptyList();
+        }
+        List<Visita> resultado = new ArrayList<>(Math.min(limite, visitas.tamanho));
+        for (int i = visitas.tamanho - 1; i >= 0 && resultado.size() < limite; i--) {
+            resultado.add(ler(visitas.posicoes[i]));
+        }
+        return resultado;
+    }
+
+    /**
+     * As visitas de um animal no período [inicio, fim), em ordem cronológica.
+     */
+    public synchronized List<Visita> doAnimalEntre(String idAnimal, Instant inicio, Instant fim) throws IOException {
+        carregarIndice();
+        VisitasDoAnimal visitas = indice.get(idAnimal);
+        if (visitas == null) {
+            return Collections.emptyList();
+        }
+        int de = visitas.primeiraEmOuApos(inicio.toEpochMilli());
+        int ate = visitas.primeiraEmOuApos(fim.toEpochMilli());
+        List<Visita> resultado = new ArrayList<>(Math.max(0, ate - de));
+        for (int i = de; i < ate; i++) {
+            resultado.add(ler(visitas.posicoes[i]));
+        }
+        return resultado;
+    }
+
+    /**
+     * Percorre todas as visitas do período [inicio, fim), lendo em sequência apenas os
+     * segmentos dos meses envolvidos. As visitas chegam mês a mês; dentro de um mês,
+     * na ordem em que foram registradas.
+     *
+     * A leitura é feita fora do monitor, sobre o tamanho de cada segmento no início da
+     * consulta: um relatório longo não bloqueia as gravações, e as visitas gravadas durante
+     * ele não são entregues.
+     * @return A quantidade de visitas entregues ao consumidor.
+     */
+    public long percorrerEntre(Instant inicio, Instant fim, Consumer<Visita> consumidor) throws IOException {
+        long de = inicio.toEpochMilli();
+        long ate = fim.toEpochMilli();
+        if (ate <= de) {
+            return 0;
+        }
+        List<Segmento> trecho;
+        long[] tamanhos;
+        synchronized (this) {
+            trecho = new ArrayList<>(segmentosPorMes.subMap(mes(de), true, mes(ate - 1), true).values());
+            tamanhos = new long[trecho.size()];
+            for (int i = 0; i < tamanhos.length; i++) {
+                tamanhos[i] = trecho.get(i).tamanho;
+            }
+        }
+        long total = 0;
+        for (int i = 0; i < tamanhos.length; i++) {
+            LeitorRegistros leitor = new LeitorRegistros(trecho.get(i), 0, tamanhos[i]);
+            while (leitor.proximo()) {
+                long instante = leitor.instante();
+                if (instante >= de && instante < ate) {
+                    consumidor.accept(leitor.visita());
+                    total++;
+                }
+            }
+        }
+        return total;
+    }
+
+    public synchronized long quantidade() throws IOException {
+        carregarIndice();
+        return quantidade;
+    }
+
+    public synchronized String estatisticas() {
+        long bytes = 0;
+        long semIndice = 0;
+        for (Segmento segmento : segmentos) {
+            bytes += segmento.tamanho;
+            semIndice += segmento.tamanho - segmento.indexado;
+        }
+        return "histórico " + diretorio + ": " + segmentos.size() + " segmentos, " + bytes + " bytes ("
+                + semIndice + " sem arquivo de índice)"
+                + (indiceCarregado ? ", " + quantidade + " visitas de " + indice.size() + " animais no índice" : "");
+    }
+
+    /**
+     * Grava os arquivos de índice pendentes (meses encerrados e segmentos com muitos bytes sem
+     * índice) e fecha os segmentos.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            YearMonth atual = mes(System.currentTimeMillis());
+            for (Map.Entry<YearMonth, Segmento> entrada : segmentosPorMes.entrySet()) {
+                Segmento segmento = entrada.getValue();
+                long naoIndexado = segmento.tamanho - segmento.indexado;
+                if (naoIndexado >= LIMITE_NAO_INDEXADO || (naoIndexado > 0 && entrada.getKey().isBefore(atual))) {
+                    gravarIndice(segmento);
+                }
+            }
+        } finally {
+            for (Segmento segmento : segmentos) {
+                segmento.canal.close();
+            }
+        }
+    }
+
+    /**
+     * Segmento do mês, pronto para receber gravações: o trecho sem índice é conferido (e um
+     * registro incompleto no final, descartado) antes da primeira gravação.
+     */
+    private Segmento segmento(YearMonth mes) throws IOException {
+        Segmento segmento = segmentosPorMes.get(mes);
+        if (segmento == null) {
+            return abrirSegmento(mes);
+        }
+        if (segmento.conferido < segmento.tamanho) {
+            varrer(segmento, segmento.conferido, (leitor, deslocamento) -> { });
+        }
+        return segmento;
+    }
+
+    private Segmento abrirSegmento(YearMonth mes) throws IOException {
+        Path arquivo = diretorio.resolve(PREFIXO + mes + EXTENSAO);
+        FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segmento segmento = new Segmento(segmentos.size(), arquivo, diretorio.resolve(PREFIXO + mes + EXTENSAO_INDICE), canal);
+        segmento.tamanho = canal.size();
+        segmento.indexado = lerTamanhoIndexado(segmento);
+        segmento.conferido = segmento.indexado;
+        segmentos.add(segmento);
+        segmentosPorMes.put(mes, segmento);
+        return segmento;
+    }
+
+    /**
+     * Monta o índice em memória na primeira consulta por animal: lê o arquivo de índice de cada
+     * segmento e, do segmento, só o trecho que ele não cobre.
+     */
+    private void carregarIndice() throws IOException {
+        if (indiceCarregado) {
+            return;
+        }
+        for (Segmento segmento : segmentos) {
+            long inicio = lerIndice(segmento, (idAnimal, instante, deslocamento) ->
+                    indexar(idAnimal, instante, posicao(segmento, deslocamento)));
+            varrer(segmento, inicio, (leitor, deslocamento) ->
+                    indexar(leitor.idAnimal(), leitor.instante(), posicao(segmento, deslocamento)));
+        }
+        indiceCarregado = true;
+    }
+
+    /**
+     * Lê os registros íntegros do segmento a partir do deslocamento, descartando um registro
+     * incompleto no final.
+     */
+    private void varrer(Segmento segmento, long inicio, Visitante visitante) throws IOException {
+        LeitorRegistros leitor = new LeitorRegistros(segmento, inicio, segmento.tamanho);
+        while (leitor.proximo()) {
+            visitante.visitar(leitor, leitor.deslocamento());
+        }
+        long posicaoValida = leitor.fim();
+        if (posicaoValida < segmento.tamanho) {
+            System.err.println("Registro incompleto no final de " + segmento.arquivo + "; descartando "
+                    + (segmento.tamanho - posicaoValida) + " bytes.");
+            segmento.canal.truncate(posicaoValida);
+            segmento.tamanho = posicaoValida;
+        }
+        segmento.conferido = segmento.tamanho;
+    }
+
+    /**
+     * Regrava o arquivo de índice do segmento cobrindo todo o seu conteúdo: as entradas do
+     * índice anterior mais as do trecho que ele não cobria. Grava num arquivo temporário e
+     * o move sobre o anterior, então uma interrupção deixa o índice antigo intacto.
+     */
+    private void gravarIndice(Segmento segmento) throws IOException {
+        Path temporario = segmento.arquivoIndice.resolveSibling(segmento.arquivoIndice.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporario), 1 << 16), crc))) {
+            ByteArrayOutputStream entradas = new ByteArrayOutputStream(1 << 16);
+            DataOutputStream saida = new DataOutputStream(entradas);
+            int[] quantidadeEntradas = {0};
+            long inicio = lerIndice(segmento, (idAnimal, instante, deslocamento) -> {
+                escreverEntrada(saida, idAnimal, instante, deslocamento);
+                quantidadeEntradas[0]++;
+            });
+            varrer(segmento, inicio, (leitor, deslocamento) -> {
+                escreverEntrada(saida, leitor.idAnimal(), leitor.instante(), deslocamento);
+                quantidadeEntradas[0]++;
+            });
+            out.writeInt(MAGICO_INDICE);
+            out.writeLong(segmento.tamanho);
+            out.writeInt(quantidadeEntradas[0]);
+            entradas.writeTo(out);
+            out.flush();
+            out.writeInt((int) crc.getValue());
+        }
+        Files.move(temporario, segmento.arquivoIndice, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        segmento.indexado = segmento.tamanho;
+    }
+
+    /**
+     * Entrada do arquivo de índice: [short tamanho do ID][ID em UTF-8][long instante][long deslocamento].
+     */
+    private static void escreverEntrada(DataOutputStream out, String idAnimal, long instante, long deslocamento) throws IOException {
+        byte[] id = idAnimal.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(id.length);
+        out.write(id);
+        out.writeLong(instante);
+        out.writeLong(deslocamento);
+    }
+
+    /**
+     * Tamanho do segmento coberto pelo arquivo de índice, lido só do cabeçalho; 0 se não
+     * houver índice utilizável.
+     */
+    private static long lerTamanhoIndexado(Segmento segmento) throws IOException {
+        if (!Files.exists(segmento.arquivoIndice)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(segmento.arquivoIndice))) {
+            long indexado = in.readInt() == MAGICO_INDICE ? in.readLong() : 0;
+            return indexado <= segmento.tamanho ? indexado : 0; // Índice de um segmento maior: não serve
+        } catch (EOFException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Entrega as entradas do arquivo de índice do segmento, na ordem do segmento.
+     * @return O deslocamento a partir do qual o segmento precisa ser lido (0 sem índice utilizável).
+     */
+    private static long lerIndice(Segmento segmento, EntradaIndice destino) throws IOException {
+        if (segmento.indexado == 0) {
+            return 0;
+        }
+        byte[] conteudo = Files.readAllBytes(segmento.arquivoIndice);
+        ByteBuffer cabecalho = ByteBuffer.wrap(conteudo);
+        CRC32 crc = new CRC32();
+        crc.update(conteudo, 0, Math.max(0, conteudo.length - Integer.BYTES));
+        if (conteudo.length < 16 + Integer.BYTES || cabecalho.getInt(0) != MAGICO_INDICE || cabecalho.getLong(4) != segmento.indexado
+                || cabecalho.getInt(conteudo.length - Integer.BYTES) != (int) crc.getValue()) {
+            System.err.println("Índice " + segmento.arquivoIndice + " inválido; o segmento será lido por inteiro.");
+            segmento.indexado = 0;
+            return 0;
+        }
+        // CRC conferido antes de entregar qualquer entrada
+        ByteBuffer entradas = cabecalho.position(16);
+        for (int i = cabecalho.getInt(12); i > 0; i--) {
+            int tamanhoId = entradas.getShort() & 0xffff;
+            String idAnimal = new String(conteudo, entradas.position(), tamanhoId, StandardCharsets.UTF_8);
+            entradas.position(entradas.position() + tamanhoId);
+            destino.aceitar(idAnimal, entradas.getLong(), entradas.getLong());
+        }
+        return segmento.indexado;
+    }
+
+    private void indexar(String idAnimal, long instante, long posicao) {
+        indice.computeIfAbsent(idAnimal, id -> new VisitasDoAnimal()).adicionar(instante, posicao);
+        quantidade++;
+    }
+
+    private void gravar(Segmento segmento, ByteBuffer dados) throws IOException {
+        long posicao = segmento.tamanho;
+        while (dados.hasRemaining()) {
+            posicao += segmento.canal.write(dados, posicao);
+        }
+        if (sincronizar) {
+            segmento.canal.force(false);
+        }
+        segmento.tamanho = posicao;
+        segmento.conferido = posicao; // Só se grava depois de conferir o trecho sem índice
+    }
+
+    /**
+     * Lê um registro pela posição guardada no índice.
+     */
+    private Visita ler(long posicao) throws IOException {
+        Segmento segmento = segmentos.get((int) (posicao >>> BITS_DESLOCAMENTO));
+        long deslocamento = posicao & MASCARA_DESLOCAMENTO;
+        leitura.clear();
+        lerAte(segmento, deslocamento, Math.min(leitura.capacity(), segmento.tamanho - deslocamento));
+        int tamanho = leitura.getInt(0);
+        if (CABECALHO_REGISTRO + tamanho > leitura.capacity()) {
+            ByteBuffer maior = ByteBuffer.allocate(CABECALHO_REGISTRO + tamanho); // Registro maior que o habitual
+            maior.put(leitura.flip());
+            leitura = maior;
+        }
+        lerAte(segmento, deslocamento, CABECALHO_REGISTRO + tamanho);
+
+        CRC32 crc = new CRC32();
+        crc.update(leitura.array(), CABECALHO_REGISTRO, tamanho);
+        if ((int) crc.getValue() != leitura.getInt(4)) {
+            throw new IOException("Registro corrompido em " + segmento.arquivo + ", posição " + deslocamento);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(leitura.array(), CABECALHO_REGISTRO, tamanho));
+        return decodificar(in.readLong(), in);
+    }
+
+    /**
+     * Completa o buffer de leitura até {@code limite} bytes a partir do deslocamento.
+     */
+    private void lerAte(Segmento segmento, long deslocamento, long limite) throws IOException {
+        leitura.limit((int) limite);
+        while (leitura.hasRemaining()) {
+            if (segmento.canal.read(leitura, deslocamento + leitura.position()) < 0) {
+                throw new EOFException("Registro truncado em " + segmento.arquivo);
+            }
+        }
+    }
+
+    private static Visita decodificar(long instante, DataInput in) throws IOException {
+        Visita.Tipo tipo = Visita.Tipo.TODOS[in.readByte()];
+        String idAnimal = CodificadorAnimal.lerTexto(in);
+        String descricao = CodificadorAnimal.lerTexto(in);
+        return new Visita(idAnimal, instante, tipo, descricao);
+    }
+
+    private static byte[] codificarRegistro(Visita visita) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0); // tamanho, preenchido abaixo
+        out.writeInt(0); // crc, preenchido abaixo
+        out.writeLong(visita.getInstante());
+        out.writeByte(visita.getTipo().ordinal());
+        CodificadorAnimal.escreverTexto(out, visita.getIdAnimal());
+        CodificadorAnimal.escreverTexto(out, visita.getDescricao());
+        out.flush();
+
+        byte[] registro = bytes.toByteArray();
+        int tamanho = registro.length - CABECALHO_REGISTRO;
+        CRC32 crc = new CRC32();
+        crc.update(registro, CABECALHO_REGISTRO, tamanho);
+        ByteBuffer.wrap(registro).putInt(tamanho).putInt((int) crc.getValue());
+        return registro;
+    }
+
+    private static long posicao(Segmento segmento, long deslocamento) {
+        return ((long) segmento.numero << BITS_DESLOCAMENTO) | deslocamento;
+    }
+
+    private static YearMonth mes(long instante) {
+        return YearMonth.from(Instant.ofEpochMilli(instante).atOffset(ZoneOffset.UTC));
+    }
+
+    /**
+     * Um arquivo de segmento, sempre aberto para anexar e para leituras posicionais.
+     */
+    private static final class Segmento {
+        final int numero;
+        final Path arquivo;
+        final Path arquivoIndice;
+        final FileChannel canal;
+        long tamanho;
+        long indexado; // Bytes do início do segmento cobertos pelo arquivo de índice
+        long conferido; // Bytes do início do segmento que já se sabe estarem íntegros
+
+        Segmento(int numero, Path arquivo, Path arquivoIndice, FileChannel canal) {
+            this.numero = numero;
+            this.arquivo = arquivo;
+            this.arquivoIndice = arquivoIndice;
+            this.canal = canal;
+        }
+    }
+
+    private interface Visitante {
+        void visitar(LeitorRegistros leitor, long deslocamento) throws IOException;
+    }
+
+    private interface EntradaIndice {
+        void aceitar(String idAnimal, long instante, long deslocamento) throws IOException;
+    }
+
+    /**
+     * Leitura sequencial de um segmento em blocos grandes, sem cópia por registro.
+     * Para no fim do segmento ou num registro incompleto no final.
+     */
+    private static final class LeitorRegistros {
+        private final Segmento segmento;
+        private final long limite; // Tamanho do segmento considerado pela leitura
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        private final CRC32 crc = new CRC32();
+        private long lidoDoArquivo; // Deslocamento no arquivo do primeiro byte ainda não lido para o buffer
+        private int inicio; // Início dos dados do registro atual no buffer
+        private int tamanho; // Tamanho dos dados do registro atual
+
+        LeitorRegistros(Segmento segmento, long inicio, long limite) {
+            this.segmento = segmento;
+            this.limite = limite;
+            this.lidoDoArquivo = inicio;
+            buffer.limit(0);
+        }
+
+        /**
+         * Avança para o próximo registro íntegro. Um registro com CRC inválido no meio do
+         * segmento é pulado com um aviso, mantendo os seguintes; um tamanho inválido no meio do
+         * segmento impede achar o próximo registro e gera uma IOException.
+         * @return false no fim do segmento ou se o último registro estiver incompleto.
+         */
+        boolean proximo() throws IOException {
+            while (true) {
+                buffer.position(inicio + tamanho);
+                if (!garantir(CABECALHO_REGISTRO)) {
+                    return false;
+                }
+                long posicao = lidoDoArquivo - buffer.limit() + buffer.position();
+                int proximoTamanho = buffer.getInt(buffer.position());
+                if (proximoTamanho <= Long.BYTES || proximoTamanho > TAMANHO_MAXIMO_REGISTRO) {
+                    if (restoZerado(posicao)) {
+                        return false; // Final do segmento reservado mas não gravado
+                    }
+                    throw new IOException("Segmento " + segmento.arquivo + " corrompido na posição " + posicao
+                            + ": tamanho de registro inválido (" + proximoTamanho + ") seguido de mais "
+                            + (limite - posicao) + " bytes.");
+                }
+                if (!garantir(CABECALHO_REGISTRO + proximoTamanho)) {
+                    return false; // O último registro não foi gravado por inteiro
+                }
+                int dados = buffer.position() + CABECALHO_REGISTRO;
+                crc.reset();
+                crc.update(buffer.array(), dados, proximoTamanho);
+                boolean integro = (int) crc.getValue() == buffer.getInt(buffer.position() + 4);
+                if (!integro && posicao + CABECALHO_REGISTRO + proximoTamanho == limite) {
+                    return false; // Último registro gravado pela metade
+                }
+                inicio = dados;
+                tamanho = proximoTamanho;
+                if (integro) {
+                    return true;
+                }
+                System.err.println("Registro com CRC inválido em " + segmento.arquivo + ", posição " + posicao + "; ignorado.");
+            }
+        }
+
+        /**
+         * Indica se o segmento só tem bytes zero da posição até o limite da leitura.
+         */
+        private boolean restoZerado(long posicao) throws IOException {
+            ByteBuffer bloco = ByteBuffer.allocate(1 << 16);
+            while (posicao < limite) {
+                bloco.clear().limit((int) Math.min(bloco.capacity(), limite - posicao));
+                int lidos = segmento.canal.read(bloco, posicao);
+                if (lidos < 0) {
+                    break;
+                }
+                for (int i = 0; i < lidos; i++) {
+                    if (bloco.get(i) != 0) {
+                        return false;
+                    }
+                }
+                posicao += lidos;
+            }
+            return true;
+        }
+
+        /**
+         * Deslocamento do registro atual no segmento.
+         */
+        long deslocamento() {
+            return lidoDoArquivo - buffer.limit() + inicio - CABECALHO_REGISTRO;
+        }
+
+        /**
+         * Deslocamento logo após o último registro íntegro lido.
+         */
+        long fim() {
+            return lidoDoArquivo - buffer.limit() + inicio + tamanho;
+        }
+
+        long instante() {
+            return buffer.getLong(inicio);
+        }
+
+        String idAnimal() throws IOException {
+            byte[] dados = buffer.array();
+            int posicao = inicio + Long.BYTES + 1; // Depois do instante e do tipo
+            if (dados[posicao] != 0) {
+                int comprimento = ((dados[posicao + 1] & 0xff) << 8) | (dados[posicao + 2] & 0xff);
+                int texto = posicao + 3;
+                boolean ascii = true;
+                for (int i = texto; i < texto + comprimento && ascii; i++) {
+                    ascii = dados[i] > 0;
+                }
+                if (ascii) {
+                    return new String(dados, texto, comprimento, StandardCharsets.ISO_8859_1); // IDs costumam ser numéricos
+                }
+            }
+            return visita().getIdAnimal();
+        }
+
+        Visita visita() throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.array(), inicio, tamanho));
+            return decodificar(in.readLong(), in);
+        }
+
+        /**
+         * Garante que o buffer tenha ao menos {@code quantidade} bytes a partir da posição atual.
+         */
+        private boolean garantir(int quantidade) throws IOException {
+            if (buffer.remaining() >= quantidade) {
+                return true;
+            }
+            int deslocado = buffer.position();
+            buffer.compact();
+            inicio -= deslocado;
+            while (buffer.position() < quantidade && lidoDoArquivo < limite) {
+                buffer.limit((int) Math.min(buffer.capacity(), buffer.position() + limite - lidoDoArquivo));
+                int lidos = segmento.canal.read(buffer, lidoDoArquivo);
+                if (lidos < 0) {
+                    break;
+                }
+                lidoDoArquivo += lidos;
+            }
+            buffer.flip();
+            return buffer.remaining() >= quantidade;
+        }
+    }
+
+    /**
+     * Instantes e posições das visitas de um animal, em ordem cronológica.
+     * Visitas costumam chegar em ordem, então inserir normalmente é anexar ao final.
+     */
+    private static final class VisitasDoAnimal {
+        long[] instantes = new long[4];
+        long[] posicoes = new long[4];
+        int tamanho;
+
+        void adicionar(long instante, long posicao) {
+            if (tamanho == instantes.length) {
+                instantes = Arrays.copyOf(instantes, tamanho * 2);
+                posicoes = Arrays.copyOf(posicoes, tamanho * 2);
+            }
+            int i = tamanho == 0 || instantes[tamanho - 1] <= instante
+                    ? tamanho
+                    : primeiraEmOuApos(instante + 1); // Visita retroativa: mantém a ordem, após as do mesmo instante
+            System.arraycopy(instantes, i, instantes, i + 1, tamanho - i);
+            System.arraycopy(posicoes, i, posicoes, i + 1, tamanho - i);
+            instantes[i] = instante;
+            posicoes[i] = posicao;
+            tamanho++;
+        }
+
+        /**
+         * Índice da primeira visita com instante maior ou igual ao informado.
+         */
+        int primeiraEmOuApos(long instante) {
+            int baixo = 0, alto = tamanho;
+            while (baixo < alto) {
+                int meio = (baixo + alto) >>> 1;
+                if (instantes[meio] < instante) {
+                    baixo = meio + 1;
+                } else {
+                    alto = meio;
+                }
+            }
+            return baixo;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+import java.util.*;
+
+/**
+ * Índice ordenado dos animais por uma coluna da tabela.
+ *
+ * O índice é mantido de forma incremental pelo PetshopService: inserções, alterações e
+ * remoções custam O(log n), e percorrer os animais em ordem não exige reordenar nada.
+ * A chave de cada animal é guardada separadamente por ID, para que a posição da versão
+ * anterior seja encontrada quando o animal é atualizado.
+ *
+ * A leitura é feita em páginas a partir de uma chave, então inverter a ordenação ou
+ * trocar de coluna custa O(log n) mais o tamanho da página.
+ */
+class IndiceOrdenado {
+    private final ColunaAnimal coluna;
+    private final TreeMap<Chave, Animal> ordenados;
+    private final Map<String, Chave> chavesPorId;
+
+    public IndiceOrdenado(ColunaAnimal coluna, Collection<Animal> animais) {
+        this.coluna = coluna;
+        this.chavesPorId = new HashMap<>(Math.max(16, animais.size() * 4 / 3 + 1));
+        // Carga inicial: ordena todas as chaves de uma vez (em paralelo) e monta a árvore já ordenada
+        Chave[] chaves = new Chave[animais.size()];
+        int i = 0;
+        for (Animal animal : animais) {
+            chaves[i++] = new Chave(coluna, animal);
+        }
+        Arrays.parallelSort(chaves);
+        ordenados = new TreeMap<>(new ChavesOrdenadas(chaves)); // A partir de um SortedMap, a árvore é montada em tempo linear
+        for (Chave chave : chaves) {
+            chavesPorId.put(chave.id, chave);
+        }
+    }
+
+    /**
+     * Insere o animal no índice, ou reposiciona-o se já estiver indexado.
+     */
+    public void inserir(Animal animal) {
+        Chave chave = new Chave(coluna, animal);
+        Chave anterior = chavesPorId.put(animal.getId(), chave);
+        if (anterior != null) {
+            ordenados.remove(anterior);
+        }
+        ordenados.put(chave, animal);
+    }
+
+    public void remover(String id) {
+        Chave chave = chavesPorId.remove(id);
+        if (chave != null) {
+            ordenados.remove(chave);
+        }
+    }
+
+    /**
+     * Lê uma página do índice a partir de uma posição, sem copiar o restante.
+     * @param apos Chave do último animal da página anterior (null para a primeira página).
+     * @param crescente true para ordem crescente, false para decrescente.
+     * @param limite Quantidade máxima de animais na página.
+     * @param filtro Filtro aplicado durante a leitura.
+     */
+    public PaginaAnimais pagina(Chave apos, boolean crescente, int limite, FiltroAnimais filtro) {
+        NavigableMap<Chave, Animal> visao = crescente ? ordenados : ordenados.descendingMap();
+        if (apos != null) {
+            visao = visao.tailMap(apos, false); // A chave pode já ter saído do índice; a posição continua válida
+        }
+        List<Animal> animais = new ArrayList<>(Math.min(limite, 1024));
+        Chave ultima = null;
+        for (Map.Entry<Chave, Animal> entrada : visao.entrySet()) {
+            if (!filtro.aceita(entrada.getValue())) {
+                continue;
+            }
+            if (animais.size() == limite) {
+                return new PaginaAnimais(animais, ultima, true);
+            }
+            animais.add(entrada.getValue());
+            ultima = entrada.getKey();
+        }
+        return new PaginaAnimais(animais, ultima, false);
+    }
+
+    public int tamanho() {
+        return ordenados.size();
+    }
+
+    /**
+     * Converte o ID em número para que "10" venha depois de "9".
+     * IDs não numéricos (UUIDs antigos) ficam depois de todos os numéricos.
+     */
+    static long idNumerico(String id) {
+        if (id == null || id.isEmpty() || id.length() > 18) {
+            return Long.MAX_VALUE;
+        }
+        long valor = 0;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return Long.MAX_VALUE;
+            }
+            valor = valor * 10 + (c - '0');
+        }
+        return valor;
+    }
+
+    /**
+     * Visão somente leitura de um array de chaves já ordenado e sem repetições como SortedMap
+     * (cada chave aponta para o seu animal). As buscas e as faixas (subMap, headMap, tailMap)
+     * usam busca binária sobre o array. Serve para a carga inicial: o construtor
+     * {@code TreeMap(SortedMap)} monta a árvore em tempo linear.
+     */
+    private static final class ChavesOrdenadas extends AbstractMap<Chave, Animal> implements SortedMap<Chave, Animal> {
+        private final Chave[] chaves;
+        private final int de; // Primeira posição da faixa (inclusive)
+        private final int ate; // Última posição da faixa (exclusive)
+
+        ChavesOrdenadas(Chave[] chaves) {
+            this(chaves, 0, chaves.length);
+        }
+
+        private ChavesOrdenadas(Chave[] chaves, int de, int ate) {
+            this.chaves = chaves;
+            this.de = de;
+            this.ate = Math.max(de, ate);
+        }
+
+        @Override
+        public int size() {
+            return ate - de;
+        }
+
+        @Override
+        public Comparator<? super Chave> comparator() {
+            return null; // Ordem natural, a mesma do TreeMap do índice
+        }
+
+        @Override
+        public boolean containsKey(Object chave) {
+            return posicao(chave) >= 0;
+        }
+
+        @Override
+        public Animal get(Object chave) {
+            int posicao = posicao(chave);
+            return posicao >= 0 ? chaves[posicao].animal : null;
+        }
+
+        private int posicao(Object chave) {
+            return chave instanceof Chave c ? Arrays.binarySearch(chaves, de, ate, c) : -1;
+        }
+
+        /**
+         * Posição da primeira chave maior ou igual à informada, limitada à faixa.
+         */
+        private int primeiraEmOuApos(Chave chave) {
+            int posicao = Arrays.binarySearch(chaves, de, ate, Objects.requireNonNull(chave));
+            return posicao >= 0 ? posicao : -posicao - 1;
+        }
+
+        @Override
+        public Set<Entry<Chave, Animal>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<Chave, Animal>> iterator() {
+                    return new Iterator<>() {
+                        private int proxima = de;
+
+                        @Override
+                        public boolean hasNext() {
+                            return proxima < ate;
+                        }
+
+                        @Override
+                        public Entry<Chave, Animal> next() {
+                            if (proxima >= ate) {
+                                throw new NoSuchElementException();
+                            }
+                            Chave chave = chaves[proxima++];
+                            return new SimpleImmutableEntry<>(chave, chave.animal);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return ate - de;
+                }
+            };
+        }
+
+        @Override
+        public SortedMap<Chave, Animal> subMap(Chave inicio, Chave fim) {
+            if (inicio.compareTo(fim) > 0) {
+                throw new IllegalArgumentException("Início da faixa depois do fim");
+            }
+            return new ChavesOrdenadas(chaves, primeiraEmOuApos(inicio), primeiraEmOuApos(fim));
+        }
+
+        @Override
+        public SortedMap<Chave, Animal> headMap(Chave fim) {
+            return new ChavesOrdenadas(chaves, de, primeiraEmOuApos(fim));
+        }
+
+        @Override
+        public SortedMap<Chave, Animal> tailMap(Chave inicio) {
+            return new ChavesOrdenadas(chaves, primeiraEmOuApos(inicio), ate);
+        }
+
+        @Override
+        public Chave firstKey() {
+            if (de == ate) {
+                throw new NoSuchElementException();
+            }
+            return chaves[de];
+        }
+
+        @Override
+        public Chave lastKey() {
+            if (de == ate) {
+                throw new NoSuchElementException();
+            }
+            return chaves[ate - 1];
+        }
+    }
+
+    /**
+     * Chave de ordenação: valor da coluna (numérico ou texto normalizado) seguido do ID,
+     * que desempata animais com o mesmo valor.
+     */
+    static final class Chave implements Comparable<Chave> {
+        private final long numero;
+        private final String texto;
+        private final long idNumero;
+        private final String id;
+        private final Animal animal;
+
+        Chave(ColunaAnimal coluna, Animal animal) {
+            this.animal = animal;
+            this.id = animal.getId();
+            this.idNumero = idNumerico(id);
+            if (coluna == ColunaAnimal.ID) {
+                this.numero = idNumero;
+                this.texto = "";
+            } else if (coluna == ColunaAnimal.IDADE) {
+                this.numero = animal.getIdade();
+                this.texto = "";
+            } else {
+                this.numero = 0;
+                this.texto = Textos.normalizar(String.valueOf(coluna.valor(animal)));
+            }
+        }
+
+        @Override
+        public int compareTo(Chave outra) {
+            int c = Long.compare(numero, outra.numero);
+            if (c == 0) {
+                c = texto.compareTo(outra.texto);
+            }
+            if (c == 0) {
+                c = Long.compare(idNumero, outra.idNumero);
+            }
+            if (c == 0) {
+                c = id.compareTo(outra.id);
+            }
+            return c;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Chave outra && compareTo(outra) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+    }
+}
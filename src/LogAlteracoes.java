@@ -0,0 +1,285 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Log de todas as alterações do cadastro, em segmentos: cada alteração é anexada ao segmento
+ * atual no formato dos registros do diário ({@link ArmazenamentoDiario}), com um número de
+ * sequência próprio e o instante da gravação. Quando o segmento atinge o tamanho configurado,
+ * ou quando um backup pede, ele é fechado e não muda mais, então pode ser copiado com o sistema
+ * em uso.
+ *
+ * Os segmentos se chamam {@code alteracoes-<primeira seq>.log}. Um registro incompleto no final
+ * do último segmento (gravação interrompida) é descartado ao abrir o log.
+ *
+ * Só um processo pode abrir o log de um diretório: o construtor trava {@code alteracoes.lock}
+ * ({@link FileChannel#tryLock}) e falha se outro processo já o abriu. Sem a trava, um segundo
+ * processo veria o segmento em uso pelo primeiro como fechado, e o copiaria e apagaria no meio
+ * das gravações.
+ */
+class LogAlteracoes implements Closeable {
+    static final String PREFIXO = "alteracoes-";
+    static final String EXTENSAO = ".log";
+    static final long TAMANHO_SEGMENTO_PADRAO = 16L << 20;
+    static final String ARQUIVO_TRAVA = "alteracoes.lock";
+
+    private final Path dir;
+    private final long tamanhoSegmento;
+    private final boolean sincronizar;
+    private final FileChannel canalTrava;
+    private final FileLock trava;
+    private FileChannel atual; // null até a próxima alteração depois de um fechamento
+    private Path arquivoAtual;
+    private long ultimaSeq;
+
+    /**
+     * Abre o log no diretório, continuando a sequência do último segmento.
+     */
+    LogAlteracoes(Path dir, long tamanhoSegmento) throws IOException {
+        this.dir = dir;
+        this.tamanhoSegmento = tamanhoSegmento;
+        this.sincronizar = Boolean.getBoolean("petshop.diario.fsync");
+        Files.createDirectories(dir);
+        canalTrava = FileChannel.open(dir.resolve(ARQUIVO_TRAVA), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock obtida;
+        try {
+            obtida = canalTrava.tryLock();
+        } catch (OverlappingFileLockException e) { // Já aberto por esta mesma JVM
+            obtida = null;
+        }
+        trava = obtida;
+        if (trava == null) {
+            canalTrava.close();
+            throw new IOException("Log de alterações " + dir + " em uso por outro processo (a aplicação em"
+                    + " execução já faz os backups incrementais); encerre-o ou use outro petshop.alteracoes.dir.");
+        }
+        try {
+            List<Path> segmentos = segmentos(dir);
+            if (!segmentos.isEmpty()) {
+                Path ultimo = segmentos.get(segmentos.size() - 1);
+                long[] seq = {primeiraSeq(ultimo) - 1};
+                long posicaoValida = ler(ultimo, registro -> seq[0] = registro.seq);
+                ultimaSeq = seq[0];
+                atual = FileChannel.open(ultimo, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                arquivoAtual = ultimo;
+                if (posicaoValida < atual.size()) {
+                    System.err.println("Registro incompleto no final de " + ultimo + "; descartando " + (atual.size() - posicaoValida) + " bytes.");
+                    atual.truncate(posicaoValida);
+                }
+                atual.position(posicaoValida);
+            }
+            System.out.println("Log de alterações " + dir + ": " + segmentos.size() + " segmento(s), última seq " + ultimaSeq + ".");
+        } catch (IOException | RuntimeException e) {
+            fecharSegmento();
+            liberarTrava();
+            throw e;
+        }
+    }
+
+    /**
+     * Anexa uma alteração. Chamado pelo PetshopService sob a sua trava, na ordem das gravações.
+     */
+    synchronized void registrar(byte operacao, Animal versao, String id) throws IOException {
+        gravar(ArmazenamentoDiario.codificarRegistro(ultimaSeq + 1, operacao, versao, id), 1);
+    }
+
+    /**
+     * Anexa várias inserções com uma única escrita.
+     */
+    synchronized void registrarInsercoes(Collection<Animal> versoes) throws IOException {
+        ByteArrayOutputStream lote = new ByteArrayOutputStream(versoes.size() * 96);
+        long seq = ultimaSeq;
+        for (Animal versao : versoes) {
+            lote.write(ArmazenamentoDiario.codificarRegistro(++seq, ArmazenamentoDiario.OP_INSERIR, versao, null));
+        }
+        gravar(lote.toByteArray(), versoes.size());
+    }
+
+    /**
+     * Fecha o segmento atual; a próxima alteração abre um novo.
+     * @return A seq do último registro dos segmentos fechados.
+     */
+    synchronized long fecharSegmento() throws IOException {
+        if (atual != null) {
+            atual.force(false);
+            atual.close();
+            atual = null;
+            arquivoAtual = null;
+        }
+        return ultimaSeq;
+    }
+
+    /**
+     * Faz a sequência continuar a partir da informada, se ela for maior que a atual (por
+     * exemplo, quando o log foi apagado mas os backups continuam no destino).
+     */
+    synchronized void avancarPara(long seq) throws IOException {
+        if (seq > ultimaSeq) {
+            fecharSegmento();
+            ultimaSeq = seq;
+        }
+    }
+
+    synchronized long getUltimaSeq() {
+        return ultimaSeq;
+    }
+
+    /**
+     * Segmentos que não recebem mais alterações, em ordem de sequência.
+     */
+    synchronized List<Path> segmentosFechados() throws IOException {
+        List<Path> fechados = segmentos(dir);
+        fechados.remove(arquivoAtual);
+        return fechados;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            fecharSegmento();
+        } finally {
+            liberarTrava();
+        }
+    }
+
+    private void liberarTrava() throws IOException {
+        if (canalTrava.isOpen()) {
+            trava.release();
+            canalTrava.close();
+        }
+    }
+
+    private void gravar(byte[] registros, int quantidade) throws IOException {
+        if (atual == null) {
+            arquivoAtual = dir.resolve(nomeSegmento(ultimaSeq + 1));
+            atual = FileChannel.open(arquivoAtual, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+        ByteBuffer dados = ByteBuffer.wrap(registros);
+        while (dados.hasRemaining()) {
+            atual.write(dados);
+        }
+        if (sincronizar) {
+            atual.force(false);
+        }
+        ultimaSeq += quantidade;
+        if (atual.position() >= tamanhoSegmento) {
+            fecharSegmento();
+        }
+    }
+
+    static String nomeSegmento(long primeiraSeq) {
+        return String.format("%s%020d%s", PREFIXO, primeiraSeq, EXTENSAO);
+    }
+
+    /**
+     * @return Os segmentos do diretório, em ordem de sequência.
+     */
+    static List<Path> segmentos(Path dir) throws IOException {
+        List<Path> segmentos = new ArrayList<>();
+        if (Files.isDirectory(dir)) {
+            try (Stream<Path> arquivos = Files.list(dir)) {
+                arquivos.filter(arquivo -> {
+                    String nome = arquivo.getFileName().toString();
+                    return nome.startsWith(PREFIXO) && nome.endsWith(EXTENSAO);
+                }).sorted().forEach(segmentos::add); // Nomes com largura fixa: a ordem alfabética é a da sequência
+            }
+        }
+        return segmentos;
+    }
+
+    static long primeiraSeq(Path segmento) {
+        String nome = segmento.getFileName().toString();
+        return Long.parseLong(nome.substring(PREFIXO.length(), nome.length() - EXTENSAO.length()));
+    }
+
+    /**
+     * Lê os registros íntegros de um segmento, em ordem. Só o último registro pode estar
+     * incompleto (gravação interrompida); um registro danificado seguido de outros gera uma
+     * IOException, em vez de os registros seguintes serem tratados como inexistentes.
+     * @return A posição logo após o último registro íntegro.
+     */
+    static long ler(Path segmento, Consumer<Registro> destino) throws IOException {
+        long posicao = 0;
+        long tamanhoArquivo = Files.size(segmento);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segmento), 1 << 16))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] dados;
+                try {
+                    int tamanho = in.readInt();
+                    int crcEsperado = in.readInt();
+                    if (tamanho <= 0 || tamanho > ArmazenamentoDiario.TAMANHO_MAXIMO_REGISTRO) {
+                        if (restoZerado(in)) {
+                            break; // Final do segmento reservado mas não gravado
+                        }
+                        throw new IOException("Segmento " + segmento + " corrompido na posição " + posicao
+                                + ": tamanho de registro inválido (" + tamanho + ").");
+                    }
+                    dados = new byte[tamanho];
+                    in.readFully(dados);
+                    crc.reset();
+                    crc.update(dados);
+                    if ((int) crc.getValue() != crcEsperado) {
+                        if (posicao + ArmazenamentoDiario.CABECALHO_REGISTRO + tamanho == tamanhoArquivo) {
+                            break; // Último registro gravado pela metade
+                        }
+                        throw new IOException("Segmento " + segmento + " corrompido na posição " + posicao
+                                + ": CRC inválido, seguido de mais registros.");
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                DataInputStream registro = new DataInputStream(new ByteArrayInputStream(dados));
+                long seq = registro.readLong();
+                long instante = registro.readLong();
+                byte operacao = registro.readByte();
+                if (operacao == ArmazenamentoDiario.OP_REMOVER) {
+                    destino.accept(new Registro(seq, instante, operacao, null, registro.readUTF()));
+                } else {
+                    Animal animal = CodificadorAnimal.ler(registro);
+                    destino.accept(new Registro(seq, instante, operacao, animal, animal.getId()));
+                }
+                posicao += ArmazenamentoDiario.CABECALHO_REGISTRO + dados.length;
+            }
+        }
+        return posicao;
+    }
+
+    private static boolean restoZerado(InputStream in) throws IOException {
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Uma alteração lida do log.
+     */
+    static final class Registro {
+        final long seq;
+        final long instante;
+        final byte operacao;
+        final Animal animal; // null nas remoções
+        final String id;
+
+        Registro(long seq, long instante, byte operacao, Animal animal, String id) {
+            this.seq = seq;
+            this.instante = instante;
+            this.operacao = operacao;
+            this.animal = animal;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+import java.time.Instant;
+
+/**
+ * Mede o tempo de inicialização da aplicação gráfica a partir do início da JVM:
+ * até o primeiro quadro (janela aberta) e até ficar interativa (dados carregados
+ * e tabela preenchida).
+ *
+ * Ativado com {@code -Dpetshop.inicio.medir=true}. Com {@code -Dpetshop.inicio.sair=true}
+ * a aplicação encerra assim que fica interativa, o que é usado pelo benchmark de
+ * inicialização e pela geração do arquivo de CDS.
+ */
+class MedidorInicializacao {
+    private final long inicioJvm;
+    private final boolean medir;
+    private final boolean sair;
+    private long primeiroQuadro = -1;
+
+    public MedidorInicializacao() {
+        this.medir = Boolean.getBoolean("petshop.inicio.medir");
+        this.sair = Boolean.getBoolean("petshop.inicio.sair");
+        this.inicioJvm = ProcessHandle.current().info().startInstant()
+                .map(Instant::toEpochMilli)
+                .orElse(System.currentTimeMillis());
+    }
+
+    /**
+     * Registra que a janela foi exibida.
+     */
+    public void primeiroQuadro() {
+        primeiroQuadro = System.currentTimeMillis() - inicioJvm;
+    }
+
+    /**
+     * Registra que a aplicação está pronta para uso e, se pedido, encerra.
+     */
+    public void interativo() {
+        long interativo = System.currentTimeMillis() - inicioJvm;
+        if (medir) {
+            System.err.println("[inicio] primeiroQuadro=" + primeiroQuadro + " interativo=" + interativo);
+        }
+        if (sair) {
+            System.exit(0);
+        }
+    }
+}
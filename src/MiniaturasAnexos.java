@@ -0,0 +1,95 @@
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Carrega as miniaturas das fotos dos animais para a tabela, sob demanda e fora da EDT.
+ *
+ * A tabela só pede as células visíveis; na primeira vez, {@link #obter} devolve null e agenda
+ * a leitura em uma thread de fundo. Quando a miniatura fica pronta, ela entra num cache LRU
+ * e a tabela é avisada para repintar. Nenhuma imagem em tamanho original é decodificada aqui:
+ * a geração usa {@link ArmazenamentoAnexos#miniatura}, que lê a imagem já reduzida.
+ *
+ * Todos os métodos devem ser chamados na EDT.
+ */
+class MiniaturasAnexos {
+    private static final int CAPACIDADE = 256;
+    private static final Icon SEM_FOTO = new ImageIcon(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB));
+
+    private final ArmazenamentoAnexos anexos;
+    private final int lado;
+    private final Runnable aoCarregar;
+    private final Set<String> pendentes = new HashSet<>();
+    private final Map<String, Icon> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Icon> maisAntiga) {
+            return size() > CAPACIDADE;
+        }
+    };
+    private final ExecutorService carregador = Executors.newSingleThreadExecutor(tarefa -> {
+        Thread thread = new Thread(tarefa, "miniaturas");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param lado Maior lado das miniaturas, em pixels.
+     * @param aoCarregar Chamado na EDT quando uma miniatura fica pronta (por exemplo, repintar a tabela).
+     */
+    public MiniaturasAnexos(ArmazenamentoAnexos anexos, int lado, Runnable aoCarregar) {
+        this.anexos = anexos;
+        this.lado = lado;
+        this.aoCarregar = aoCarregar;
+    }
+
+    public int getLado() {
+        return lado;
+    }
+
+    /**
+     * Miniatura da foto principal do animal, ou null enquanto não estiver carregada
+     * ou se o animal não tiver foto.
+     */
+    public Icon obter(String idAnimal) {
+        Icon icone = cache.get(idAnimal);
+        if (icone != null) {
+            return icone == SEM_FOTO ? null : icone;
+        }
+        if (pendentes.add(idAnimal)) {
+            carregador.execute(() -> carregar(idAnimal));
+        }
+        return null;
+    }
+
+    /**
+     * Descarta a miniatura em cache do animal (após anexar uma nova foto).
+     */
+    public void invalidar(String idAnimal) {
+        cache.remove(idAnimal);
+    }
+
+    private void carregar(String idAnimal) {
+        Icon icone = SEM_FOTO;
+        try {
+            ArmazenamentoAnexos.Anexo foto = anexos.fotoPrincipal(idAnimal);
+            BufferedImage miniatura = foto != null ? anexos.miniatura(foto.getHash(), lado) : null;
+            if (miniatura != null) {
+                icone = new ImageIcon(miniatura);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Erro ao carregar miniatura do animal " + idAnimal + ": " + e.getMessage());
+        }
+        Icon carregado = icone;
+        SwingUtilities.invokeLater(() -> {
+            pendentes.remove(idAnimal);
+            cache.put(idAnimal, carregado);
+            aoCarregar.run();
+        });
+    }
+}
@@ -0,0 +1,34 @@
+import java.util.List;
+
+/**
+ * Uma página de animais lida de um índice ordenado, com a posição para continuar a leitura.
+ */
+final class PaginaAnimais {
+    private final List<Animal> animais;
+    private final IndiceOrdenado.Chave ultima;
+    private final boolean temMais;
+
+    PaginaAnimais(List<Animal> animais, IndiceOrdenado.Chave ultima, boolean temMais) {
+        this.animais = animais;
+        this.ultima = ultima;
+        this.temMais = temMais;
+    }
+
+    public List<Animal> getAnimais() {
+        return animais;
+    }
+
+    /**
+     * Posição do último animal da página, a ser passada para ler a página seguinte.
+     */
+    public IndiceOrdenado.Chave getUltima() {
+        return ultima;
+    }
+
+    /**
+     * Indica se há mais animais depois desta página.
+     */
+    public boolean temMais() {
+        return temMais;
+    }
+}
@@ -1,327 +1,14 @@
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.*;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
-// import java.util.UUID; // Não será mais usado para gerar novos IDs
-
-/**
- * Classe base abstrata para representar um Animal.
- * Demonstra o conceito de herança.
- */
-abstract class Animal implements Serializable {
-    private static final long serialVersionUID = 1L; // Necessário para serialização
-    protected String id; // Alterado para protected para que PetshopService possa definir
-    private String nome;
-    private int idade;
-    private String raca;
-
-    // Construtor para novos animais (ID será atribuído pelo serviço)
-    public Animal(String nome, int idade, String raca) {
-        this.nome = nome;
-        this.idade = idade;
-        this.raca = raca;
-        this.id = null; // ID será definido pelo PetshopService
-    }
-
-    // Construtor para carregar animais existentes (com ID já definido)
-    public Animal(String id, String nome, int idade, String raca) {
-        this.id = id;
-        this.nome = nome;
-        this.idade = idade;
-        this.raca = raca;
-    }
-
-    // Getters
-    public String getId() {
-        return id;
-    }
-
-    public String getNome() {
-        return nome;
-    }
-
-    public int getIdade() {
-        return idade;
-    }
-
-    public String getRaca() {
-        return raca;
-    }
-
-    // Setters
-    public void setId(String id) { // Adicionado setter para ID
-        this.id = id;
-    }
-
-    public void setNome(String nome) {
-        this.nome = nome;
-    }
-
-    public void setIdade(int idade) {
-        this.idade = idade;
-    }
-
-    public void setRaca(String raca) {
-        this.raca = raca;
-    }
-
-    /**
-     * Método abstrato para demonstrar polimorfismo.
-     * Cada subclasse implementará sua própria versão.
-     */
-    public abstract String emitirSom();
-
-    @Override
-    public String toString() {
-        return "ID: " + id + ", Nome: " + nome + ", Idade: " + idade + ", Raça: " + raca;
-    }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        Animal animal = (Animal) o;
-        return Objects.equals(id, animal.id);
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(id);
-    }
-}
-
-/**
- * Subclasse de Animal para representar um Cachorro.
- * Demonstra herança e polimorfismo.
- */
-class Cachorro extends Animal {
-    private static final long serialVersionUID = 1L;
-    private String porte;
-
-    // Construtor para novos cachorros
-    public Cachorro(String nome, int idade, String raca, String porte) {
-        super(nome, idade, raca);
-        this.porte = porte;
-    }
-
-    // Construtor para carregar cachorros existentes
-    public Cachorro(String id, String nome, int idade, String raca, String porte) {
-        super(id, nome, idade, raca);
-        this.porte = porte;
-    }
-
-    public String getPorte() {
-        return porte;
-    }
-
-    public void setPorte(String porte) {
-        this.porte = porte;
-    }
-
-    @Override
-    public String emitirSom() {
-        return "Au Au!";
-    }
-
-    @Override
-    public String toString() {
-        return super.toString() + ", Tipo: Cachorro, Porte: " + porte + ", Som: " + emitirSom();
-    }
-}
-
-/**
- * Subclasse de Animal para representar um Gato.
- * Demonstra herança e polimorfismo.
- */
-class Gato extends Animal {
-    private static final long serialVersionUID = 1L;
-    private boolean castrado;
-
-    // Construtor para novos gatos
-    public Gato(String nome, int idade, String raca, boolean castrado) {
-        super(nome, idade, raca);
-        this.castrado = castrado;
-    }
-
-    // Construtor para carregar gatos existentes
-    public Gato(String id, String nome, int idade, String raca, boolean castrado) {
-        super(id, nome, idade, raca);
-        this.castrado = castrado;
-    }
-
-    public boolean isCastrado() {
-        return castrado;
-    }
-
-    public void setCastrado(boolean castrado) {
-        this.castrado = castrado;
-    }
-
-    @Override
-    public String emitirSom() {
-        return "Miau!";
-    }
-
-    @Override
-    public String toString() {
-        return super.toString() + ", Tipo: Gato, Castrado: " + (castrado ? "Sim" : "Não") + ", Som: " + emitirSom();
-    }
-}
-
-/**
- * Classe de serviço para gerenciar os animais do petshop.
- * Utiliza Collections (ArrayList) para armazenar os objetos Animal.
- */
-class PetshopService {
-    private List<Animal> animais;
-    private final String ARQUIVO_DADOS = "animais.dat";
-    private int nextSequentialId; // Contador para IDs sequenciais
-
-    public PetshopService() {
-        this.animais = new ArrayList<>();
-        this.nextSequentialId = 1; // Inicia o contador de IDs sequenciais
-        carregarDados(); // Carrega os dados ao iniciar o serviço
-    }
-
-    /**
-     * Adiciona um novo animal à lista.
-     * Atribui um ID sequencial se o animal ainda não tiver um (para novas entradas).
-     * @param animal O objeto Animal a ser adicionado.
-     */
-    public void adicionarAnimal(Animal animal) {
-        // Atribui um ID sequencial apenas se o animal não tiver um ID válido (ex: se foi carregado de um arquivo)
-        if (animal.getId() == null || animal.getId().isEmpty() || !isNumeric(animal.getId())) {
-            animal.setId(String.valueOf(nextSequentialId++));
-        }
-        animais.add(animal);
-        salvarDados(); // Salva os dados após adicionar
-    }
-
-    /**
-     * Lista todos os animais cadastrados.
-     * @return Uma lista de objetos Animal.
-     */
-    public List<Animal> listarAnimais() {
-        return new ArrayList<>(animais); // Retorna uma cópia para evitar modificações externas diretas
-    }
-
-    /**
-     * Busca um animal pelo seu ID.
-     * @param id O ID do animal a ser buscado.
-     * @return O objeto Animal encontrado ou null se não for encontrado.
-     */
-    public Animal buscarAnimalPorId(String id) {
-        for (Animal animal : animais) {
-            if (animal.getId().equals(id)) {
-                return animal;
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Atualiza os dados de um animal existente.
-     * @param animalAtualizado O objeto Animal com os dados atualizados.
-     * @return true se o animal foi atualizado com sucesso, false caso contrário.
-     */
-    public boolean atualizarAnimal(Animal animalAtualizado) {
-        for (int i = 0; i < animais.size(); i++) {
-            if (animais.get(i).getId().equals(animalAtualizado.getId())) {
-                animais.set(i, animalAtualizado);
-                salvarDados(); // Salva os dados após atualizar
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Remove um animal da lista pelo seu ID.
-     * @param id O ID do animal a ser removido.
-     * @return true se o animal foi removido com sucesso, false caso contrário.
-     */
-    public boolean removerAnimal(String id) {
-        boolean removido = animais.removeIf(animal -> animal.getId().equals(id));
-        if (removido) {
-            salvarDados(); // Salva os dados após remover
-        }
-        return removido;
-    }
-
-    /**
-     * Salva a lista de animais em um arquivo usando serialização.
-     */
-    private void salvarDados() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(ARQUIVO_DADOS))) {
-            oos.writeObject(animais);
-            System.out.println("Dados salvos com sucesso em " + ARQUIVO_DADOS);
-        } catch (IOException e) {
-            System.err.println("Erro ao salvar dados: " + e.getMessage());
-            JOptionPane.showMessageDialog(null, "Erro ao salvar dados: " + e.getMessage(), "Erro de E/S", JOptionPane.ERROR_MESSAGE);
-        }
-    }
-
-    /**
-     * Carrega a lista de animais de um arquivo usando desserialização.
-     * Também atualiza o contador de IDs sequenciais com base nos IDs existentes.
-     */
-    @SuppressWarnings("unchecked") // Suprime o aviso de tipo não verificado para o cast
-    private void carregarDados() {
-        File arquivo = new File(ARQUIVO_DADOS);
-        if (arquivo.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(ARQUIVO_DADOS))) {
-                Object obj = ois.readObject();
-                if (obj instanceof List) {
-                    this.animais = (List<Animal>) obj;
-                    System.out.println("Dados carregados com sucesso de " + ARQUIVO_DADOS);
-
-                    // Encontra o maior ID numérico existente para continuar a sequência
-                    int maxId = 0;
-                    for (Animal animal : animais) {
-                        if (isNumeric(animal.getId())) { // Apenas considera IDs numéricos para o contador
-                            try {
-                                int currentId = Integer.parseInt(animal.getId());
-                                if (currentId > maxId) {
-                                    maxId = currentId;
-                                }
-                            } catch (NumberFormatException e) {
-                                // Ignora IDs não numéricos (como os antigos UUIDs) para o cálculo do maxId
-                            }
-                        }
-                    }
-                    nextSequentialId = maxId + 1;
-                    System.out.println("Próximo ID sequencial disponível: " + nextSequentialId);
-                }
-            } catch (IOException | ClassNotFoundException e) {
-                System.err.println("Erro ao carregar dados: " + e.getMessage());
-                JOptionPane.showMessageDialog(null, "Erro ao carregar dados: " + e.getMessage(), "Erro de E/S", JOptionPane.ERROR_MESSAGE);
-                this.animais = new ArrayList<>(); // Inicializa com lista vazia em caso de erro
-                this.nextSequentialId = 1; // Reseta o contador
-            }
-        } else {
-            System.out.println("Arquivo de dados não encontrado. Iniciando com lista vazia.");
-            this.animais = new ArrayList<>();
-            this.nextSequentialId = 1; // Inicia do 1 se não houver arquivo
-        }
-    }
-
-    /**
-     * Verifica se uma string pode ser convertida para um número inteiro.
-     * @param str A string a ser verificada.
-     * @return true se a string é numérica, false caso contrário.
-     */
-    private boolean isNumeric(String str) {
-        if (str == null || str.isEmpty()) {
-            return false;
-        }
-        return str.matches("-?\\d+"); // Regex para números inteiros (opcionalmente negativos)
-    }
-}
+import java.util.function.Consumer;
 
 /**
  * Painel para o cadastro de novos animais.
@@ -332,9 +19,9 @@ class CadastroPanel extends JPanel {
     private JComboBox<String> cmbTipoAnimal;
     private PetshopService service;
     private JTable tabelaAnimais;
-    private DefaultTableModel tableModel;
+    private AnimalTableModel tableModel;
 
-    public CadastroPanel(PetshopService service, JTable tabelaAnimais, DefaultTableModel tableModel) {
+    public CadastroPanel(PetshopService service, JTable tabelaAnimais, AnimalTableModel tableModel) {
         this.service = service;
         this.tabelaAnimais = tabelaAnimais;
         this.tableModel = tableModel;
@@ -458,7 +145,7 @@ class CadastroPanel extends JPanel {
                         novoAnimal = new Gato(nome, idade, raca, castrado); // ID será atribuído no service
                     }
 
-                    if (novoAnimal != null) {
+                    if (novoAnimal != null && confirmarSemDuplicados(novoAnimal)) {
                         service.adicionarAnimal(novoAnimal);
                         JOptionPane.showMessageDialog(CadastroPanel.this, "Animal cadastrado com sucesso! ID: " + novoAnimal.getId());
                         limparCampos();
@@ -474,6 +161,23 @@ class CadastroPanel extends JPanel {
         add(btnCadastrar, gbc);
     }
 
+    /**
+     * Avisa se já houver animais parecidos cadastrados e pergunta se o cadastro deve continuar.
+     */
+    private boolean confirmarSemDuplicados(Animal novoAnimal) {
+        List<DetectorDuplicados.Semelhanca> semelhantes = service.possiveisDuplicados(novoAnimal);
+        if (semelhantes.isEmpty()) {
+            return true;
+        }
+        StringBuilder mensagem = new StringBuilder("Já existem animais parecidos cadastrados:\n");
+        for (int i = 0; i < Math.min(5, semelhantes.size()); i++) {
+            mensagem.append("\n").append(semelhantes.get(i).getSemelhante());
+        }
+        mensagem.append("\n\nCadastrar mesmo assim?");
+        return JOptionPane.showConfirmDialog(this, mensagem.toString(), "Possível Duplicado",
+                JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE) == JOptionPane.YES_OPTION;
+    }
+
     /**
      * Limpa os campos do formulário após o cadastro.
      */
@@ -490,45 +194,7 @@ class CadastroPanel extends JPanel {
      * Atualiza os dados na JTable principal.
      */
     private void atualizarTabela() {
-        tableModel.setRowCount(0); // Limpa todas as linhas existentes
-        for (Animal animal : service.listarAnimais()) {
-            Object[] rowData;
-            if (animal instanceof Cachorro cachorro) {
-                rowData = new Object[]{
-                        cachorro.getId(),
-                        cachorro.getNome(),
-                        cachorro.getIdade(),
-                        cachorro.getRaca(),
-                        "Cachorro",
-                        cachorro.getPorte(),
-                        "N/A", // Não se aplica a castrado
-                        cachorro.emitirSom()
-                };
-            } else if (animal instanceof Gato gato) {
-                rowData = new Object[]{
-                        gato.getId(),
-                        gato.getNome(),
-                        gato.getIdade(),
-                        gato.getRaca(),
-                        "Gato",
-                        "N/A", // Não se aplica a porte
-                        gato.isCastrado() ? "Sim" : "Não",
-                        gato.emitirSom()
-                };
-            } else {
-                rowData = new Object[]{
-                        animal.getId(),
-                        animal.getNome(),
-                        animal.getIdade(),
-                        animal.getRaca(),
-                        "Desconhecido",
-                        "N/A",
-                        "N/A",
-                        animal.emitirSom()
-                };
-            }
-            tableModel.addRow(rowData);
-        }
+        tableModel.atualizar(); // Mantém a ordenação e o filtro atuais
     }
 }
 
@@ -539,16 +205,18 @@ class AlteracaoPanel extends JPanel {
     private JTextField txtIdBusca, txtNome, txtIdade, txtRaca, txtPorte;
     private JCheckBox chkCastrado;
     private JComboBox<String> cmbTipoAnimal;
-    private JButton btnBuscar, btnSalvar;
+    private JButton btnBuscar, btnSalvar, btnAnexar;
     private PetshopService service;
+    private ArmazenamentoAnexos anexos; // null se os anexos não estiverem disponíveis
     private Animal animalEmEdicao; // Armazena o animal atualmente em edição
     private JTable tabelaAnimais;
-    private DefaultTableModel tableModel;
+    private AnimalTableModel tableModel;
 
-    public AlteracaoPanel(PetshopService service, JTable tabelaAnimais, DefaultTableModel tableModel) {
+    public AlteracaoPanel(PetshopService service, JTable tabelaAnimais, AnimalTableModel tableModel, ArmazenamentoAnexos anexos) {
         this.service = service;
         this.tabelaAnimais = tabelaAnimais;
         this.tableModel = tableModel;
+        this.anexos = anexos;
         setLayout(new GridBagLayout());
         GridBagConstraints gbc = new GridBagConstraints();
         gbc.insets = new Insets(5, 5, 5, 5);
@@ -584,10 +252,12 @@ class AlteracaoPanel extends JPanel {
                 if (animalEmEdicao != null) {
                     preencherCampos(animalEmEdicao);
                     btnSalvar.setEnabled(true);
+                    btnAnexar.setEnabled(true);
                 } else {
                     JOptionPane.showMessageDialog(AlteracaoPanel.this, "Animal com ID " + id + " não encontrado.", "Animal Não Encontrado", JOptionPane.WARNING_MESSAGE);
                     limparCampos();
                     btnSalvar.setEnabled(false);
+                    btnAnexar.setEnabled(false);
                 }
             }
         });
@@ -687,7 +357,9 @@ class AlteracaoPanel extends JPanel {
                         if (service.atualizarAnimal(animalEmEdicao)) {
                             JOptionPane.showMessageDialog(AlteracaoPanel.this, "Animal atualizado com sucesso!");
                             limparCampos();
+                            animalEmEdicao = null;
                             btnSalvar.setEnabled(false);
+                            btnAnexar.setEnabled(false);
                             atualizarTabela(); // Atualiza a tabela após a alteração
                         } else {
                             JOptionPane.showMessageDialog(AlteracaoPanel.this, "Erro ao atualizar animal.", "Erro", JOptionPane.ERROR_MESSAGE);
@@ -702,9 +374,53 @@ class AlteracaoPanel extends JPanel {
         });
         add(btnSalvar, gbc);
 
+        // Botão para anexar fotos e documentos ao animal buscado
+        gbc.gridy = 10;
+        btnAnexar = new JButton("Anexar Arquivo...");
+        btnAnexar.setEnabled(false);
+        btnAnexar.setVisible(anexos != null);
+        btnAnexar.addActionListener(e -> anexarArquivo());
+        add(btnAnexar, gbc);
+
         limparCampos(); // Garante que os campos estejam limpos e desabilitados no início
     }
 
+    /**
+     * Escolhe um arquivo e o anexa ao animal em edição. A cópia é feita em segundo plano,
+     * em fluxo, para não travar a interface com arquivos grandes.
+     */
+    private void anexarArquivo() {
+        JFileChooser seletor = new JFileChooser();
+        if (animalEmEdicao == null || seletor.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File arquivo = seletor.getSelectedFile();
+        String idAnimal = animalEmEdicao.getId();
+        btnAnexar.setEnabled(false);
+        new SwingWorker<ArmazenamentoAnexos.Anexo, Void>() {
+            @Override
+            protected ArmazenamentoAnexos.Anexo doInBackground() throws IOException {
+                try (InputStream in = new FileInputStream(arquivo)) {
+                    return anexos.anexar(idAnimal, arquivo.getName(), in);
+                }
+            }
+
+            @Override
+            protected void done() {
+                btnAnexar.setEnabled(animalEmEdicao != null);
+                try {
+                    ArmazenamentoAnexos.Anexo anexo = get();
+                    tableModel.fotoAlterada(idAnimal);
+                    JOptionPane.showMessageDialog(AlteracaoPanel.this, "Arquivo " + anexo.getNome() + " anexado ao animal "
+                            + idAnimal + " (" + anexos.anexosDe(idAnimal).size() + " anexos).");
+                } catch (Exception ex) {
+                    Throwable causa = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(AlteracaoPanel.this, "Erro ao anexar arquivo: " + causa.getMessage(), "Erro", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
     /**
      * Preenche os campos do formulário com os dados do animal encontrado.
      * @param animal O objeto Animal cujos dados serão exibidos.
@@ -759,45 +475,7 @@ class AlteracaoPanel extends JPanel {
      * Atualiza os dados na JTable principal.
      */
     private void atualizarTabela() {
-        tableModel.setRowCount(0); // Limpa todas as linhas existentes
-        for (Animal animal : service.listarAnimais()) {
-            Object[] rowData;
-            if (animal instanceof Cachorro cachorro) {
-                rowData = new Object[]{
-                        cachorro.getId(),
-                        cachorro.getNome(),
-                        cachorro.getIdade(),
-                        cachorro.getRaca(),
-                        "Cachorro",
-                        cachorro.getPorte(),
-                        "N/A", // Não se aplica a castrado
-                        cachorro.emitirSom()
-                };
-            } else if (animal instanceof Gato gato) {
-                rowData = new Object[]{
-                        gato.getId(),
-                        gato.getNome(),
-                        gato.getIdade(),
-                        gato.getRaca(),
-                        "Gato",
-                        "N/A", // Não se aplica a porte
-                        gato.isCastrado() ? "Sim" : "Não",
-                        gato.emitirSom()
-                };
-            } else {
-                rowData = new Object[]{
-                        animal.getId(),
-                        animal.getNome(),
-                        animal.getIdade(),
-                        animal.getRaca(),
-                        "Desconhecido",
-                        "N/A",
-                        "N/A",
-                        animal.emitirSom()
-                };
-            }
-            tableModel.addRow(rowData);
-        }
+        tableModel.atualizar(); // Mantém a ordenação e o filtro atuais
     }
 }
 
@@ -809,9 +487,9 @@ class ExclusaoPanel extends JPanel {
     private JButton btnExcluir;
     private PetshopService service;
     private JTable tabelaAnimais;
-    private DefaultTableModel tableModel;
+    private AnimalTableModel tableModel;
 
-    public ExclusaoPanel(PetshopService service, JTable tabelaAnimais, DefaultTableModel tableModel) {
+    public ExclusaoPanel(PetshopService service, JTable tabelaAnimais, AnimalTableModel tableModel) {
         this.service = service;
         this.tabelaAnimais = tabelaAnimais;
         this.tableModel = tableModel;
@@ -854,7 +532,9 @@ class ExclusaoPanel extends JPanel {
 
                 int confirm = JOptionPane.showConfirmDialog(ExclusaoPanel.this, "Tem certeza que deseja excluir o animal com ID: " + id + "?", "Confirmar Exclusão", JOptionPane.YES_NO_OPTION);
                 if (confirm == JOptionPane.YES_OPTION) {
-                    if (service.removerAnimal(id)) {
+                    if (service.isSomenteLeitura()) {
+                        JOptionPane.showMessageDialog(ExclusaoPanel.this, "Esta instância é uma réplica somente leitura.", "Erro de Exclusão", JOptionPane.ERROR_MESSAGE);
+                    } else if (service.removerAnimal(id)) {
                         JOptionPane.showMessageDialog(ExclusaoPanel.this, "Animal excluído com sucesso!");
                         txtIdExclusao.setText("");
                         atualizarTabela(); // Atualiza a tabela após a exclusão
@@ -871,46 +551,118 @@ class ExclusaoPanel extends JPanel {
      * Atualiza os dados na JTable principal.
      */
     private void atualizarTabela() {
-        tableModel.setRowCount(0); // Limpa todas as linhas existentes
-        for (Animal animal : service.listarAnimais()) {
-            Object[] rowData;
-            if (animal instanceof Cachorro cachorro) {
-                rowData = new Object[]{
-                        cachorro.getId(),
-                        cachorro.getNome(),
-                        cachorro.getIdade(),
-                        cachorro.getRaca(),
-                        "Cachorro",
-                        cachorro.getPorte(),
-                        "N/A", // Não se aplica a castrado
-                        cachorro.emitirSom()
-                };
-            } else if (animal instanceof Gato gato) {
-                rowData = new Object[]{
-                        gato.getId(),
-                        gato.getNome(),
-                        gato.getIdade(),
-                        gato.getRaca(),
-                        "Gato",
-                        "N/A", // Não se aplica a porte
-                        gato.isCastrado() ? "Sim" : "Não",
-                        gato.emitirSom()
-                };
-            } else {
-                rowData = new Object[]{
-                        animal.getId(),
-                        animal.getNome(),
-                        animal.getIdade(),
-                        animal.getRaca(),
-                        "Desconhecido",
-                        "N/A",
-                        "N/A",
-                        animal.emitirSom()
-                };
-            }
-            tableModel.addRow(rowData);
+        tableModel.atualizar(); // Mantém a ordenação e o filtro atuais
+    }
+}
+
+/**
+ * Painel de filtros exibido acima da tabela de animais.
+ */
+class FiltroPanel extends JPanel {
+    private JTextField txtNome, txtRaca, txtIdadeMin, txtIdadeMax;
+    private JComboBox<String> cmbTipo;
+    private AnimalTableModel tableModel;
+
+    public FiltroPanel(AnimalTableModel tableModel) {
+        this.tableModel = tableModel;
+        setLayout(new FlowLayout(FlowLayout.LEFT));
+
+        add(new JLabel("Nome:"));
+        txtNome = new JTextField(10);
+        add(txtNome);
+
+        add(new JLabel("Raça:"));
+        txtRaca = new JTextField(8);
+        add(txtRaca);
+
+        add(new JLabel("Tipo:"));
+        cmbTipo = new JComboBox<>(new String[]{"Todos", "Cachorro", "Gato"});
+        add(cmbTipo);
+
+        add(new JLabel("Idade:"));
+        txtIdadeMin = new JTextField(3);
+        add(txtIdadeMin);
+        add(new JLabel("a"));
+        txtIdadeMax = new JTextField(3);
+        add(txtIdadeMax);
+
+        JButton btnFiltrar = new JButton("Filtrar");
+        btnFiltrar.addActionListener(e -> aplicarFiltro());
+        add(btnFiltrar);
+        txtNome.addActionListener(e -> aplicarFiltro()); // Enter no campo também filtra
+        txtRaca.addActionListener(e -> aplicarFiltro());
+
+        JButton btnLimpar = new JButton("Limpar");
+        btnLimpar.addActionListener(e -> {
+            txtNome.setText("");
+            txtRaca.setText("");
+            txtIdadeMin.setText("");
+            txtIdadeMax.setText("");
+            cmbTipo.setSelectedItem("Todos");
+            tableModel.filtrar(FiltroAnimais.NENHUM);
+        });
+        add(btnLimpar);
+    }
+
+    /**
+     * Monta o filtro a partir dos campos preenchidos e atualiza a tabela.
+     */
+    private void aplicarFiltro() {
+        try {
+            String tipo = (String) cmbTipo.getSelectedItem();
+            tableModel.filtrar(new FiltroAnimais(
+                    txtNome.getText(),
+                    txtRaca.getText(),
+                    "Todos".equals(tipo) ? null : tipo,
+                    lerIdade(txtIdadeMin),
+                    lerIdade(txtIdadeMax)));
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Idade deve ser um número inteiro.", "Erro de Entrada", JOptionPane.ERROR_MESSAGE);
         }
     }
+
+    private Integer lerIdade(JTextField campo) {
+        String texto = campo.getText().trim();
+        return texto.isEmpty() ? null : Integer.valueOf(texto);
+    }
+}
+
+/**
+ * Painel de navegação entre as páginas da tabela de animais.
+ */
+class PaginacaoPanel extends JPanel {
+    private JButton btnAnterior, btnProxima;
+    private JLabel lblPagina;
+    private AnimalTableModel tableModel;
+
+    public PaginacaoPanel(AnimalTableModel tableModel) {
+        this.tableModel = tableModel;
+        setLayout(new FlowLayout(FlowLayout.CENTER));
+
+        btnAnterior = new JButton("◀ Anterior");
+        btnAnterior.addActionListener(e -> tableModel.paginaAnterior());
+        add(btnAnterior);
+
+        lblPagina = new JLabel();
+        add(lblPagina);
+
+        btnProxima = new JButton("Próxima ▶");
+        btnProxima.addActionListener(e -> tableModel.proximaPagina());
+        add(btnProxima);
+
+        tableModel.addTableModelListener(e -> atualizarEstado()); // Reage a qualquer recarga da página
+        atualizarEstado();
+    }
+
+    /**
+     * Atualiza o rótulo e habilita os botões conforme a página exibida.
+     */
+    private void atualizarEstado() {
+        btnAnterior.setEnabled(tableModel.temPaginaAnterior());
+        btnProxima.setEnabled(tableModel.temProximaPagina());
+        lblPagina.setText("Página " + tableModel.getNumeroPagina() + " (" + tableModel.getRowCount()
+                + " linhas) — " + tableModel.getTotalAnimais() + " animais cadastrados");
+    }
 }
 
 /**
@@ -918,95 +670,203 @@ class ExclusaoPanel extends JPanel {
  * Configura a janela principal e os painéis da interface gráfica.
  */
 public class PetshopApp extends JFrame {
+    private static final String[] TITULOS_ABAS = {"Cadastrar Animal", "Alterar Animal", "Excluir Animal"};
+
+    private static final int LADO_MINIATURA = 40;
+
     private PetshopService service;
+    private ArmazenamentoAnexos anexos; // null se o diretório de anexos não pôde ser aberto
+    private ReplicacaoPrimario replicacao; // Se configurada (-Dpetshop.replicacao.porta)
+    private ReplicacaoSeguidor seguidor; // Se esta janela for uma réplica (-Dpetshop.replicacao.primario)
+    private BackupOnline backup; // Se configurado (-Dpetshop.backup.dir)
     private JTable tabelaAnimais;
-    private DefaultTableModel tableModel;
+    private AnimalTableModel tableModel;
+    private JTabbedPane tabbedPane;
+    private final boolean[] abasCriadas = new boolean[TITULOS_ABAS.length];
+    private final MedidorInicializacao medidor;
 
     public PetshopApp() {
-        service = new PetshopService();
+        this(new MedidorInicializacao());
+    }
+
+    PetshopApp(MedidorInicializacao medidor) {
+        this.medidor = medidor;
         setTitle("Gerenciamento de Petshop");
         setSize(800, 600);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null); // Centraliza a janela
 
-        // Cria as abas para Cadastro, Alteração e Exclusão
-        JTabbedPane tabbedPane = new JTabbedPane();
+        // Cria as abas para Cadastro, Alteração e Exclusão.
+        // Os painéis só são construídos quando a aba é exibida pela primeira vez (ver criarAbaSeNecessario).
+        tabbedPane = new JTabbedPane();
+        for (String titulo : TITULOS_ABAS) {
+            tabbedPane.addTab(titulo, new JLabel("Carregando dados...", SwingConstants.CENTER));
+        }
+        tabbedPane.addChangeListener(e -> criarAbaSeNecessario(tabbedPane.getSelectedIndex()));
 
         // Configura a tabela de exibição de animais
-        String[] colunas = {"ID", "Nome", "Idade", "Raça", "Tipo", "Porte", "Castrado", "Som"};
-        tableModel = new DefaultTableModel(colunas, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Torna as células não editáveis
-            }
-        };
+        tableModel = new AnimalTableModel();
         tabelaAnimais = new JTable(tableModel);
         tabelaAnimais.setFillsViewportHeight(true); // Preenche a altura da viewport
+        tabelaAnimais.setDefaultRenderer(Integer.class, new AnimalTableModel.RenderizadorIdade());
         JScrollPane scrollPane = new JScrollPane(tabelaAnimais);
 
-        // Adiciona os painéis às abas
-        tabbedPane.addTab("Cadastrar Animal", new CadastroPanel(service, tabelaAnimais, tableModel));
-        tabbedPane.addTab("Alterar Animal", new AlteracaoPanel(service, tabelaAnimais, tableModel));
-        tabbedPane.addTab("Excluir Animal", new ExclusaoPanel(service, tabelaAnimais, tableModel));
+        // Ordenação pelo clique no cabeçalho, atendida pelos índices do serviço
+        tabelaAnimais.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int coluna = tabelaAnimais.columnAtPoint(e.getPoint());
+                ColunaAnimal ordenavel = coluna >= 0 ? tableModel.getColuna(tabelaAnimais.convertColumnIndexToModel(coluna)) : null;
+                if (ordenavel != null) { // A coluna de fotos não é ordenável
+                    tableModel.ordenarPor(ordenavel);
+                    atualizarCabecalho();
+                }
+            }
+        });
+
+        // Tabela e filtro na parte inferior
+        JPanel painelTabela = new JPanel(new BorderLayout());
+        painelTabela.add(new FiltroPanel(tableModel), BorderLayout.NORTH);
+        painelTabela.add(scrollPane, BorderLayout.CENTER);
+        painelTabela.add(new PaginacaoPanel(tableModel), BorderLayout.SOUTH);
 
         // Layout principal da janela
         setLayout(new BorderLayout());
         add(tabbedPane, BorderLayout.CENTER);
-        add(scrollPane, BorderLayout.SOUTH); // Tabela na parte inferior
+        add(painelTabela, BorderLayout.SOUTH); // Tabela na parte inferior
+        atualizarCabecalho();
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                medidor.primeiroQuadro();
+            }
+        });
 
-        // Atualiza a tabela inicialmente
-        atualizarTabela();
+        carregarDadosEmSegundoPlano();
     }
 
     /**
-     * Atualiza os dados na JTable principal.
+     * Carrega os dados fora da EDT, para que a janela apareça sem esperar a leitura do arquivo.
+     * Ao terminar, cria a aba visível e preenche a tabela.
      */
-    private void atualizarTabela() {
-        tableModel.setRowCount(0); // Limpa todas as linhas existentes
-        for (Animal animal : service.listarAnimais()) {
-            Object[] rowData;
-            if (animal instanceof Cachorro cachorro) {
-                rowData = new Object[]{
-                        cachorro.getId(),
-                        cachorro.getNome(),
-                        cachorro.getIdade(),
-                        cachorro.getRaca(),
-                        "Cachorro",
-                        cachorro.getPorte(),
-                        "N/A", // Não se aplica a castrado
-                        cachorro.emitirSom()
-                };
-            } else if (animal instanceof Gato gato) {
-                rowData = new Object[]{
-                        gato.getId(),
-                        gato.getNome(),
-                        gato.getIdade(),
-                        gato.getRaca(),
-                        "Gato",
-                        "N/A", // Não se aplica a porte
-                        gato.isCastrado() ? "Sim" : "Não",
-                        gato.emitirSom()
-                };
-            } else {
-                rowData = new Object[]{
-                        animal.getId(),
-                        animal.getNome(),
-                        animal.getIdade(),
-                        animal.getRaca(),
-                        "Desconhecido",
-                        "N/A",
-                        "N/A",
-                        animal.emitirSom()
-                };
+    private void carregarDadosEmSegundoPlano() {
+        new SwingWorker<PetshopService, Void>() {
+            @Override
+            protected PetshopService doInBackground() {
+                Consumer<String> notificador = mensagem ->
+                        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, mensagem, "Erro de E/S", JOptionPane.ERROR_MESSAGE));
+                try {
+                    anexos = ArmazenamentoAnexos.abrirConfigurado(); // Lido em done(), depois de get()
+                } catch (IOException e) {
+                    notificador.accept("Erro ao abrir anexos: " + e.getMessage());
+                }
+                PetshopService carregado = new PetshopService(ArmazenamentoAnimais.criarConfigurado(), notificador);
+                try {
+                    replicacao = ReplicacaoPrimario.iniciarConfigurada(carregado);
+                    seguidor = ReplicacaoSeguidor.iniciarConfigurado(carregado);
+                } catch (IOException e) {
+                    notificador.accept("Erro ao iniciar a replicação: " + e.getMessage());
+                }
+                try {
+                    backup = BackupOnline.iniciarConfigurado(carregado); // Backups incrementais agendados
+                } catch (IOException e) {
+                    notificador.accept("Erro ao iniciar os backups: " + e.getMessage());
+                }
+                return carregado;
             }
-            tableModel.addRow(rowData);
+
+            @Override
+            protected void done() {
+                try {
+                    service = get();
+                } catch (Exception e) {
+                    JOptionPane.showMessageDialog(PetshopApp.this, "Erro ao carregar dados: " + e.getMessage(), "Erro", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                tableModel.setService(service);
+                if (anexos != null) {
+                    service.setAnexos(anexos);
+                    tableModel.setMiniaturas(new MiniaturasAnexos(anexos, LADO_MINIATURA, tabelaAnimais::repaint));
+                    tabelaAnimais.setRowHeight(LADO_MINIATURA + 4);
+                    atualizarCabecalho();
+                }
+                if (seguidor != null) {
+                    acompanharReplicacao();
+                }
+                criarAbaSeNecessario(tabbedPane.getSelectedIndex());
+                atualizarTabela(); // Atualiza a tabela inicialmente
+                SwingUtilities.invokeLater(medidor::interativo); // Após a pintura da tabela preenchida
+            }
+        }.execute();
+    }
+
+    /**
+     * Numa réplica, mostra o atraso no título e recarrega a página da tabela quando chegam
+     * alterações do primário (no máximo uma vez por segundo).
+     */
+    private void acompanharReplicacao() {
+        long[] ultimaExibida = {seguidor.getSeqAplicada()};
+        Timer timer = new Timer(1000, e -> {
+            setTitle("Gerenciamento de Petshop — réplica somente leitura (atraso: "
+                    + seguidor.getAtrasoRegistros() + " registros, " + seguidor.getAtrasoMs() + " ms)"
+                    + (seguidor.isConectado() ? "" : " — desconectada"));
+            if (seguidor.getSeqAplicada() != ultimaExibida[0]) {
+                ultimaExibida[0] = seguidor.getSeqAplicada();
+                atualizarTabela();
+            }
+        });
+        timer.setInitialDelay(0);
+        timer.start();
+    }
+
+    /**
+     * Constrói o painel da aba na primeira vez em que ela é selecionada.
+     * @param indice O índice da aba no JTabbedPane.
+     */
+    private void criarAbaSeNecessario(int indice) {
+        if (service == null || indice < 0 || abasCriadas[indice]) {
+            return;
+        }
+        JPanel painel;
+        switch (indice) {
+            case 0:
+                painel = new CadastroPanel(service, tabelaAnimais, tableModel);
+                break;
+            case 1:
+                painel = new AlteracaoPanel(service, tabelaAnimais, tableModel, anexos);
+                break;
+            default:
+                painel = new ExclusaoPanel(service, tabelaAnimais, tableModel);
+                break;
+        }
+        abasCriadas[indice] = true;
+        tabbedPane.setComponentAt(indice, painel);
+    }
+
+    /**
+     * Atualiza os títulos do cabeçalho para indicar a coluna ordenada.
+     */
+    private void atualizarCabecalho() {
+        for (int i = 0; i < tabelaAnimais.getColumnCount(); i++) {
+            tabelaAnimais.getColumnModel().getColumn(i).setHeaderValue(
+                    tableModel.getColumnName(tabelaAnimais.convertColumnIndexToModel(i)));
         }
+        tabelaAnimais.getTableHeader().repaint();
+    }
+
+    /**
+     * Atualiza os dados na JTable principal.
+     */
+    private void atualizarTabela() {
+        tableModel.atualizar(); // Mantém a ordenação e o filtro atuais
     }
 
     public static void main(String[] args) {
+        MedidorInicializacao medidor = new MedidorInicializacao();
         // Garante que a GUI seja criada na Event Dispatch Thread (EDT)
         SwingUtilities.invokeLater(() -> {
-            new PetshopApp().setVisible(true);
+            new PetshopApp(medidor).setVisible(true);
         });
     }
 }
@@ -0,0 +1,896 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.StreamSupport;
+
+/**
+ * Modo de linha de comando (sem interface gráfica) do gerenciamento de petshop.
+ * Opera sobre o mesmo armazenamento da aplicação Swing, configurado pelas mesmas
+ * propriedades de sistema, e pode ser usado em scripts e tarefas agendadas.
+ *
+ * A saída dos comandos vai para System.out; mensagens de log dos armazenamentos
+ * são desviadas para System.err para não misturar com os dados.
+ */
+public class PetshopCli {
+    private static final String CABECALHO_CSV = "id;tipo;nome;idade;raca;porte;castrado";
+    private static final String CABECALHO_VISITAS = "instante;id;tipo;descricao";
+    private static final int TAMANHO_PAGINA = 1000;
+    private static final int LOTE_VISITAS = 10_000;
+
+    private final PetshopService service;
+    private final PrintWriter saida;
+    private final BackupOnline backup; // null se -Dpetshop.backup.dir não foi informado
+    private final AtomicInteger falhas; // Erros de E/S informados pelo serviço (já registrados em System.err)
+
+    PetshopCli(PetshopService service, PrintWriter saida) {
+        this(service, saida, null, new AtomicInteger());
+    }
+
+    /**
+     * @param falhas Contador incrementado pelo notificador de erros do serviço; um comando que
+     *               altera o cadastro só informa sucesso se nenhuma gravação falhou.
+     */
+    PetshopCli(PetshopService service, PrintWriter saida, BackupOnline backup, AtomicInteger falhas) {
+        this.service = service;
+        this.saida = saida;
+        this.backup = backup;
+        this.falhas = falhas;
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0 || "ajuda".equals(args[0])) {
+            imprimirUso();
+            System.exit(args.length == 0 ? 2 : 0);
+        }
+
+        PrintStream saidaOriginal = System.out;
+        System.setOut(System.err); // Mensagens de log não se misturam com a saída dos comandos
+        PrintWriter saida = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), 1 << 16));
+
+        int codigo;
+        AtomicInteger falhas = new AtomicInteger();
+        PetshopService service = null;
+        ReplicacaoSeguidor seguidor = null;
+        BackupOnline backup = null;
+        try {
+            service = new PetshopService(ArmazenamentoAnimais.criarConfigurado(), // Tipo desconhecido: IllegalArgumentException
+                    mensagem -> falhas.incrementAndGet());
+            if (falhas.get() > 0) {
+                // Com o cadastro vazio no lugar do que não carregou, as gravações o sobrescreveriam
+                throw new IOException("o cadastro não pôde ser carregado; nenhum comando foi executado.");
+            }
+            backup = BackupOnline.iniciarConfigurado(service);
+            seguidor = ReplicacaoSeguidor.iniciarConfigurado(service);
+            if (seguidor != null && !seguidor.aguardarSincronia(Long.getLong("petshop.replicacao.prazo", 30_000))) {
+                System.err.println("Aviso: réplica não sincronizada com o primário; usando os dados locais (" + seguidor.estatisticas() + ")");
+            }
+            codigo = new PetshopCli(service, saida, backup, falhas).executar(args);
+            if (codigo == 0 && falhas.get() > 0) {
+                codigo = 1; // O erro já foi registrado pelo serviço
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Erro: " + e.getMessage());
+            codigo = 2;
+        } catch (IllegalStateException e) { // Alteração numa réplica somente leitura
+            System.err.println("Erro: " + e.getMessage());
+            codigo = 1;
+        } catch (IOException e) {
+            System.err.println("Erro de E/S: " + e.getMessage());
+            codigo = 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            codigo = 1;
+        } finally {
+            saida.flush();
+            fecharSeguidor(seguidor);
+            fecharBackup(backup);
+            if (service != null) {
+                service.fechar();
+            }
+            System.setOut(saidaOriginal);
+        }
+        System.exit(codigo);
+    }
+
+    private static void fecharSeguidor(ReplicacaoSeguidor seguidor) {
+        if (seguidor != null) {
+            try {
+                seguidor.close();
+            } catch (IOException e) {
+                System.err.println("Erro ao encerrar a replicação: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void fecharBackup(BackupOnline backup) {
+        if (backup != null) {
+            try {
+                backup.close();
+            } catch (IOException e) {
+                System.err.println("Erro ao fechar o log de alterações: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Executa um comando.
+     * @return O código de saída do processo (0 em caso de sucesso).
+     */
+    int executar(String[] args) throws IOException, InterruptedException {
+        switch (args[0]) {
+            case "listar":
+                return listar(args);
+            case "buscar":
+                return buscar(argumento(args, 1, "id"));
+            case "adicionar":
+                return adicionar(args);
+            case "atualizar":
+                return atualizar(args);
+            case "remover":
+                return remover(argumento(args, 1, "id"));
+            case "importar":
+                return importar(argumento(args, 1, "arquivo"));
+            case "exportar":
+                return exportar(args.length > 1 ? args[1] : "-");
+            case "compactar":
+                boolean compactado = service.compactar();
+                if (falhou()) {
+                    return 1;
+                }
+                saida.println(compactado ? "Armazenamento compactado." : "O armazenamento atual não precisa de compactação.");
+                return 0;
+            case "estatisticas":
+                return estatisticas();
+            case "duplicados":
+                return duplicados(args.length > 1 ? limiar(args[1]) : DetectorDuplicados.LIMIAR_PADRAO);
+            case "visita":
+                return registrarVisita(args);
+            case "visitas":
+                return visitas(argumento(args, 1, "id"), args.length > 2 ? inteiro(args[2], "quantidade") : 10);
+            case "visitas-periodo":
+                return visitasPeriodo(instante(argumento(args, 1, "início")), instante(argumento(args, 2, "fim")));
+            case "importar-visitas":
+                return importarVisitas(argumento(args, 1, "arquivo"));
+            case "anexar":
+                return anexar(argumento(args, 1, "id"), argumento(args, 2, "arquivo"));
+            case "anexos":
+                return anexos(argumento(args, 1, "id"));
+            case "anexo":
+                return anexo(argumento(args, 1, "hash"), args.length > 2 ? args[2] : "-");
+            case "seguir":
+                return seguir(ReplicacaoSeguidor.endereco(argumento(args, 1, "primário")),
+                        args.length > 2 ? inteiro(args[2], "segundos") : 0);
+            case "backup":
+                return backup(args.length > 1 ? args[1] : "incremental");
+            case "restaurar":
+                return restaurar(Paths.get(argumento(args, 1, "diretório do backup")), args.length > 2 ? args[2] : null);
+            default:
+                throw new IllegalArgumentException("Comando desconhecido: " + args[0]);
+        }
+    }
+
+    /**
+     * listar [--ordem COLUNA] [--desc] [--nome TRECHO] [--raca TRECHO] [--tipo Cachorro|Gato]
+     *        [--idade-min N] [--idade-max N]
+     */
+    private int listar(String[] args) {
+        ColunaAnimal ordem = ColunaAnimal.ID;
+        boolean crescente = true;
+        String nome = null, raca = null, tipo = null;
+        Integer idadeMin = null, idadeMax = null;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--ordem":
+                    ordem = coluna(argumento(args, ++i, "coluna"));
+                    break;
+                case "--desc":
+                    crescente = false;
+                    break;
+                case "--nome":
+                    nome = argumento(args, ++i, "nome");
+                    break;
+                case "--raca":
+                    raca = argumento(args, ++i, "raça");
+                    break;
+                case "--tipo":
+                    tipo = tipo(argumento(args, ++i, "tipo"));
+                    break;
+                case "--idade-min":
+                    idadeMin = inteiro(argumento(args, ++i, "idade"), "idade");
+                    break;
+                case "--idade-max":
+                    idadeMax = inteiro(argumento(args, ++i, "idade"), "idade");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Opção desconhecida: " + args[i]);
+            }
+        }
+        escreverCsv(ordem, crescente, new FiltroAnimais(nome, raca, tipo, idadeMin, idadeMax));
+        return 0;
+    }
+
+    private int buscar(String id) {
+        Animal animal = service.buscarAnimalPorId(id);
+        if (animal == null) {
+            System.err.println("Animal com ID " + id + " não encontrado.");
+            return 1;
+        }
+        saida.println(animal);
+        return 0;
+    }
+
+    /**
+     * adicionar cachorro NOME IDADE RACA PORTE | adicionar gato NOME IDADE RACA sim|nao
+     */
+    private int adicionar(String[] args) {
+        String tipo = tipo(argumento(args, 1, "tipo"));
+        String nome = argumento(args, 2, "nome");
+        int idade = inteiro(argumento(args, 3, "idade"), "idade");
+        String raca = argumento(args, 4, "raça");
+        String especifico = argumento(args, 5, "Cachorro".equals(tipo) ? "porte" : "castrado");
+        Animal animal = criarAnimal(null, tipo, nome, idade, raca, especifico, especifico);
+        List<DetectorDuplicados.Semelhanca> semelhantes = service.possiveisDuplicados(animal);
+        service.adicionarAnimal(animal);
+        if (falhou()) {
+            return 1;
+        }
+        saida.println("Animal cadastrado com sucesso! ID: " + animal.getId());
+        for (DetectorDuplicados.Semelhanca semelhanca : semelhantes) {
+            System.err.println("Aviso: parecido com o animal já cadastrado " + semelhanca.getSemelhante());
+        }
+        return 0;
+    }
+
+    /**
+     * atualizar ID campo=valor... (campos: nome, idade, raca, porte, castrado)
+     */
+    private int atualizar(String[] args) {
+        String id = argumento(args, 1, "id");
+        Animal animal = service.buscarAnimalPorId(id);
+        if (animal == null) {
+            System.err.println("Animal com ID " + id + " não encontrado.");
+            return 1;
+        }
+        if (args.length < 3) {
+            throw new IllegalArgumentException("Informe ao menos um campo=valor para atualizar.");
+        }
+        for (int i = 2; i < args.length; i++) {
+            int igual = args[i].indexOf('=');
+            if (igual <= 0) {
+                throw new IllegalArgumentException("Esperado campo=valor: " + args[i]);
+            }
+            String campo = args[i].substring(0, igual);
+            String valor = args[i].substring(igual + 1);
+            switch (campo) {
+                case "nome":
+                    animal.setNome(obrigatorio(valor, "nome"));
+                    break;
+                case "idade":
+                    animal.setIdade(inteiro(valor, "idade"));
+                    break;
+                case "raca":
+                    animal.setRaca(obrigatorio(valor, "raça"));
+                    break;
+                case "porte":
+                    if (!(animal instanceof Cachorro cachorro)) {
+                        throw new IllegalArgumentException("Porte só se aplica a cachorros.");
+                    }
+                    cachorro.setPorte(obrigatorio(valor, "porte"));
+                    break;
+                case "castrado":
+                    if (!(animal instanceof Gato gato)) {
+                        throw new IllegalArgumentException("Castrado só se aplica a gatos.");
+                    }
+                    gato.setCastrado(simOuNao(valor));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Campo desconhecido: " + campo);
+            }
+        }
+        if (!service.atualizarAnimal(animal)) { // Removido depois da busca
+            System.err.println("Animal com ID " + id + " não encontrado.");
+            return 1;
+        }
+        if (falhou()) {
+            return 1;
+        }
+        saida.println("Animal atualizado com sucesso!");
+        return 0;
+    }
+
+    private int remover(String id) throws IOException {
+        try (ArmazenamentoAnexos anexos = ArmazenamentoAnexos.abrirConfiguradoSeExistir()) {
+            service.setAnexos(anexos); // Os anexos do animal são desligados junto com ele
+            if (!service.removerAnimal(id)) {
+                System.err.println("Animal com ID " + id + " não encontrado.");
+                return 1;
+            }
+        } finally {
+            service.setAnexos(null);
+        }
+        if (falhou()) {
+            return 1;
+        }
+        saida.println("Animal excluído com sucesso!");
+        return 0;
+    }
+
+    /**
+     * Importa animais de um arquivo CSV no mesmo formato do comando exportar ("-" lê da entrada padrão).
+     * Os IDs do arquivo são ignorados: cada animal recebe um novo ID sequencial.
+     */
+    private int importar(String arquivo) throws IOException {
+        List<Animal> novos = new ArrayList<>();
+        try (BufferedReader in = abrirLeitura(arquivo)) {
+            String linha;
+            int numero = 0;
+            while ((linha = lerLinhaCsv(in)) != null) {
+                numero++;
+                if (linha.isBlank() || linha.startsWith(CABECALHO_CSV)) {
+                    continue;
+                }
+                List<String> campos = lerCamposCsv(linha);
+                if (campos.size() != 7) {
+                    throw new IllegalArgumentException("Linha " + numero + ": esperados 7 campos, encontrados " + campos.size());
+                }
+                try {
+                    novos.add(criarAnimal(null, tipo(campos.get(1)), campos.get(2), inteiro(campos.get(3), "idade"),
+                            campos.get(4), campos.get(5), campos.get(6)));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Linha " + numero + ": " + e.getMessage());
+                }
+            }
+        }
+        service.adicionarAnimais(novos); // Persistido em lote
+        if (falhou()) {
+            return 1;
+        }
+        saida.println(novos.size() + " animais importados.");
+        return 0;
+    }
+
+    private int exportar(String arquivo) throws IOException {
+        // O instantâneo garante uma exportação consistente mesmo com gravações concorrentes
+        try (RegistroVersionado.Instantaneo instantaneo = service.abrirInstantaneo()) {
+            if ("-".equals(arquivo)) {
+                escreverCsv(instantaneo);
+                return 0;
+            }
+            try (PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(arquivo), StandardCharsets.UTF_8), 1 << 16))) {
+                int total = new PetshopCli(service, out).escreverCsv(instantaneo);
+                System.err.println(total + " animais exportados para " + arquivo);
+            }
+        }
+        return 0;
+    }
+
+    private int estatisticas() {
+        long[] contagem;
+        // Percorre o instantâneo em paralelo; cada parte acumula seus próprios contadores
+        try (RegistroVersionado.Instantaneo instantaneo = service.abrirInstantaneo()) {
+            contagem = StreamSupport.stream(instantaneo.cursor(null), true).collect(
+                    () -> new long[4], // cachorros, gatos, castrados, soma das idades
+                    (c, animal) -> {
+                        c[3] += animal.getIdade();
+                        if (animal instanceof Cachorro) {
+                            c[0]++;
+                        } else if (animal instanceof Gato gato) {
+                            c[1]++;
+                            if (gato.isCastrado()) {
+                                c[2]++;
+                            }
+                        }
+                    },
+                    (a, b) -> {
+                        for (int i = 0; i < a.length; i++) {
+                            a[i] += b[i];
+                        }
+                    });
+        }
+        long cachorros = contagem[0], gatos = contagem[1], castrados = contagem[2], somaIdades = contagem[3];
+        long total = cachorros + gatos;
+        saida.println("Total de animais: " + total);
+        saida.println("Cachorros: " + cachorros);
+        saida.println("Gatos: " + gatos + " (" + castrados + " castrados)");
+        saida.printf("Idade média: %.1f%n", total == 0 ? 0.0 : (double) somaIdades / total);
+        saida.println("Armazenamento: " + service.resumoArmazenamento());
+        return 0;
+    }
+
+    /**
+     * duplicados [LIMIAR]: pares de possíveis duplicados em CSV, do mais para o menos semelhante.
+     */
+    private int duplicados(double limiar) {
+        long inicio = System.nanoTime();
+        List<DetectorDuplicados.Semelhanca> pares = service.relatorioDuplicados(limiar);
+        saida.println("id;nome;raca;id_semelhante;nome_semelhante;raca_semelhante;similaridade");
+        StringBuilder linha = new StringBuilder(128);
+        for (DetectorDuplicados.Semelhanca par : pares) {
+            Animal animal = par.getAnimal();
+            Animal semelhante = par.getSemelhante();
+            linha.setLength(0);
+            campoCsv(linha, animal.getId()).append(';');
+            campoCsv(linha, animal.getNome()).append(';');
+            campoCsv(linha, animal.getRaca()).append(';');
+            campoCsv(linha, semelhante.getId()).append(';');
+            campoCsv(linha, semelhante.getNome()).append(';');
+            campoCsv(linha, semelhante.getRaca()).append(';');
+            linha.append(String.format(Locale.ROOT, "%.3f", par.getSimilaridade()));
+            saida.println(linha);
+        }
+        System.err.printf("%d pares de possíveis duplicados em %.1f s%n", pares.size(), (System.nanoTime() - inicio) / 1e9);
+        return 0;
+    }
+
+    /**
+     * visita ID TIPO DESCRICAO [DATA] (a data padrão é agora)
+     */
+    private int registrarVisita(String[] args) throws IOException {
+        String id = argumento(args, 1, "id");
+        Visita.Tipo tipo = tipoVisita(argumento(args, 2, "tipo"));
+        String descricao = argumento(args, 3, "descrição");
+        long instante = args.length > 4 ? instante(args[4]) : System.currentTimeMillis();
+        if (service.buscarAnimalPorId(id) == null) {
+            System.err.println("Animal com ID " + id + " não encontrado.");
+            return 1;
+        }
+        try (HistoricoVisitas historico = HistoricoVisitas.abrirConfigurado()) {
+            historico.registrar(new Visita(id, instante, tipo, descricao));
+        }
+        saida.println("Visita registrada com sucesso!");
+        return 0;
+    }
+
+    private int visitas(String id, int quantidade) throws IOException {
+        try (HistoricoVisitas historico = HistoricoVisitas.abrirConfigurado()) {
+            saida.println(CABECALHO_VISITAS);
+            StringBuilder linha = new StringBuilder(128);
+            for (Visita visita : historico.ultimas(id, quantidade)) {
+                escreverVisitaCsv(linha, visita);
+            }
+        }
+        return 0;
+    }
+
+    private int visitasPeriodo(long inicio, long fim) throws IOException {
+        try (HistoricoVisitas historico = HistoricoVisitas.abrirConfigurado()) {
+            saida.println(CABECALHO_VISITAS);
+            StringBuilder linha = new StringBuilder(128);
+            long total = historico.percorrerEntre(Instant.ofEpochMilli(inicio), Instant.ofEpochMilli(fim),
+                    visita -> escreverVisitaCsv(linha, visita));
+            System.err.println(total + " visitas no período.");
+        }
+        return 0;
+    }
+
+    /**
+     * Importa visitas de um arquivo CSV no formato de saída do comando visitas ("-" lê da entrada padrão),
+     * gravando em lotes. Os IDs dos animais não são conferidos.
+     */
+    private int importarVisitas(String arquivo) throws IOException {
+        long total = 0;
+        try (HistoricoVisitas historico = HistoricoVisitas.abrirConfigurado();
+             BufferedReader in = abrirLeitura(arquivo)) {
+            List<Visita> lote = new ArrayList<>(LOTE_VISITAS);
+            String linha;
+            int numero = 0;
+            while ((linha = lerLinhaCsv(in)) != null) {
+                numero++;
+                if (linha.isBlank() || linha.startsWith(CABECALHO_VISITAS)) {
+                    continue;
+                }
+                List<String> campos = lerCamposCsv(linha);
+                if (campos.size() != 4) {
+                    throw new IllegalArgumentException("Linha " + numero + ": esperados 4 campos, encontrados " + campos.size());
+                }
+                try {
+                    lote.add(new Visita(obrigatorio(campos.get(1), "id"), instante(campos.get(0)),
+                            tipoVisita(campos.get(2)), campos.get(3).isEmpty() ? null : campos.get(3)));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Linha " + numero + ": " + e.getMessage());
+                }
+                if (lote.size() == LOTE_VISITAS) {
+                    historico.registrarTodas(lote);
+                    total += lote.size();
+                    lote.clear();
+                }
+            }
+            historico.registrarTodas(lote);
+            total += lote.size();
+        }
+        saida.println(total + " visitas importadas.");
+        return 0;
+    }
+
+    private int anexar(String id, String arquivo) throws IOException {
+        if (service.buscarAnimalPorId(id) == null) {
+            System.err.println("Animal com ID " + id + " não encontrado.");
+            return 1;
+        }
+        try (ArmazenamentoAnexos anexos = ArmazenamentoAnexos.abrirConfigurado();
+             InputStream in = new FileInputStream(arquivo)) {
+            ArmazenamentoAnexos.Anexo anexo = anexos.anexar(id, new File(arquivo).getName(), in);
+            saida.println("Arquivo anexado: " + anexo.getHash());
+        }
+        return 0;
+    }
+
+    private int anexos(String id) throws IOException {
+        try (ArmazenamentoAnexos anexos = ArmazenamentoAnexos.abrirConfigurado()) {
+            saida.println("hash;nome;tipo;tamanho");
+            StringBuilder linha = new StringBuilder(128);
+            for (ArmazenamentoAnexos.Anexo anexo : anexos.anexosDe(id)) {
+                linha.setLength(0);
+                linha.append(anexo.getHash()).append(';');
+                campoCsv(linha, anexo.getNome()).append(';');
+                linha.append(anexo.getTipoConteudo()).append(';').append(anexo.getTamanho());
+                saida.println(linha);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Entrega o conteúdo de um anexo pelo hash, com transferTo (sem cópia pela aplicação).
+     */
+    private int anexo(String hash, String destino) throws IOException {
+        try (ArmazenamentoAnexos anexos = ArmazenamentoAnexos.abrirConfigurado()) {
+            if (!anexos.existe(hash)) {
+                System.err.println("Anexo " + hash + " não encontrado.");
+                return 1;
+            }
+            if ("-".equals(destino)) {
+                saida.flush();
+                anexos.transferir(hash, new FileOutputStream(FileDescriptor.out).getChannel());
+            } else {
+                try (FileOutputStream out = new FileOutputStream(destino)) {
+                    long bytes = anexos.transferir(hash, out.getChannel());
+                    System.err.println(bytes + " bytes gravados em " + destino);
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Segue uma instância primária (réplica somente leitura), escrevendo o atraso a cada segundo.
+     * @param segundos Por quanto tempo seguir (0 para sempre).
+     */
+    private int seguir(InetSocketAddress primario, int segundos) throws IOException, InterruptedException {
+        Path estado = Paths.get(System.getProperty("petshop.replicacao.estado", "replica.estado"));
+        try (ReplicacaoSeguidor seguidor = new ReplicacaoSeguidor(service, primario, estado)) {
+            saida.println("instante;seq_aplicada;seq_primario;atraso_registros;atraso_ms;animais;instantaneos");
+            saida.flush();
+            long fim = segundos > 0 ? System.currentTimeMillis() + segundos * 1000L : Long.MAX_VALUE;
+            while (System.currentTimeMillis() < fim) {
+                Thread.sleep(1000);
+                saida.println(Instant.now() + ";" + seguidor.getSeqAplicada() + ";" + seguidor.getSeqPrimario() + ";"
+                        + seguidor.getAtrasoRegistros() + ";" + seguidor.getAtrasoMs() + ";" + service.quantidadeAnimais()
+                        + ";" + seguidor.getInstantaneosRecebidos());
+                saida.flush(); // Uma linha por segundo, para quem acompanha a saída
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * backup [completo|incremental], no destino de -Dpetshop.backup.dir.
+     */
+    private int backup(String tipo) throws IOException {
+        if (backup == null) {
+            throw new IllegalArgumentException("Informe o destino dos backups com -Dpetshop.backup.dir=DIRETORIO");
+        }
+        switch (tipo) {
+            case "completo":
+                saida.println(backup.completo());
+                return 0;
+            case "incremental":
+                saida.println(backup.incremental());
+                return 0;
+            default:
+                throw new IllegalArgumentException("Tipo de backup deve ser completo ou incremental: " + tipo);
+        }
+    }
+
+    /**
+     * Restaura no armazenamento configurado, que deve estar vazio, o cadastro como estava no
+     * ponto pedido: uma seq do log de alterações ou uma data (sem ponto, o mais recente).
+     */
+    private int restaurar(Path origem, String ponto) throws IOException {
+        long seq = Long.MAX_VALUE;
+        long instante = Long.MAX_VALUE;
+        if (ponto != null && ponto.chars().allMatch(Character::isDigit)) {
+            seq = Long.parseLong(ponto);
+        } else if (ponto != null) {
+            instante = instante(ponto);
+        }
+        saida.println(BackupOnline.restaurar(origem, seq, instante, service));
+        return 0;
+    }
+
+    /**
+     * Indica se alguma gravação do comando falhou; a mensagem já foi registrada pelo serviço.
+     */
+    private boolean falhou() {
+        return falhas.get() > 0;
+    }
+
+    private void escreverVisitaCsv(StringBuilder linha, Visita visita) {
+        linha.setLength(0);
+        linha.append(Instant.ofEpochMilli(visita.getInstante())).append(';');
+        campoCsv(linha, visita.getIdAnimal()).append(';');
+        linha.append(visita.getTipo().name().toLowerCase(Locale.ROOT)).append(';');
+        campoCsv(linha, visita.getDescricao());
+        saida.println(linha);
+    }
+
+    /**
+     * Escreve os animais em CSV, página a página, sem carregar a listagem inteira em memória.
+     * @return A quantidade de linhas escritas.
+     */
+    private int escreverCsv(ColunaAnimal ordem, boolean crescente, FiltroAnimais filtro) {
+        saida.println(CABECALHO_CSV);
+        int total = 0;
+        PaginaAnimais pagina = null;
+        do {
+            pagina = service.paginaOrdenada(ordem, crescente, filtro, pagina == null ? null : pagina.getUltima(), TAMANHO_PAGINA);
+            total += escreverLinhasCsv(pagina.getAnimais());
+        } while (pagina.temMais());
+        return total;
+    }
+
+    /**
+     * Escreve em CSV, em ordem de ID, os animais de um instantâneo, página a página.
+     * @return A quantidade de linhas escritas.
+     */
+    private int escreverCsv(RegistroVersionado.Instantaneo instantaneo) {
+        saida.println(CABECALHO_CSV);
+        int total = 0;
+        List<Animal> pagina;
+        String ultimoId = null;
+        while (!(pagina = instantaneo.paginaApos(ultimoId, TAMANHO_PAGINA)).isEmpty()) {
+            total += escreverLinhasCsv(pagina);
+            ultimoId = pagina.get(pagina.size() - 1).getId();
+        }
+        return total;
+    }
+
+    private int escreverLinhasCsv(List<Animal> animais) {
+        int total = 0;
+        StringBuilder linha = new StringBuilder(128);
+        for (Animal animal : animais) {
+            linha.setLength(0);
+            campoCsv(linha, animal.getId()).append(';');
+            campoCsv(linha, (String) ColunaAnimal.TIPO.valor(animal)).append(';');
+            campoCsv(linha, animal.getNome()).append(';');
+            linha.append(animal.getIdade()).append(';');
+            campoCsv(linha, animal.getRaca()).append(';');
+            if (animal instanceof Cachorro cachorro) {
+                campoCsv(linha, cachorro.getPorte()).append(';');
+            } else if (animal instanceof Gato gato) {
+                linha.append(';').append(gato.isCastrado() ? "sim" : "nao");
+            }
+            saida.println(linha);
+            total++;
+        }
+        return total;
+    }
+
+    private static StringBuilder campoCsv(StringBuilder linha, String valor) {
+        if (valor == null) {
+            return linha;
+        }
+        if (valor.indexOf(';') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+            return linha.append(valor);
+        }
+        return linha.append('"').append(valor.replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * Lê um registro CSV, que continua nas linhas seguintes enquanto houver um campo entre
+     * aspas aberto (descrições com quebras de linha).
+     * @return O registro, ou null no fim da entrada.
+     */
+    static String lerLinhaCsv(BufferedReader in) throws IOException {
+        String linha = in.readLine();
+        if (linha == null) {
+            return null;
+        }
+        StringBuilder registro = null;
+        long aspas = linha.chars().filter(c -> c == '"').count();
+        while (aspas % 2 != 0) {
+            String continuacao = in.readLine();
+            if (continuacao == null) {
+                break; // Aspas sem fechamento: lerCamposCsv aceita o que houver
+            }
+            if (registro == null) {
+                registro = new StringBuilder(linha);
+            }
+            registro.append('\n').append(continuacao);
+            aspas += continuacao.chars().filter(c -> c == '"').count();
+        }
+        return registro == null ? linha : registro.toString();
+    }
+
+    static List<String> lerCamposCsv(String linha) {
+        List<String> campos = new ArrayList<>(7);
+        StringBuilder atual = new StringBuilder();
+        boolean entreAspas = false;
+        for (int i = 0; i < linha.length(); i++) {
+            char c = linha.charAt(i);
+            if (entreAspas) {
+                if (c == '"' && i + 1 < linha.length() && linha.charAt(i + 1) == '"') {
+                    atual.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreAspas = false;
+                } else {
+                    atual.append(c);
+                }
+            } else if (c == '"') {
+                entreAspas = true;
+            } else if (c == ';') {
+                campos.add(atual.toString());
+                atual.setLength(0);
+            } else {
+                atual.append(c);
+            }
+        }
+        campos.add(atual.toString());
+        return campos;
+    }
+
+    /**
+     * Cria um animal validando os campos como a tela de cadastro.
+     */
+    private static Animal criarAnimal(String id, String tipo, String nome, int idade, String raca, String porte, String castrado) {
+        obrigatorio(nome, "nome");
+        obrigatorio(raca, "raça");
+        if ("Cachorro".equals(tipo)) {
+            return new Cachorro(id, nome, idade, raca, obrigatorio(porte, "porte"));
+        }
+        return new Gato(id, nome, idade, raca, simOuNao(castrado));
+    }
+
+    private static BufferedReader abrirLeitura(String arquivo) throws IOException {
+        InputStream in = "-".equals(arquivo) ? System.in : new FileInputStream(arquivo);
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    private static String argumento(String[] args, int indice, String nome) {
+        if (indice >= args.length) {
+            throw new IllegalArgumentException("Faltando argumento: " + nome);
+        }
+        return args[indice];
+    }
+
+    private static String obrigatorio(String valor, String campo) {
+        if (valor == null || valor.isEmpty()) {
+            throw new IllegalArgumentException("O campo " + campo + " é obrigatório.");
+        }
+        return valor;
+    }
+
+    private static int inteiro(String valor, String campo) {
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("O campo " + campo + " deve ser um número inteiro: " + valor);
+        }
+    }
+
+    private static boolean simOuNao(String valor) {
+        String normalizado = Textos.normalizar(valor);
+        if (normalizado.equals("sim") || normalizado.equals("true") || normalizado.equals("s")) {
+            return true;
+        }
+        if (normalizado.equals("nao") || normalizado.equals("false") || normalizado.equals("n")) {
+            return false;
+        }
+        throw new IllegalArgumentException("Esperado sim ou não: " + valor);
+    }
+
+    private static String tipo(String valor) {
+        String normalizado = Textos.normalizar(valor);
+        if (normalizado.equals("cachorro")) {
+            return "Cachorro";
+        }
+        if (normalizado.equals("gato")) {
+            return "Gato";
+        }
+        throw new IllegalArgumentException("Tipo deve ser cachorro ou gato: " + valor);
+    }
+
+    private static double limiar(String valor) {
+        try {
+            double limiar = Double.parseDouble(valor);
+            if (limiar >= 0 && limiar <= 1) {
+                return limiar;
+            }
+        } catch (NumberFormatException e) {
+            // Tratado abaixo
+        }
+        throw new IllegalArgumentException("Limiar deve ser um número entre 0 e 1: " + valor);
+    }
+
+    private static Visita.Tipo tipoVisita(String valor) {
+        String normalizado = Textos.normalizar(valor);
+        for (Visita.Tipo tipo : Visita.Tipo.TODOS) {
+            if (Textos.normalizar(tipo.name()).equals(normalizado) || Textos.normalizar(tipo.getTitulo()).equals(normalizado)) {
+                return tipo;
+            }
+        }
+        throw new IllegalArgumentException("Tipo de visita deve ser consulta, vacinacao, banho_e_tosa ou outro: " + valor);
+    }
+
+    /**
+     * Converte uma data (AAAA-MM-DD), data e hora locais (AAAA-MM-DDTHH:MM[:SS]) ou um
+     * instante UTC (terminado em Z) em milissegundos desde a época.
+     */
+    private static long instante(String valor) {
+        try {
+            if (valor.endsWith("Z")) {
+                return Instant.parse(valor).toEpochMilli();
+            }
+            if (valor.indexOf('T') >= 0) {
+                return LocalDateTime.parse(valor).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            }
+            return LocalDate.parse(valor).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Data inválida (use AAAA-MM-DD ou AAAA-MM-DDTHH:MM): " + valor);
+        }
+    }
+
+    private static ColunaAnimal coluna(String valor) {
+        String normalizado = Textos.normalizar(valor);
+        for (ColunaAnimal coluna : ColunaAnimal.TODAS) {
+            if (Textos.normalizar(coluna.getTitulo()).equals(normalizado)) {
+                return coluna;
+            }
+        }
+        throw new IllegalArgumentException("Coluna desconhecida: " + valor);
+    }
+
+    private static void imprimirUso() {
+        System.out.println("Uso: java [-Dpetshop.armazenamento=...] -cp out PetshopCli COMANDO [argumentos]");
+        System.out.println();
+        System.out.println("Comandos:");
+        System.out.println("  listar [--ordem COLUNA] [--desc] [--nome T] [--raca T] [--tipo cachorro|gato] [--idade-min N] [--idade-max N]");
+        System.out.println("  buscar ID");
+        System.out.println("  adicionar cachorro NOME IDADE RACA PORTE");
+        System.out.println("  adicionar gato NOME IDADE RACA sim|nao");
+        System.out.println("  atualizar ID campo=valor...   (nome, idade, raca, porte, castrado)");
+        System.out.println("  remover ID");
+        System.out.println("  importar ARQUIVO.csv|-        (" + CABECALHO_CSV + ")");
+        System.out.println("  exportar [ARQUIVO.csv|-]");
+        System.out.println("  compactar");
+        System.out.println("  estatisticas");
+        System.out.println("  duplicados [LIMIAR]           (possíveis cadastros em duplicidade; padrão " + DetectorDuplicados.LIMIAR_PADRAO + ")");
+        System.out.println("  visita ID consulta|vacinacao|banho_e_tosa|outro DESCRICAO [DATA]");
+        System.out.println("  visitas ID [N]                (últimas N visitas, padrão 10)");
+        System.out.println("  visitas-periodo INICIO FIM    (datas AAAA-MM-DD[THH:MM]; fim exclusivo)");
+        System.out.println("  importar-visitas ARQUIVO.csv|- (" + CABECALHO_VISITAS + ")");
+        System.out.println("  anexar ID ARQUIVO             (foto ou documento)");
+        System.out.println("  anexos ID");
+        System.out.println("  anexo HASH [DESTINO|-]");
+        System.out.println("  seguir HOST:PORTA [SEGUNDOS]   (réplica somente leitura; escreve o atraso a cada segundo)");
+        System.out.println("  backup [completo|incremental] (no diretório de -Dpetshop.backup.dir; padrão incremental)");
+        System.out.println("  restaurar DIRETORIO [SEQ|DATA] (no armazenamento configurado, que deve estar vazio)");
+        System.out.println();
+        System.out.println("Com -Dpetshop.replicacao.primario=HOST:PORTA, os comandos de consulta leem de uma réplica");
+        System.out.println("sincronizada com o primário antes de responder.");
+    }
+}
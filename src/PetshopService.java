@@ -0,0 +1,612 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+// import java.util.UUID; // Não será mais usado para gerar novos IDs
+
+/**
+ * Classe de serviço para gerenciar os animais do petshop.
+ * Mantém os objetos Animal em memória num {@link RegistroVersionado} (ordenado por ID) e
+ * delega a persistência a um {@link ArmazenamentoAnimais}.
+ * A leitura é feita em páginas limitadas ({@link #paginaApos}, {@link #paginaOrdenada})
+ * ou por cursor ({@link #cursor}), sem copiar o cadastro inteiro. Relatórios longos devem
+ * usar um instantâneo ({@link #abrirInstantaneo}), que enxerga uma versão fixa do cadastro
+ * sem bloquear as gravações.
+ *
+ * O serviço guarda cópias dos animais recebidos, e os objetos devolvidos pelas leituras
+ * são versões congeladas que não devem ser alteradas; para editar um animal, use
+ * {@link #buscarAnimalPorId}, que devolve uma cópia, e depois {@link #atualizarAnimal}.
+ * Não depende do Swing: erros de E/S são repassados a um notificador, que na
+ * interface gráfica exibe um diálogo e no modo de linha de comando apenas registra.
+ */
+class PetshopService {
+    /** Ordem dos IDs: numérica ("9" antes de "10"), com IDs não numéricos no final. */
+    static final Comparator<String> ORDEM_ID = Comparator.<String>comparingLong(IndiceOrdenado::idNumerico)
+            .thenComparing(Comparator.naturalOrder());
+    private final RegistroVersionado animais = new RegistroVersionado(ORDEM_ID);
+    private final ArmazenamentoAnimais armazenamento;
+    private final Consumer<String> notificadorErros;
+    private final Map<ColunaAnimal, IndiceOrdenado> indices = new EnumMap<>(ColunaAnimal.class); // Criados sob demanda
+    private DetectorDuplicados duplicados; // Criado na primeira verificação de duplicados
+    private ReplicacaoPrimario replicacao; // Recebe as alterações, se esta for a instância primária
+    private LogAlteracoes logAlteracoes; // Registra as alterações para os backups incrementais, se configurado
+    private ArmazenamentoAnexos anexos; // Desliga os anexos dos animais removidos, se configurado
+    private boolean somenteLeitura; // Instância seguidora: só a replicação altera o cadastro
+    private int nextSequentialId; // Contador para IDs sequenciais
+
+    public PetshopService() {
+        this(ArmazenamentoAnimais.criarConfigurado());
+    }
+
+    public PetshopService(ArmazenamentoAnimais armazenamento) {
+        this(armazenamento, mensagem -> { }); // Erros já são registrados em System.err
+    }
+
+    /**
+     * @param armazenamento Onde os animais são persistidos.
+     * @param notificadorErros Recebe as mensagens de erro de E/S (além do registro em System.err).
+     */
+    public PetshopService(ArmazenamentoAnimais armazenamento, Consumer<String> notificadorErros) {
+        this.armazenamento = armazenamento;
+        this.notificadorErros = notificadorErros;
+        this.nextSequentialId = 1; // Inicia o contador de IDs sequenciais
+        carregarDados(); // Carrega os dados ao iniciar o serviço
+    }
+
+    /**
+     * Adiciona um novo animal à lista.
+     * Atribui um ID sequencial se o animal ainda não tiver um (para novas entradas).
+     * @param animal O objeto Animal a ser adicionado.
+     */
+    public synchronized void adicionarAnimal(Animal animal) {
+        verificarGravavel();
+        atribuirId(animal);
+        Animal versao = animal.copiar(); // O chamador pode continuar alterando o seu objeto
+        animais.inserir(versao);
+        indexar(versao);
+        try {
+            armazenamento.inserir(versao); // Salva os dados após adicionar
+        } catch (IOException e) {
+            reportarErro("Erro ao salvar dados: " + e.getMessage());
+        }
+        publicar(ArmazenamentoDiario.OP_INSERIR, versao, null);
+    }
+
+    /**
+     * Adiciona vários animais de uma vez, persistindo-os em lote.
+     * @param novos Os animais a serem adicionados.
+     */
+    public synchronized void adicionarAnimais(Collection<Animal> novos) {
+        verificarGravavel();
+        List<Animal> versoes = new ArrayList<>(novos.size());
+        for (Animal animal : novos) {
+            atribuirId(animal);
+            Animal versao = animal.copiar();
+            animais.inserir(versao);
+            indexar(versao);
+            versoes.add(versao);
+        }
+        try {
+            armazenamento.inserirTodos(versoes);
+        } catch (IOException e) {
+            reportarErro("Erro ao salvar dados: " + e.getMessage());
+        }
+        publicarInsercoes(versoes);
+    }
+
+    /**
+     * Lista todos os animais cadastrados.
+     * @return Uma lista de objetos Animal.
+     * @deprecated Copia o cadastro inteiro; prefira {@link #paginaApos(String, int)} ou {@link #cursor(String)}.
+     */
+    @Deprecated
+    public List<Animal> listarAnimais() {
+        List<Animal> lista = new ArrayList<>(animais.tamanho()); // Retorna uma cópia para evitar modificações externas diretas
+        animais.cursor(null).forEachRemaining(lista::add);
+        return lista;
+    }
+
+    /**
+     * Lê uma página de animais em ordem de ID.
+     * @param idAnterior O último ID da página anterior (null para começar do início).
+     * @param limite Quantidade máxima de animais na página.
+     * @return Os próximos animais depois de {@code idAnterior}, no máximo {@code limite}.
+     */
+    public List<Animal> paginaApos(String idAnterior, int limite) {
+        List<Animal> pagina = new ArrayList<>(Math.min(limite, 1024));
+        Spliterator<Animal> cursor = cursor(idAnterior);
+        while (pagina.size() < limite && cursor.tryAdvance(pagina::add)) {
+            // tryAdvance já adicionou o animal à página
+        }
+        return pagina;
+    }
+
+    /**
+     * Cursor sobre os animais em ordem de ID, sem cópia. O consumidor pode parar a qualquer
+     * momento (tryAdvance) ou dividir o cursor para processamento paralelo
+     * (por exemplo, {@code StreamSupport.stream(cursor(null), true)}).
+     * O cursor tolera alterações concorrentes: reflete o cadastro em algum momento durante a leitura.
+     * @param idAnterior Começa depois deste ID (null para começar do início).
+     */
+    public Spliterator<Animal> cursor(String idAnterior) {
+        return animais.cursor(idAnterior);
+    }
+
+    /**
+     * Abre um instantâneo do cadastro: enquanto estiver aberto, enxerga os animais exatamente
+     * como estavam neste momento, mesmo que outras threads continuem gravando. Abrir custa
+     * O(1) e não copia nada; as versões antigas só são mantidas até o instantâneo ser fechado.
+     * <pre>
+     * try (RegistroVersionado.Instantaneo instantaneo = service.abrirInstantaneo()) {
+     *     StreamSupport.stream(instantaneo.cursor(null), true)...
+     * }
+     * </pre>
+     */
+    public RegistroVersionado.Instantaneo abrirInstantaneo() {
+        return animais.abrirInstantaneo();
+    }
+
+    /**
+     * Lê uma página de animais ordenados por uma coluna, aplicando um filtro.
+     * Usa um índice ordenado mantido incrementalmente, sem reordenar nem copiar o cadastro.
+     * @param coluna A coluna usada na ordenação.
+     * @param crescente true para ordem crescente, false para decrescente.
+     * @param filtro O filtro a ser aplicado ({@link FiltroAnimais#NENHUM} para todos).
+     * @param apos Posição final da página anterior ({@link PaginaAnimais#getUltima()}), ou null para a primeira.
+     * @param limite Quantidade máxima de animais na página.
+     * @return A página com os animais selecionados, na ordem pedida.
+     */
+    public synchronized PaginaAnimais paginaOrdenada(ColunaAnimal coluna, boolean crescente, FiltroAnimais filtro,
+                                                     IndiceOrdenado.Chave apos, int limite) {
+        IndiceOrdenado indice = indices.computeIfAbsent(coluna, c -> new IndiceOrdenado(c, animais.atuais()));
+        return indice.pagina(apos, crescente, limite, filtro);
+    }
+
+    /**
+     * Procura animais já cadastrados parecidos com o informado, para avisar sobre um possível
+     * cadastro em duplicidade antes de salvá-lo. Usa um índice por blocos mantido
+     * incrementalmente, então cada verificação compara o animal com poucos outros.
+     * @param animal O animal a verificar (novo, sem ID, ou em edição, que não é comparado consigo mesmo).
+     * @return Os animais parecidos, do mais para o menos semelhante.
+     */
+    public synchronized List<DetectorDuplicados.Semelhanca> possiveisDuplicados(Animal animal) {
+        if (duplicados == null) {
+            duplicados = new DetectorDuplicados(animais.atuais());
+        }
+        return duplicados.semelhantes(animal, DetectorDuplicados.LIMIAR_PADRAO);
+    }
+
+    /**
+     * Relatório de possíveis duplicados em todo o cadastro, calculado em paralelo sobre um
+     * instantâneo, sem bloquear as gravações enquanto roda.
+     * @param limiar Semelhança mínima, entre 0 e 1 ({@link DetectorDuplicados#LIMIAR_PADRAO} no cadastro).
+     * @return Os pares encontrados, do mais para o menos semelhante.
+     */
+    public List<DetectorDuplicados.Semelhanca> relatorioDuplicados(double limiar) {
+        try (RegistroVersionado.Instantaneo instantaneo = animais.abrirInstantaneo()) {
+            DetectorDuplicados detector = new DetectorDuplicados();
+            instantaneo.cursor(null).forEachRemaining(detector::inserir);
+            return detector.relatorio(instantaneo.cursor(null), limiar);
+        }
+    }
+
+    /**
+     * Busca um animal pelo seu ID.
+     * @param id O ID do animal a ser buscado.
+     * @return Uma cópia do animal, que pode ser alterada e passada a {@link #atualizarAnimal},
+     *         ou null se não for encontrado.
+     */
+    public Animal buscarAnimalPorId(String id) {
+        Animal animal = animais.atual(id); // O registro admite leituras concorrentes, sem trava nem acesso ao disco
+        return animal != null ? animal.copiar() : null;
+    }
+
+    /**
+     * Atualiza os dados de um animal existente.
+     * @param animalAtualizado O objeto Animal com os dados atualizados.
+     * @return true se o animal foi atualizado com sucesso, false caso contrário.
+     */
+    public synchronized boolean atualizarAnimal(Animal animalAtualizado) {
+        verificarGravavel();
+        Animal versao = animalAtualizado.copiar(); // Nova versão; quem já está lendo continua vendo a anterior
+        if (!animais.substituir(versao)) {
+            return false;
+        }
+        indexar(versao); // Reposiciona o animal em cada índice
+        try {
+            armazenamento.atualizar(versao); // Salva os dados após atualizar
+        } catch (IOException e) {
+            reportarErro("Erro ao salvar dados: " + e.getMessage());
+        }
+        publicar(ArmazenamentoDiario.OP_ATUALIZAR, versao, null);
+        return true;
+    }
+
+    /**
+     * Remove um animal da lista pelo seu ID.
+     * @param id O ID do animal a ser removido.
+     * @return true se o animal foi removido com sucesso, false caso contrário.
+     */
+    public synchronized boolean removerAnimal(String id) {
+        verificarGravavel();
+        boolean removido = id != null && animais.remover(id);
+        if (removido) {
+            desindexar(id);
+            try {
+                armazenamento.remover(id); // Salva os dados após remover
+            } catch (IOException e) {
+                reportarErro("Erro ao salvar dados: " + e.getMessage());
+            }
+            desanexar(id);
+            publicar(ArmazenamentoDiario.OP_REMOVER, null, id);
+        }
+        return removido;
+    }
+
+    /**
+     * Passa a entregar cada alteração do cadastro à replicação (instância primária), na
+     * ordem das gravações e sob a trava do serviço.
+     */
+    public synchronized void setReplicacao(ReplicacaoPrimario replicacao) {
+        this.replicacao = replicacao;
+    }
+
+    /**
+     * Passa a registrar cada alteração do cadastro no log usado pelos backups incrementais, na
+     * ordem das gravações e sob a trava do serviço.
+     */
+    public synchronized void setLogAlteracoes(LogAlteracoes logAlteracoes) {
+        this.logAlteracoes = logAlteracoes;
+    }
+
+    /**
+     * Passa a desfazer as ligações com os anexos de cada animal removido (inclusive pela
+     * replicação), para que não fiquem ligações nem conteúdos órfãos. Os anexos não são
+     * replicados nem entram nos backups.
+     */
+    public synchronized void setAnexos(ArmazenamentoAnexos anexos) {
+        this.anexos = anexos;
+    }
+
+    /**
+     * Grava no cadastro, que deve estar vazio, os animais restaurados de um backup, mantendo os IDs.
+     */
+    public synchronized void restaurar(Collection<Animal> restaurados) {
+        verificarGravavel();
+        if (animais.tamanho() > 0) {
+            throw new IllegalStateException("O cadastro de destino não está vazio; restaure em um arquivo novo (-Dpetshop.arquivo).");
+        }
+        List<Animal> versoes = new ArrayList<>(restaurados.size());
+        for (Animal animal : restaurados) {
+            Animal versao = animal.copiar();
+            animais.inserir(versao);
+            indexar(versao);
+            avancarSequencia(versao.getId());
+            versoes.add(versao);
+        }
+        try {
+            armazenamento.inserirTodos(versoes);
+        } catch (IOException e) {
+            reportarErro("Erro ao salvar dados: " + e.getMessage());
+        }
+        publicarInsercoes(versoes);
+    }
+
+    /**
+     * Torna o serviço somente leitura (instância seguidora): cadastrar, atualizar e remover
+     * passam a lançar IllegalStateException, e o cadastro só muda pela replicação.
+     */
+    public synchronized void setSomenteLeitura(boolean somenteLeitura) {
+        this.somenteLeitura = somenteLeitura;
+    }
+
+    public synchronized boolean isSomenteLeitura() {
+        return somenteLeitura;
+    }
+
+    /**
+     * Aplica uma alteração recebida da instância primária, mantendo o ID original.
+     * Inserções e atualizações substituem o animal se ele já existir, e remover um animal
+     * inexistente não faz nada, então reaplicar um registro já aplicado não tem efeito.
+     *
+     * Se o armazenamento falhar, o cadastro em memória volta ao estado anterior e a IOException
+     * é repassada: o seguidor não deve dar o registro por aplicado, para recebê-lo de novo.
+     * @param operacao Uma das operações do diário ({@link ArmazenamentoDiario#OP_INSERIR} etc.).
+     */
+    synchronized void aplicarReplicado(byte operacao, Animal animal, String id) throws IOException {
+        String chave = animal != null ? animal.getId() : id;
+        Animal anterior = animais.atual(chave);
+        try {
+            if (operacao == ArmazenamentoDiario.OP_REMOVER) {
+                if (animais.remover(id)) {
+                    desindexar(id);
+                    armazenamento.remover(id);
+                    desanexar(id);
+                }
+            } else if (animais.substituir(animal)) {
+                indexar(animal);
+                armazenamento.atualizar(animal);
+            } else {
+                animais.inserir(animal);
+                indexar(animal);
+                avancarSequencia(animal.getId());
+                armazenamento.inserir(animal);
+            }
+        } catch (IOException e) {
+            restaurarVersao(chave, anterior);
+            reportarErro("Erro ao salvar dados replicados: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Desfaz em memória uma alteração replicada que o armazenamento não gravou.
+     * @param anterior A versão antes da alteração, ou null se o animal não existia.
+     */
+    private void restaurarVersao(String id, Animal anterior) {
+        boolean existe = animais.atual(id) != null;
+        if (anterior == null) {
+            if (existe) {
+                animais.remover(id);
+                desindexar(id);
+            }
+        } else {
+            if (existe) {
+                animais.substituir(anterior);
+            } else {
+                animais.inserir(anterior);
+            }
+            indexar(anterior);
+        }
+    }
+
+    /**
+     * Substitui o cadastro pelo instantâneo recebido da instância primária (seguidor novo ou
+     * muito atrasado). Só as diferenças são gravadas no armazenamento.
+     *
+     * Se o armazenamento falhar, o cadastro é recarregado dele (para que a próxima tentativa
+     * compare o instantâneo com o que foi de fato gravado) e a IOException é repassada.
+     */
+    synchronized void aplicarInstantaneo(Collection<Animal> recebidos) throws IOException {
+        Set<String> ids = new HashSet<>(Math.max(16, recebidos.size() * 4 / 3 + 1));
+        List<Animal> novos = new ArrayList<>();
+        try {
+            for (Animal animal : recebidos) {
+                ids.add(animal.getId());
+                Animal atual = animais.atual(animal.getId());
+                if (atual == null) {
+                    animais.inserir(animal);
+                    indexar(animal);
+                    avancarSequencia(animal.getId());
+                    novos.add(animal);
+                } else if (!mesmosDados(atual, animal)) {
+                    animais.substituir(animal);
+                    indexar(animal);
+                    armazenamento.atualizar(animal);
+                }
+            }
+            armazenamento.inserirTodos(novos);
+            List<String> removidos = new ArrayList<>();
+            for (Animal animal : animais.atuais()) {
+                if (!ids.contains(animal.getId())) {
+                    removidos.add(animal.getId());
+                }
+            }
+            for (String id : removidos) {
+                animais.remover(id);
+                desindexar(id);
+                armazenamento.remover(id);
+                desanexar(id);
+            }
+        } catch (IOException e) {
+            reportarErro("Erro ao salvar dados replicados: " + e.getMessage());
+            carregarDados();
+            throw e;
+        }
+    }
+
+    /**
+     * Compacta o armazenamento, se ele suportar (por exemplo, o diário).
+     * @return true se o armazenamento foi compactado.
+     */
+    public synchronized boolean compactar() {
+        try {
+            return armazenamento.compactar();
+        } catch (IOException e) {
+            reportarErro("Erro ao compactar dados: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Quantidade de animais cadastrados.
+     */
+    public int quantidadeAnimais() {
+        return animais.tamanho();
+    }
+
+    /**
+     * Quantidade de versões antigas mantidas em memória para instantâneos ainda abertos.
+     */
+    public int versoesRetidas() {
+        return animais.getVersoesRetidas();
+    }
+
+    /**
+     * Descrição do armazenamento em uso, com suas estatísticas (como as do cache).
+     */
+    public synchronized String resumoArmazenamento() {
+        return armazenamento.estatisticas();
+    }
+
+    /**
+     * Libera os recursos do armazenamento (arquivos, conexões).
+     */
+    public synchronized void fechar() {
+        try {
+            armazenamento.close();
+        } catch (IOException e) {
+            System.err.println("Erro ao fechar armazenamento: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Carrega os animais do armazenamento configurado.
+     * Também atualiza o contador de IDs sequenciais com base nos IDs existentes.
+     */
+    private void carregarDados() {
+        indices.clear();
+        duplicados = null;
+        animais.limpar();
+        try {
+            List<Animal> carregados = armazenamento.carregar();
+            for (Animal animal : carregados) {
+                animais.inserir(animal);
+            }
+
+            // Encontra o maior ID numérico existente para continuar a sequência
+            int maxId = 0;
+            for (Animal animal : carregados) {
+                if (isNumeric(animal.getId())) { // Apenas considera IDs numéricos para o contador
+                    try {
+                        int currentId = Integer.parseInt(animal.getId());
+                        if (currentId > maxId) {
+                            maxId = currentId;
+                        }
+                    } catch (NumberFormatException e) {
+                        // Ignora IDs não numéricos (como os antigos UUIDs) para o cálculo do maxId
+                    }
+                }
+            }
+            nextSequentialId = maxId + 1;
+            System.out.println("Próximo ID sequencial disponível: " + nextSequentialId);
+        } catch (IOException e) {
+            reportarErro("Erro ao carregar dados: " + e.getMessage());
+            animais.limpar(); // Inicializa com lista vazia em caso de erro
+            this.nextSequentialId = 1; // Reseta o contador
+        }
+    }
+
+    private void verificarGravavel() {
+        if (somenteLeitura) {
+            throw new IllegalStateException("Esta instância é uma réplica somente leitura; faça a alteração na instância primária.");
+        }
+    }
+
+    /**
+     * Insere ou reposiciona o animal nos índices criados até agora.
+     */
+    private void indexar(Animal versao) {
+        for (IndiceOrdenado indice : indices.values()) {
+            indice.inserir(versao);
+        }
+        if (duplicados != null) {
+            duplicados.inserir(versao);
+        }
+    }
+
+    private void desindexar(String id) {
+        for (IndiceOrdenado indice : indices.values()) {
+            indice.remover(id);
+        }
+        if (duplicados != null) {
+            duplicados.remover(id);
+        }
+    }
+
+    private void desanexar(String id) {
+        if (anexos != null) {
+            try {
+                anexos.desanexarTodos(id);
+            } catch (IOException e) {
+                reportarErro("Erro ao remover os anexos do animal " + id + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void publicar(byte operacao, Animal versao, String id) {
+        if (replicacao != null) {
+            replicacao.registrar(operacao, versao, id);
+        }
+        if (logAlteracoes != null) {
+            try {
+                logAlteracoes.registrar(operacao, versao, id);
+            } catch (IOException e) {
+                reportarErro("Erro ao registrar alteração no log de backup: " + e.getMessage());
+            }
+        }
+    }
+
+    private void publicarInsercoes(List<Animal> versoes) {
+        if (replicacao != null) {
+            for (Animal versao : versoes) {
+                replicacao.registrar(ArmazenamentoDiario.OP_INSERIR, versao, null);
+            }
+        }
+        if (logAlteracoes != null) {
+            try {
+                logAlteracoes.registrarInsercoes(versoes); // Uma única escrita para o lote
+            } catch (IOException e) {
+                reportarErro("Erro ao registrar alteração no log de backup: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Garante que o próximo ID sequencial seja maior que um ID recebido da replicação.
+     */
+    private void avancarSequencia(String id) {
+        if (isNumeric(id)) {
+            try {
+                nextSequentialId = Math.max(nextSequentialId, Integer.parseInt(id) + 1);
+            } catch (NumberFormatException e) {
+                // IDs numéricos grandes demais não participam da sequência
+            }
+        }
+    }
+
+    private static boolean mesmosDados(Animal a, Animal b) {
+        if (a.getClass() != b.getClass() || a.getIdade() != b.getIdade()
+                || !Objects.equals(a.getNome(), b.getNome()) || !Objects.equals(a.getRaca(), b.getRaca())) {
+            return false;
+        }
+        if (a instanceof Cachorro cachorro) {
+            return Objects.equals(cachorro.getPorte(), ((Cachorro) b).getPorte());
+        }
+        return !(a instanceof Gato gato) || gato.isCastrado() == ((Gato) b).isCastrado();
+    }
+
+    /**
+     * Atribui um ID sequencial apenas se o animal não tiver um ID válido (ex: se foi carregado de um arquivo).
+     */
+    private void atribuirId(Animal animal) {
+        if (animal.getId() == null || animal.getId().isEmpty() || !isNumeric(animal.getId())) {
+            animal.setId(String.valueOf(nextSequentialId++));
+        }
+    }
+
+    private void reportarErro(String mensagem) {
+        System.err.println(mensagem);
+        notificadorErros.accept(mensagem);
+    }
+
+    /**
+     * Verifica se uma string pode ser convertida para um número inteiro.
+     * @param str A string a ser verificada.
+     * @return true se a string é numérica, false caso contrário.
+     */
+    private boolean isNumeric(String str) {
+        if (str == null || str.isEmpty()) {
+            return false;
+        }
+        return str.matches("-?\\d+"); // Regex para números inteiros (opcionalmente negativos)
+    }
+}
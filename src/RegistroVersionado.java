@@ -0,0 +1,341 @@
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+
+/**
+ * Mapa de animais por ID com várias versões (MVCC), usado pelo PetshopService.
+ *
+ * Cada gravação cria uma nova versão do animal em vez de alterar o objeto existente, e
+ * recebe um número de versão global crescente. Um leitor abre um {@link Instantaneo}, que
+ * guarda apenas esse número: enquanto estiver aberto, enxerga o cadastro exatamente como
+ * estava naquele momento, sem bloquear os escritores e sem ver alterações pela metade.
+ *
+ * As versões antigas só são mantidas enquanto algum instantâneo aberto puder precisar
+ * delas; ao fechar o instantâneo mais antigo, elas são descartadas. Sem instantâneos
+ * abertos, cada animal tem uma única versão e uma remoção apaga a entrada na hora.
+ *
+ * As gravações são serializadas pelo monitor do registro; as leituras não usam bloqueio.
+ * Os animais guardados são tratados como imutáveis e não devem ser alterados.
+ */
+class RegistroVersionado {
+    private final ConcurrentSkipListMap<String, Versao> versoes;
+    private final TreeMap<Long, Integer> instantaneosAbertos = new TreeMap<>(); // Versão -> quantidade
+    private final Set<String> pendentes = new HashSet<>(); // IDs com versões antigas ainda retidas
+    private volatile long versaoAtual;
+    private volatile int vivos;
+
+    public RegistroVersionado(Comparator<String> ordem) {
+        this.versoes = new ConcurrentSkipListMap<>(ordem);
+    }
+
+    /**
+     * Insere o animal, ou cria uma nova versão se o ID já existir.
+     */
+    public synchronized void inserir(Animal animal) {
+        Versao cabeca = versoes.get(animal.getId());
+        if (cabeca == null || cabeca.animal == null) {
+            vivos++;
+        }
+        instalar(animal.getId(), cabeca, animal);
+    }
+
+    /**
+     * Cria uma nova versão de um animal existente.
+     * @return false se não houver animal com esse ID.
+     */
+    public synchronized boolean substituir(Animal animal) {
+        Versao cabeca = versoes.get(animal.getId());
+        if (cabeca == null || cabeca.animal == null) {
+            return false;
+        }
+        instalar(animal.getId(), cabeca, animal);
+        return true;
+    }
+
+    /**
+     * Remove o animal. Instantâneos abertos antes da remoção continuam a vê-lo.
+     * @return false se não houver animal com esse ID.
+     */
+    public synchronized boolean remover(String id) {
+        Versao cabeca = versoes.get(id);
+        if (cabeca == null || cabeca.animal == null) {
+            return false;
+        }
+        vivos--;
+        instalar(id, cabeca, null); // Uma versão sem animal marca a remoção
+        return true;
+    }
+
+    public synchronized void limpar() {
+        versoes.clear();
+        pendentes.clear();
+        vivos = 0;
+    }
+
+    /**
+     * Versão mais recente do animal, ou null se não existir.
+     */
+    public Animal atual(String id) {
+        Versao cabeca = versoes.get(id);
+        return cabeca != null ? cabeca.animal : null;
+    }
+
+    public int tamanho() {
+        return vivos;
+    }
+
+    /**
+     * Cursor sobre as versões mais recentes, em ordem de ID, sem cópia.
+     * Reflete o cadastro em algum momento durante a leitura (como o de um ConcurrentSkipListMap).
+     */
+    public Spliterator<Animal> cursor(String idAnterior) {
+        return new Cursor(valores(idAnterior).spliterator(), Long.MAX_VALUE);
+    }
+
+    /**
+     * Visão das versões mais recentes como coleção, para a carga inicial dos índices.
+     */
+    public Collection<Animal> atuais() {
+        return new AbstractCollection<Animal>() {
+            @Override
+            public Iterator<Animal> iterator() {
+                return Spliterators.iterator(cursor(null));
+            }
+
+            @Override
+            public int size() {
+                return vivos;
+            }
+        };
+    }
+
+    /**
+     * Abre um instantâneo do cadastro na versão atual. Deve ser fechado (de preferência
+     * com try-with-resources) para que as versões antigas possam ser descartadas.
+     */
+    public synchronized Instantaneo abrirInstantaneo() {
+        long versao = versaoAtual;
+        instantaneosAbertos.merge(versao, 1, Integer::sum);
+        return new Instantaneo(versao);
+    }
+
+    public synchronized int getInstantaneosAbertos() {
+        int total = 0;
+        for (int quantidade : instantaneosAbertos.values()) {
+            total += quantidade;
+        }
+        return total;
+    }
+
+    /**
+     * Quantidade de versões antigas (incluindo marcas de remoção) retidas para instantâneos abertos.
+     */
+    public synchronized int getVersoesRetidas() {
+        int total = 0;
+        for (String id : pendentes) {
+            Versao cabeca = versoes.get(id);
+            for (Versao v = cabeca; v != null; v = v.anterior) {
+                if (v != cabeca || v.animal == null) {
+                    total++;
+                }
+            }
+        }
+        return total;
+    }
+
+    private void instalar(String id, Versao cabeca, Animal animal) {
+        long nova = versaoAtual + 1;
+        if (instantaneosAbertos.isEmpty()) {
+            // Ninguém pode enxergar versões antigas: guarda só a nova
+            if (animal == null) {
+                versoes.remove(id);
+            } else {
+                versoes.put(id, new Versao(nova, animal, null));
+            }
+        } else {
+            Versao versao = new Versao(nova, animal, cabeca);
+            versoes.put(id, versao);
+            podar(versao, instantaneosAbertos.firstKey());
+            pendentes.add(id);
+        }
+        versaoAtual = nova; // Publica a versão só depois de instalada
+    }
+
+    /**
+     * Descarta as versões mais antigas do que a enxergada pelo instantâneo mais antigo.
+     */
+    private static void podar(Versao cabeca, long minima) {
+        Versao v = cabeca;
+        while (v.versao > minima && v.anterior != null) {
+            v = v.anterior;
+        }
+        v.anterior = null;
+    }
+
+    private synchronized void fechar(long versao) {
+        int restantes = instantaneosAbertos.merge(versao, -1, Integer::sum);
+        if (restantes > 0) {
+            return;
+        }
+        instantaneosAbertos.remove(versao);
+        long minima = instantaneosAbertos.isEmpty() ? versaoAtual : instantaneosAbertos.firstKey();
+        if (minima <= versao) {
+            return; // Ainda há um instantâneo mais antigo que precisa das mesmas versões
+        }
+        pendentes.removeIf(id -> {
+            Versao cabeca = versoes.get(id);
+            if (cabeca == null) {
+                return true;
+            }
+            podar(cabeca, minima);
+            if (cabeca.versao > minima) {
+                return false; // A versão mais recente ainda não é vista por todos
+            }
+            if (cabeca.animal == null) {
+                versoes.remove(id, cabeca);
+            }
+            return true;
+        });
+    }
+
+    private Collection<Versao> valores(String idAnterior) {
+        return (idAnterior == null ? versoes : versoes.tailMap(idAnterior, false)).values();
+    }
+
+    /**
+     * Uma versão de um animal. {@code animal} é null quando a versão marca uma remoção.
+     */
+    private static final class Versao {
+        final long versao;
+        final Animal animal;
+        volatile Versao anterior;
+
+        Versao(long versao, Animal animal, Versao anterior) {
+            this.versao = versao;
+            this.animal = animal;
+            this.anterior = anterior;
+        }
+
+        /**
+         * O animal como estava na versão informada, ou null se não existia.
+         */
+        Animal visivelEm(long versaoLeitura) {
+            Versao v = this;
+            while (v != null && v.versao > versaoLeitura) {
+                v = v.anterior;
+            }
+            return v != null ? v.animal : null;
+        }
+    }
+
+    /**
+     * Percorre as entradas do mapa devolvendo a versão visível de cada animal.
+     */
+    private static final class Cursor implements Spliterator<Animal>, Consumer<Versao> {
+        private final Spliterator<Versao> entradas;
+        private final long versao;
+        private Animal encontrado;
+
+        Cursor(Spliterator<Versao> entradas, long versao) {
+            this.entradas = entradas;
+            this.versao = versao;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Animal> acao) {
+            encontrado = null;
+            while (encontrado == null && entradas.tryAdvance(this)) {
+                // Pula animais removidos ou criados depois da versão lida
+            }
+            if (encontrado == null) {
+                return false;
+            }
+            acao.accept(encontrado);
+            return true;
+        }
+
+        @Override
+        public void accept(Versao entrada) {
+            encontrado = entrada.visivelEm(versao);
+        }
+
+        @Override
+        public Spliterator<Animal> trySplit() {
+            Spliterator<Versao> parte = entradas.trySplit();
+            return parte != null ? new Cursor(parte, versao) : null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return entradas.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | NONNULL | CONCURRENT;
+        }
+    }
+
+    /**
+     * Visão congelada do cadastro em uma versão. A leitura não bloqueia os escritores
+     * e não enxerga nenhuma gravação feita depois da abertura.
+     */
+    final class Instantaneo implements AutoCloseable {
+        private final long versao;
+        private boolean fechado;
+
+        private Instantaneo(long versao) {
+            this.versao = versao;
+        }
+
+        public long getVersao() {
+            return versao;
+        }
+
+        /**
+         * O animal como estava no instantâneo, ou null se não existia.
+         */
+        public Animal buscar(String id) {
+            Versao cabeca = versoes.get(id);
+            return cabeca != null ? cabeca.visivelEm(versao) : null;
+        }
+
+        /**
+         * Cursor em ordem de ID sobre os animais do instantâneo; pode ser dividido para leitura paralela.
+         * @param idAnterior Começa depois deste ID (null para começar do início).
+         */
+        public Spliterator<Animal> cursor(String idAnterior) {
+            return new Cursor(valores(idAnterior).spliterator(), versao);
+        }
+
+        /**
+         * Próxima página do instantâneo em ordem de ID.
+         */
+        public List<Animal> paginaApos(String idAnterior, int limite) {
+            List<Animal> pagina = new ArrayList<>(Math.min(limite, 1024));
+            Spliterator<Animal> cursor = cursor(idAnterior);
+            while (pagina.size() < limite && cursor.tryAdvance(pagina::add)) {
+                // tryAdvance já adicionou o animal à página
+            }
+            return pagina;
+        }
+
+        @Override
+        public void close() {
+            if (!fechado) {
+                fechado = true;
+                fechar(versao);
+            }
+        }
+    }
+}
@@ -0,0 +1,409 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Lado primário da replicação por envio do log: cada alteração do cadastro vira um registro
+ * numerado (no mesmo formato do {@link ArmazenamentoDiario}) que é enviado por TCP às
+ * instâncias seguidoras ({@link ReplicacaoSeguidor}).
+ *
+ * Os registros recentes ficam num vetor circular em memória. Um seguidor informa, ao
+ * conectar, o último registro que aplicou; se ele ainda estiver no vetor, o envio continua
+ * dali. Um seguidor novo, ou atrasado demais, recebe antes um instantâneo do cadastro
+ * ({@link PetshopService#abrirInstantaneo()}), aberto junto com o número do último registro,
+ * e depois os registros seguintes. Cada início do primário tem uma época aleatória, para que
+ * um seguidor de uma execução anterior também receba um instantâneo.
+ *
+ * Uma única thread atende todos os seguidores com um {@link Selector}, sem bloquear: um
+ * seguidor lento acumula atraso sem atrasar os outros nem as gravações. Periodicamente é
+ * enviado um batimento com o número do último registro, usado pelos seguidores para medir o
+ * atraso, e os seguidores confirmam o que já aplicaram.
+ *
+ * Não há autenticação nem criptografia: por padrão o servidor só aceita conexões locais.
+ */
+class ReplicacaoPrimario implements Closeable {
+    static final int MAGICO = 0x50455452; // "PETR"
+    static final byte OP_BATIMENTO = 4;
+    static final byte OP_INSTANTANEO = 5; // Seguem inserções de todos os animais, com a mesma seq
+    static final byte OP_FIM_INSTANTANEO = 6;
+    static final int TAMANHO_SAUDACAO = 4 + 8 + 8; // mágico + época + última seq aplicada
+    static final int TAMANHO_CABECALHO = 4 + 8; // mágico + época
+    static final long INTERVALO_BATIMENTO = 1000;
+
+    private static final int TAMANHO_ENVIO = 64 * 1024;
+
+    private final PetshopService service;
+    private final ServerSocketChannel servidor;
+    private final Selector seletor;
+    private final Thread thread;
+    private final long epoca = ThreadLocalRandom.current().nextLong();
+    private final byte[][] recentes; // O registro de seq s fica em recentes[s % recentes.length]
+    private final List<Seguidor> seguidores = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean sinalizado = new AtomicBoolean();
+    private long ultimaSeq; // Protegido por this
+    private volatile boolean fechado;
+
+    /**
+     * Abre o servidor e passa a receber as alterações do serviço.
+     * @param capacidade Quantidade de registros recentes mantidos para seguidores que reconectam.
+     */
+    public ReplicacaoPrimario(PetshopService service, InetSocketAddress endereco, int capacidade) throws IOException {
+        this.service = service;
+        this.recentes = new byte[capacidade][];
+        this.seletor = Selector.open();
+        this.servidor = ServerSocketChannel.open();
+        try {
+            servidor.bind(endereco);
+            servidor.configureBlocking(false);
+            servidor.register(seletor, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            servidor.close();
+            seletor.close();
+            throw e;
+        }
+        service.setReplicacao(this);
+        thread = new Thread(this::executar, "replicacao-primario");
+        thread.setDaemon(true);
+        thread.start();
+        System.out.println("Replicação: aguardando seguidores em " + servidor.getLocalAddress());
+    }
+
+    /**
+     * Inicia a replicação se {@code petshop.replicacao.porta} estiver definida. O endereço
+     * vem de {@code petshop.replicacao.endereco} (padrão 127.0.0.1) e a quantidade de
+     * registros mantidos, de {@code petshop.replicacao.registros} (padrão 100000).
+     * @return A replicação iniciada, ou null se não estiver configurada.
+     */
+    static ReplicacaoPrimario iniciarConfigurada(PetshopService service) throws IOException {
+        Integer porta = Integer.getInteger("petshop.replicacao.porta");
+        if (porta == null) {
+            return null;
+        }
+        InetSocketAddress endereco = new InetSocketAddress(System.getProperty("petshop.replicacao.endereco", "127.0.0.1"), porta);
+        return new ReplicacaoPrimario(service, endereco, Integer.getInteger("petshop.replicacao.registros", 100_000));
+    }
+
+    /**
+     * Registra uma alteração. Chamado pelo PetshopService sob a sua trava, na ordem das gravações.
+     */
+    void registrar(byte operacao, Animal versao, String id) {
+        synchronized (this) {
+            try {
+                recentes[(int) ((ultimaSeq + 1) % recentes.length)] = ArmazenamentoDiario.codificarRegistro(ultimaSeq + 1, operacao, versao, id);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // Codificação em memória
+            }
+            ultimaSeq++;
+        }
+        if (sinalizado.compareAndSet(false, true)) {
+            seletor.wakeup(); // Uma vez por rodada do seletor, não a cada gravação
+        }
+    }
+
+    public synchronized long getUltimaSeq() {
+        return ultimaSeq;
+    }
+
+    /**
+     * O maior atraso entre os seguidores conectados, em registros ainda não confirmados.
+     */
+    public long getAtrasoMaximo() {
+        long seq = getUltimaSeq();
+        long atraso = 0;
+        for (Seguidor seguidor : seguidores) {
+            atraso = Math.max(atraso, seq - seguidor.confirmada);
+        }
+        return atraso;
+    }
+
+    public int getPorta() throws IOException {
+        return ((InetSocketAddress) servidor.getLocalAddress()).getPort();
+    }
+
+    public String estatisticas() {
+        long seq = getUltimaSeq();
+        StringBuilder texto = new StringBuilder("replicação primária: seq ").append(seq).append(", ")
+                .append(seguidores.size()).append(" seguidor(es)");
+        for (Seguidor seguidor : seguidores) {
+            texto.append("; ").append(seguidor.endereco).append(" confirmou ").append(seguidor.confirmada)
+                    .append(" (atraso de ").append(seq - seguidor.confirmada).append(" registros)");
+        }
+        return texto.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        fechado = true;
+        service.setReplicacao(null);
+        seletor.wakeup();
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void executar() {
+        try {
+            while (!fechado) {
+                seletor.select(INTERVALO_BATIMENTO);
+                sinalizado.set(false); // Registros anteriores a este ponto são enviados abaixo
+                for (Iterator<SelectionKey> it = seletor.selectedKeys().iterator(); it.hasNext(); ) {
+                    SelectionKey chave = it.next();
+                    it.remove();
+                    if (!chave.isValid()) {
+                        continue;
+                    }
+                    if (chave.isAcceptable()) {
+                        aceitar();
+                    } else if (chave.isReadable()) {
+                        Seguidor seguidor = (Seguidor) chave.attachment();
+                        try {
+                            ler(seguidor);
+                        } catch (IOException | RuntimeException e) {
+                            desconectar(seguidor, e.getMessage());
+                        }
+                    }
+                }
+                for (Seguidor seguidor : seguidores) {
+                    if (seguidor.saudado) {
+                        try {
+                            enviar(seguidor);
+                        } catch (IOException | RuntimeException e) {
+                            desconectar(seguidor, e.getMessage());
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Replicação: erro no servidor: " + e.getMessage());
+        } finally {
+            for (Seguidor seguidor : seguidores) {
+                desconectar(seguidor, null);
+            }
+            try {
+                servidor.close();
+                seletor.close();
+            } catch (IOException e) {
+                System.err.println("Replicação: erro ao fechar o servidor: " + e.getMessage());
+            }
+        }
+    }
+
+    private void aceitar() throws IOException {
+        SocketChannel canal = servidor.accept();
+        if (canal == null) {
+            return;
+        }
+        canal.configureBlocking(false);
+        canal.socket().setTcpNoDelay(true);
+        Seguidor seguidor = new Seguidor(canal);
+        seguidor.chave = canal.register(seletor, SelectionKey.OP_READ, seguidor);
+        seguidores.add(seguidor);
+    }
+
+    /**
+     * Lê a saudação do seguidor e, depois dela, as confirmações (a última seq aplicada).
+     */
+    private void ler(Seguidor seguidor) throws IOException {
+        if (seguidor.canal.read(seguidor.entrada) < 0) {
+            throw new IOException("conexão encerrada pelo seguidor");
+        }
+        ByteBuffer entrada = seguidor.entrada;
+        entrada.flip();
+        if (!seguidor.saudado && entrada.remaining() >= TAMANHO_SAUDACAO) {
+            if (entrada.getInt() != MAGICO) {
+                throw new IOException("saudação inválida");
+            }
+            saudar(seguidor, entrada.getLong(), entrada.getLong());
+        }
+        while (seguidor.saudado && entrada.remaining() >= Long.BYTES) {
+            seguidor.confirmada = entrada.getLong();
+        }
+        entrada.compact();
+    }
+
+    /**
+     * Decide por onde o seguidor continua: pelo log, se ele tiver tudo até um registro ainda
+     * mantido em memória, ou por um instantâneo.
+     */
+    private void saudar(Seguidor seguidor, long epocaSeguidor, long seqSeguidor) {
+        seguidor.saudado = true;
+        seguidor.saida.clear();
+        seguidor.saida.putInt(MAGICO).putLong(epoca).flip();
+        boolean continua;
+        synchronized (this) {
+            continua = epocaSeguidor == epoca && seqSeguidor >= primeiraDisponivel() - 1 && seqSeguidor <= ultimaSeq;
+        }
+        if (continua) {
+            seguidor.proximaSeq = seqSeguidor + 1;
+            seguidor.confirmada = seqSeguidor;
+            System.out.println("Replicação: seguidor " + seguidor.endereco + " continua a partir do registro " + seguidor.proximaSeq);
+        } else {
+            // A trava do serviço garante que nenhuma gravação aconteça entre abrir o instantâneo e ler a seq
+            synchronized (service) {
+                seguidor.instantaneo = service.abrirInstantaneo();
+                synchronized (this) {
+                    seguidor.seqInstantaneo = ultimaSeq;
+                }
+            }
+            seguidor.cursorInstantaneo = seguidor.instantaneo.cursor(null);
+            seguidor.adiado = quadro(seguidor.seqInstantaneo, OP_INSTANTANEO);
+            System.out.println("Replicação: enviando instantâneo (seq " + seguidor.seqInstantaneo + ") para " + seguidor.endereco);
+        }
+    }
+
+    /**
+     * Envia o que o canal aceitar sem bloquear. Se sobrar algo, pede para ser avisado quando
+     * o canal puder receber mais.
+     */
+    private void enviar(Seguidor seguidor) throws IOException {
+        ByteBuffer saida = seguidor.saida;
+        while (true) {
+            if (!saida.hasRemaining()) {
+                encher(seguidor);
+                if (!saida.hasRemaining()) {
+                    break;
+                }
+            }
+            seguidor.canal.write(saida);
+            if (saida.hasRemaining()) {
+                break; // Buffer do socket cheio
+            }
+        }
+        int interesse = saida.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+        if (seguidor.chave.interestOps() != interesse) {
+            seguidor.chave.interestOps(interesse);
+        }
+    }
+
+    private void encher(Seguidor seguidor) throws IOException {
+        ByteBuffer saida = seguidor.saida;
+        saida.clear();
+        long agora = System.currentTimeMillis();
+        if (agora - seguidor.ultimoBatimento >= INTERVALO_BATIMENTO) {
+            saida.put(quadro(getUltimaSeq(), OP_BATIMENTO));
+            seguidor.ultimoBatimento = agora;
+        }
+        while (true) {
+            if (seguidor.adiado == null) {
+                seguidor.adiado = proximoRegistro(seguidor);
+                if (seguidor.adiado == null) {
+                    break;
+                }
+            }
+            if (seguidor.adiado.length > saida.remaining()) {
+                if (saida.position() == 0) {
+                    saida = seguidor.saida = ByteBuffer.allocate(seguidor.adiado.length); // Registro maior que o buffer
+                } else {
+                    break;
+                }
+            }
+            saida.put(seguidor.adiado);
+            seguidor.adiado = null;
+        }
+        saida.flip();
+    }
+
+    /**
+     * O próximo registro a enviar: do instantâneo, se houver um em andamento, ou do log.
+     * @return O registro codificado, ou null se o seguidor já recebeu tudo.
+     */
+    private byte[] proximoRegistro(Seguidor seguidor) throws IOException {
+        if (seguidor.cursorInstantaneo != null) {
+            if (seguidor.cursorInstantaneo.tryAdvance(seguidor)) {
+                return ArmazenamentoDiario.codificarRegistro(seguidor.seqInstantaneo, ArmazenamentoDiario.OP_INSERIR, seguidor.atual, null);
+            }
+            seguidor.fecharInstantaneo();
+            seguidor.proximaSeq = seguidor.seqInstantaneo + 1;
+            return quadro(seguidor.seqInstantaneo, OP_FIM_INSTANTANEO);
+        }
+        synchronized (this) {
+            if (seguidor.proximaSeq > ultimaSeq) {
+                return null;
+            }
+            if (seguidor.proximaSeq < primeiraDisponivel()) {
+                throw new IOException("seguidor atrasado demais; ele receberá um instantâneo ao reconectar");
+            }
+            return recentes[(int) (seguidor.proximaSeq++ % recentes.length)];
+        }
+    }
+
+    private long primeiraDisponivel() {
+        return Math.max(1, ultimaSeq - recentes.length + 1);
+    }
+
+    private static byte[] quadro(long seq, byte operacao) {
+        try {
+            return ArmazenamentoDiario.codificarRegistro(seq, operacao, null, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void desconectar(Seguidor seguidor, String motivo) {
+        if (!seguidores.remove(seguidor)) {
+            return;
+        }
+        seguidor.fecharInstantaneo();
+        try {
+            seguidor.canal.close();
+        } catch (IOException e) {
+            // Já desconectado
+        }
+        if (motivo != null) {
+            System.err.println("Replicação: seguidor " + seguidor.endereco + " desconectado: " + motivo);
+        }
+    }
+
+    /**
+     * Estado de um seguidor conectado. Só a thread do seletor o altera.
+     */
+    private static final class Seguidor implements Consumer<Animal> {
+        final SocketChannel canal;
+        final String endereco;
+        final ByteBuffer entrada = ByteBuffer.allocate(TAMANHO_SAUDACAO);
+        ByteBuffer saida = ByteBuffer.allocate(TAMANHO_ENVIO).flip(); // Em modo de leitura: o que falta enviar
+        SelectionKey chave;
+        boolean saudado;
+        long proximaSeq;
+        volatile long confirmada;
+        long ultimoBatimento;
+        byte[] adiado; // Registro que não coube no buffer
+        RegistroVersionado.Instantaneo instantaneo;
+        Spliterator<Animal> cursorInstantaneo;
+        long seqInstantaneo;
+        Animal atual;
+
+        Seguidor(SocketChannel canal) throws IOException {
+            this.canal = canal;
+            this.endereco = String.valueOf(canal.getRemoteAddress());
+        }
+
+        @Override
+        public void accept(Animal animal) {
+            atual = animal;
+        }
+
+        void fecharInstantaneo() {
+            if (instantaneo != null) {
+                instantaneo.close();
+                instantaneo = null;
+                cursorInstantaneo = null;
+            }
+        }
+    }
+}
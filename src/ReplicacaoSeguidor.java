@@ -0,0 +1,331 @@
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Lado seguidor da replicação: conecta-se à instância primária ({@link ReplicacaoPrimario}),
+ * recebe os registros do log e os aplica ao próprio PetshopService, que passa a ser somente
+ * leitura e continua atendendo consultas normalmente (páginas, instantâneos, relatórios).
+ *
+ * A época e o último registro aplicado ficam num pequeno arquivo de estado, para que, depois
+ * de reiniciar, o seguidor continue do ponto em que parou. Aplicar de novo um registro não
+ * tem efeito, então o estado é gravado depois dos registros, sem fsync. Se a conexão cair,
+ * o seguidor tenta de novo a cada segundo.
+ *
+ * O atraso é medido em registros (o último registro anunciado pelo primário menos o último
+ * aplicado) e em milissegundos (há quanto tempo o último registro aplicado foi gravado no
+ * primário, quando há registros pendentes; compara os relógios das duas máquinas).
+ */
+class ReplicacaoSeguidor implements Closeable {
+    private static final int TAMANHO_LEITURA = 64 * 1024;
+
+    private final PetshopService service;
+    private final InetSocketAddress primario;
+    private final FileChannel estado;
+    private final Thread thread;
+    private volatile boolean fechado;
+    private volatile boolean conectado;
+    private volatile long epoca;
+    private volatile long seqAplicada;
+    private volatile long seqPrimario;
+    private volatile long atrasoMs;
+    private volatile int instantaneosRecebidos;
+    private volatile long epocaPrimario;
+    private volatile boolean batimentoRecebido; // Nesta conexão
+    private volatile boolean recebendoInstantaneo;
+    private volatile SocketChannel canal;
+
+    /**
+     * Torna o serviço somente leitura e começa a seguir a instância primária.
+     * @param arquivoEstado Onde guardar a época e o último registro aplicado.
+     */
+    public ReplicacaoSeguidor(PetshopService service, InetSocketAddress primario, Path arquivoEstado) throws IOException {
+        this.service = service;
+        this.primario = primario;
+        this.estado = FileChannel.open(arquivoEstado, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer lido = ByteBuffer.allocate(2 * Long.BYTES);
+        while (lido.hasRemaining() && estado.read(lido, lido.position()) > 0) {
+            // Lê a época e a seq gravadas na última execução, se houver
+        }
+        if (!lido.hasRemaining()) {
+            lido.flip();
+            epoca = lido.getLong();
+            seqAplicada = lido.getLong();
+        }
+        service.setSomenteLeitura(true);
+        thread = new Thread(this::executar, "replicacao-seguidor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Começa a seguir o primário em {@code petshop.replicacao.primario} (HOST:PORTA), se definido.
+     * O estado fica em {@code petshop.replicacao.estado} (padrão "replica.estado").
+     * @return O seguidor iniciado, ou null se não estiver configurado.
+     */
+    static ReplicacaoSeguidor iniciarConfigurado(PetshopService service) throws IOException {
+        String primario = System.getProperty("petshop.replicacao.primario");
+        if (primario == null) {
+            return null;
+        }
+        return new ReplicacaoSeguidor(service, endereco(primario), Paths.get(System.getProperty("petshop.replicacao.estado", "replica.estado")));
+    }
+
+    /**
+     * Converte "HOST:PORTA" em endereço.
+     */
+    static InetSocketAddress endereco(String hostPorta) {
+        int separador = hostPorta.lastIndexOf(':');
+        if (separador <= 0) {
+            throw new IllegalArgumentException("Endereço do primário deve ser HOST:PORTA: " + hostPorta);
+        }
+        try {
+            return new InetSocketAddress(hostPorta.substring(0, separador), Integer.parseInt(hostPorta.substring(separador + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Porta inválida: " + hostPorta);
+        }
+    }
+
+    public boolean isConectado() {
+        return conectado;
+    }
+
+    public long getSeqAplicada() {
+        return seqAplicada;
+    }
+
+    public long getSeqPrimario() {
+        return seqPrimario;
+    }
+
+    /**
+     * Registros anunciados pelo primário que ainda não foram aplicados.
+     */
+    public long getAtrasoRegistros() {
+        return Math.max(0, seqPrimario - seqAplicada);
+    }
+
+    /**
+     * Tempo, em milissegundos, entre a gravação no primário e a aplicação aqui do último quadro
+     * lido. Inclui o que ficou na fila do primário e da rede, que o atraso em registros não vê:
+     * o seguidor só conhece os registros que já recebeu. Compara relógios das duas máquinas.
+     */
+    public long getAtrasoMs() {
+        return atrasoMs;
+    }
+
+    public int getInstantaneosRecebidos() {
+        return instantaneosRecebidos;
+    }
+
+    /**
+     * Espera o seguidor alcançar o último registro anunciado pelo primário nesta conexão.
+     * @return true se alcançou dentro do prazo.
+     */
+    public synchronized boolean aguardarSincronia(long prazoMs) throws InterruptedException {
+        long limite = System.currentTimeMillis() + prazoMs;
+        while (!sincronizado()) {
+            long restante = limite - System.currentTimeMillis();
+            if (restante <= 0) {
+                return false;
+            }
+            wait(restante);
+        }
+        return true;
+    }
+
+    private boolean sincronizado() {
+        return conectado && batimentoRecebido && !recebendoInstantaneo && epoca == epocaPrimario && seqAplicada >= seqPrimario;
+    }
+
+    public String estatisticas() {
+        return "réplica de " + primario + (conectado ? "" : " (desconectada)") + ": seq " + seqAplicada + " de " + seqPrimario
+                + ", atraso de " + getAtrasoRegistros() + " registros (" + getAtrasoMs() + " ms), "
+                + instantaneosRecebidos + " instantâneo(s) recebido(s)";
+    }
+
+    @Override
+    public void close() throws IOException {
+        fechado = true;
+        SocketChannel aberto = canal;
+        if (aberto != null) {
+            aberto.close(); // Interrompe a leitura bloqueada
+        }
+        thread.interrupt(); // Ou a espera para reconectar
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        estado.close();
+    }
+
+    private void executar() {
+        while (!fechado) {
+            try (SocketChannel aberto = SocketChannel.open(primario)) {
+                canal = aberto;
+                seguir(aberto);
+            } catch (IOException | RuntimeException e) {
+                if (!fechado) {
+                    System.err.println("Replicação: conexão com " + primario + " interrompida (" + e.getMessage() + "); tentando de novo em 1 s");
+                }
+            } finally {
+                canal = null;
+                conectado = false;
+            }
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void seguir(SocketChannel canal) throws IOException {
+        canal.socket().setTcpNoDelay(true);
+        ByteBuffer saudacao = ByteBuffer.allocate(ReplicacaoPrimario.TAMANHO_SAUDACAO);
+        saudacao.putInt(ReplicacaoPrimario.MAGICO).putLong(epoca).putLong(seqAplicada).flip();
+        escrever(canal, saudacao);
+
+        ByteBuffer entrada = ByteBuffer.allocate(TAMANHO_LEITURA);
+        lerPeloMenos(canal, entrada, ReplicacaoPrimario.TAMANHO_CABECALHO);
+        entrada.flip();
+        if (entrada.getInt() != ReplicacaoPrimario.MAGICO) {
+            throw new IOException("resposta inválida do primário");
+        }
+        epocaPrimario = entrada.getLong();
+        entrada.compact();
+        seqPrimario = 0; // Conhecida no primeiro batimento desta conexão
+        batimentoRecebido = false;
+        recebendoInstantaneo = false;
+        conectado = true;
+        System.out.println("Replicação: conectado a " + primario + " a partir do registro " + seqAplicada);
+
+        ByteBuffer confirmacao = ByteBuffer.allocate(Long.BYTES);
+        List<Animal> instantaneo = null;
+        CRC32 crc = new CRC32();
+        while (true) {
+            if (canal.read(entrada) < 0) {
+                throw new EOFException("conexão encerrada pelo primário");
+            }
+            entrada.flip();
+            long aplicadaAntes = seqAplicada;
+            long instanteLido = -1;
+            while (entrada.remaining() >= ArmazenamentoDiario.CABECALHO_REGISTRO) {
+                int inicio = entrada.position();
+                int tamanho = entrada.getInt(inicio);
+                if (tamanho <= 0 || tamanho > ArmazenamentoDiario.TAMANHO_MAXIMO_REGISTRO) {
+                    throw new IOException("registro com tamanho inválido: " + tamanho);
+                }
+                if (entrada.remaining() < ArmazenamentoDiario.CABECALHO_REGISTRO + tamanho) {
+                    if (entrada.capacity() < ArmazenamentoDiario.CABECALHO_REGISTRO + tamanho) {
+                        entrada = ByteBuffer.allocate(ArmazenamentoDiario.CABECALHO_REGISTRO + tamanho).put(entrada).flip();
+                    }
+                    break; // Registro incompleto: espera o resto
+                }
+                int dados = inicio + ArmazenamentoDiario.CABECALHO_REGISTRO;
+                crc.reset();
+                crc.update(entrada.array(), entrada.arrayOffset() + dados, tamanho);
+                if ((int) crc.getValue() != entrada.getInt(inicio + 4)) {
+                    throw new IOException("registro corrompido (CRC)");
+                }
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(entrada.array(), entrada.arrayOffset() + dados, tamanho));
+                entrada.position(dados + tamanho);
+                long seq = in.readLong();
+                instanteLido = in.readLong();
+                byte operacao = in.readByte();
+                switch (operacao) {
+                    case ReplicacaoPrimario.OP_BATIMENTO:
+                        seqPrimario = Math.max(seqPrimario, seq);
+                        batimentoRecebido = true;
+                        break;
+                    case ReplicacaoPrimario.OP_INSTANTANEO:
+                        instantaneo = new ArrayList<>();
+                        recebendoInstantaneo = true;
+                        break;
+                    case ReplicacaoPrimario.OP_FIM_INSTANTANEO:
+                        if (instantaneo == null) {
+                            throw new IOException("fim de instantâneo sem início");
+                        }
+                        service.aplicarInstantaneo(instantaneo);
+                        System.out.println("Replicação: instantâneo aplicado (" + instantaneo.size() + " animais, seq " + seq + ")");
+                        instantaneo = null;
+                        recebendoInstantaneo = false;
+                        epoca = epocaPrimario;
+                        seqAplicada = seq;
+                        instantaneosRecebidos++;
+                        break;
+                    case ArmazenamentoDiario.OP_REMOVER:
+                        aplicar(seq, operacao, null, in.readUTF());
+                        break;
+                    default:
+                        Animal animal = CodificadorAnimal.ler(in);
+                        if (instantaneo != null) {
+                            instantaneo.add(animal);
+                        } else {
+                            aplicar(seq, operacao, animal, null);
+                        }
+                }
+            }
+            entrada.compact();
+            if (instanteLido >= 0) {
+                atrasoMs = Math.max(0, System.currentTimeMillis() - instanteLido);
+            }
+            if (seqAplicada != aplicadaAntes) {
+                salvarEstado();
+                confirmacao.clear();
+                confirmacao.putLong(seqAplicada).flip();
+                escrever(canal, confirmacao);
+            }
+            synchronized (this) {
+                notifyAll(); // Acorda quem espera a sincronia
+            }
+        }
+    }
+
+    /**
+     * Aplica um registro. Se o armazenamento falhar, a IOException encerra a conexão sem avançar
+     * nem salvar a seq, e o primário reenvia o registro na reconexão.
+     */
+    private void aplicar(long seq, byte operacao, Animal animal, String id) throws IOException {
+        if (seq <= seqAplicada) {
+            return; // Já aplicado antes de uma reconexão
+        }
+        service.aplicarReplicado(operacao, animal, id);
+        seqAplicada = seq;
+        seqPrimario = Math.max(seqPrimario, seq);
+    }
+
+    private void salvarEstado() throws IOException {
+        ByteBuffer dados = ByteBuffer.allocate(2 * Long.BYTES).putLong(epoca).putLong(seqAplicada).flip();
+        while (dados.hasRemaining()) {
+            estado.write(dados, dados.position());
+        }
+    }
+
+    private static void escrever(SocketChannel canal, ByteBuffer dados) throws IOException {
+        while (dados.hasRemaining()) {
+            canal.write(dados);
+        }
+    }
+
+    private static void lerPeloMenos(SocketChannel canal, ByteBuffer entrada, int bytes) throws IOException {
+        while (entrada.position() < bytes) {
+            if (canal.read(entrada) < 0) {
+                throw new EOFException("conexão encerrada pelo primário");
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Funções auxiliares para comparação de textos digitados pelos usuários.
+ */
+final class Textos {
+    private static final Pattern ACENTOS = Pattern.compile("\\p{M}+");
+
+    private Textos() {
+    }
+
+    /**
+     * Remove acentos, espaços nas pontas e converte para minúsculas,
+     * para que "Ágata" e "agata" sejam tratados como iguais.
+     * @param texto O texto original (pode ser null).
+     * @return O texto normalizado ("" se for null).
+     */
+    static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        if (isAscii(texto)) {
+            return texto.trim().toLowerCase(Locale.ROOT); // Caso comum: não há acentos a remover
+        }
+        String semAcentos = ACENTOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return semAcentos.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isAscii(String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            if (texto.charAt(i) > 127) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Verifica se {@code texto}, normalizado como em {@link #normalizar}, contém {@code trecho},
+     * que já deve estar normalizado. Textos sem acentos (o caso comum) são comparados sem criar
+     * novas strings.
+     */
+    static boolean contemNormalizado(String texto, String trecho) {
+        if (trecho.isEmpty()) {
+            return true;
+        }
+        if (texto == null) {
+            return false;
+        }
+        if (!isAscii(texto)) {
+            return normalizar(texto).contains(trecho);
+        }
+        int limite = texto.length() - trecho.length();
+        for (int i = 0; i <= limite; i++) {
+            if (texto.regionMatches(true, i, trecho, 0, trecho.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
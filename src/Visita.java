@@ -0,0 +1,64 @@
+import java.time.Instant;
+
+/**
+ * Um evento do histórico de um animal (consulta, vacinação, banho e tosa...), ligado
+ * ao animal pelo ID. Imutável; o instante é guardado em milissegundos desde a época (UTC).
+ */
+final class Visita {
+
+    enum Tipo {
+        CONSULTA("Consulta"),
+        VACINACAO("Vacinação"),
+        BANHO_E_TOSA("Banho e tosa"),
+        OUTRO("Outro");
+
+        static final Tipo[] TODOS = values();
+
+        private final String titulo;
+
+        Tipo(String titulo) {
+            this.titulo = titulo;
+        }
+
+        public String getTitulo() {
+            return titulo;
+        }
+    }
+
+    private final String idAnimal;
+    private final long instante;
+    private final Tipo tipo;
+    private final String descricao;
+
+    public Visita(String idAnimal, long instante, Tipo tipo, String descricao) {
+        this.idAnimal = idAnimal;
+        this.instante = instante;
+        this.tipo = tipo;
+        this.descricao = descricao;
+    }
+
+    public String getIdAnimal() {
+        return idAnimal;
+    }
+
+    /**
+     * Milissegundos desde a época (UTC).
+     */
+    public long getInstante() {
+        return instante;
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    public String getDescricao() {
+        return descricao;
+    }
+
+    @Override
+    public String toString() {
+        return Instant.ofEpochMilli(instante) + ", Animal: " + idAnimal + ", Tipo: " + tipo.getTitulo()
+                + (descricao != null ? ", Descrição: " + descricao : "");
+    }
+}